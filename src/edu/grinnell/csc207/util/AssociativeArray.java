@@ -8,6 +8,12 @@ import java.util.Arrays;
  * and values of type V. Associative Arrays store key/value pairs
  * and permit you to look up values by key.
  *
+ * The pairs are kept in insertion order in `pairs`, alongside an
+ * open-addressing hash index into that array, so lookups take constant
+ * time on average while `keys()` still reports keys in the order in
+ * which they were first set. Clients may read `pairs`, but must not
+ * modify it directly, since that would leave the index out of date.
+ *
  * @param <K> the key type
  * @param <V> the value type
  *
@@ -25,6 +31,11 @@ public class AssociativeArray<K, V> {
    */
   static final int DEFAULT = 16;
 
+  /**
+   * An empty slot in the hash index.
+   */
+  static final int EMPTY = 0;
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
@@ -39,6 +50,13 @@ public class AssociativeArray<K, V> {
    */
   public KVPair<K, V>[] pairs;
 
+  /**
+   * The hash index into `pairs`. Each slot holds one more than the
+   * index of a pair (so that zero can mark an empty slot). The length
+   * is always a power of two and the index is kept at most half full.
+   */
+  int[] index;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -51,6 +69,7 @@ public class AssociativeArray<K, V> {
     // Creating new arrays is sometimes a PITN.
     this.pairs = (KVPair<K, V>[]) newInstance((new KVPair<K, V>()).getClass(),
         DEFAULT);
+    this.index = new int[DEFAULT * 2];
     this.size = 0;
   } // AssociativeArray()
 
@@ -66,7 +85,11 @@ public class AssociativeArray<K, V> {
    */
   public AssociativeArray<K, V> clone() {
     AssociativeArray<K, V> cloned = new AssociativeArray<K, V>();
-    cloned.pairs = Arrays.copyOf(this.pairs, this.size);
+    cloned.pairs = Arrays.copyOf(this.pairs, this.pairs.length);
+    for (int i = 0; i < this.size; i++) {
+      cloned.pairs[i] = this.pairs[i].clone();
+    } // for
+    cloned.index = this.index.clone();
     cloned.size = this.size;
     return cloned;
   } // clone()
@@ -80,11 +103,11 @@ public class AssociativeArray<K, V> {
   public String toString() {
     StringBuilder sb = new StringBuilder("{");
     if (size > 0) {
-      for (int i = 0; i < this.pairs.length - 1; i++) {
+      for (int i = 0; i < this.size - 1; i++) {
         sb.append(this.pairs[i].toString());
         sb.append(", ");
       } // for
-      sb.append(this.pairs[this.pairs.length - 1].toString());
+      sb.append(this.pairs[this.size - 1].toString());
     } // if
     sb.append("}");
     return sb.toString();
@@ -128,16 +151,20 @@ public class AssociativeArray<K, V> {
 
     /* If a key is pre-existing, update the value; otherwise, add it to
     the end of the array. */
-    try {
-      int keyIndex = this.find(key);
+    int keyIndex = this.indexOf(key);
+    if (keyIndex >= 0) {
       this.pairs[keyIndex].val = value;
-    } catch (KeyNotFoundException e) {
-      if (this.size <= this.pairs.length) {
+    } else {
+      if (this.size >= this.pairs.length) {
         this.expand();
       } // if
+      if ((this.size + 1) * 2 > this.index.length) {
+        this.reindex(this.index.length * 2);
+      } // if
       this.pairs[size] = new KVPair<K, V>(key, value);
+      this.place(size);
       this.size++;
-    } // try/catch
+    } // if/else
   } // set(K,V)
 
   /**
@@ -157,6 +184,51 @@ public class AssociativeArray<K, V> {
     return this.pairs[index].val;
   } // get(K)
 
+  /**
+   * Get the value associated with key, or a default if there is none.
+   * Unlike get, a missing key costs no more than a present one.
+   *
+   * @param key
+   *   A key.
+   * @param defaultValue
+   *   The value to return if key is null or does not exist.
+   *
+   * @return
+   *   The corresponding value, or defaultValue.
+   */
+  public V getOrDefault(K key, V defaultValue) {
+    int index = this.indexOf(key);
+    return (index < 0) ? defaultValue : this.pairs[index].val;
+  } // getOrDefault(K,V)
+
+  /**
+   * Find the position of key in `pairs`.
+   *
+   * @param key
+   *   The key we're looking for.
+   *
+   * @return
+   *   The index of the pair containing key, or -1 if the key is null or
+   *   does not appear in the associative array.
+   */
+  public int indexOf(K key) {
+    if (key == null) {
+      return -1;
+    } // if
+
+    /* Probe from the key's home slot until we hit an empty slot. */
+    int mask = this.index.length - 1;
+    int slot = hash(key) & mask;
+    while (this.index[slot] != EMPTY) {
+      int i = this.index[slot] - 1;
+      if (this.pairs[i].key.equals(key)) {
+        return i;
+      } // if
+      slot = (slot + 1) & mask;
+    } // while
+    return -1;
+  } // indexOf(K)
+
   /**
    * Determine if key appears in the associative array. Should return false
    * for the null key, since it cannot appear.
@@ -168,16 +240,7 @@ public class AssociativeArray<K, V> {
    *    True if the key appears and false otherwise.
    */
   public boolean hasKey(K key) {
-    try {
-      if (key != null) {
-        this.find(key);
-        return true;
-      } else {
-        return false;
-      } // elif
-    } catch (KeyNotFoundException e) {
-      return false;
-    } // try/catch
+    return this.indexOf(key) >= 0;
   } // hasKey(K)
 
   /**
@@ -189,21 +252,20 @@ public class AssociativeArray<K, V> {
    *   The key to remove.
    */
   public void remove(K key) {
-    /* Check if the key is in the array. */
-    if (hasKey(key)) {
-      try {
-        int index = this.find(key);
-        this.size--;
-        /* If the key is in the array, set all the pairs' indices back by one. */
-        for (int i = index; i < this.size; i++) {
-          this.pairs[i] = this.pairs[i + 1];
-        } // for
-        this.pairs[size] = null;
-      /* Do nothing if the key is not in the array. */
-      } catch (KeyNotFoundException e) {
-        return;
-      } // try/catch
+    /* Do nothing if the key is not in the array. */
+    int index = this.indexOf(key);
+    if (index < 0) {
+      return;
     } // if
+
+    /* Otherwise, set all the later pairs' indices back by one. */
+    this.size--;
+    for (int i = index; i < this.size; i++) {
+      this.pairs[i] = this.pairs[i + 1];
+    } // for
+    this.pairs[size] = null;
+    /* Every later pair moved, so the index must be rebuilt. */
+    this.reindex(this.index.length);
   } // remove(K)
 
   /**
@@ -224,11 +286,54 @@ public class AssociativeArray<K, V> {
    * Expand the underlying array.
    */
   private void expand() {
-    this.pairs = java.util.Arrays.copyOf(this.pairs, this.pairs.length * 2);
+    this.pairs = Arrays.copyOf(this.pairs, Math.max(DEFAULT, this.pairs.length * 2));
   } // expand()
 
   /**
-   * Find the index of the first entry in `pairs` that contains key.
+   * Spread the hash code of a key so that the low bits used to pick a
+   * slot depend on the high bits as well.
+   *
+   * @param key
+   *   The key to hash.
+   * @return
+   *   The spread hash code.
+   */
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  } // hash(Object)
+
+  /**
+   * Add the pair at position i of `pairs` to the hash index, using
+   * linear probing to find a free slot.
+   *
+   * @param i
+   *   The position of the pair in `pairs`.
+   */
+  private void place(int i) {
+    int mask = this.index.length - 1;
+    int slot = hash(this.pairs[i].key) & mask;
+    while (this.index[slot] != EMPTY) {
+      slot = (slot + 1) & mask;
+    } // while
+    this.index[slot] = i + 1;
+  } // place(int)
+
+  /**
+   * Rebuild the hash index from `pairs`.
+   *
+   * @param capacity
+   *   The number of slots in the new index (a power of two).
+   */
+  private void reindex(int capacity) {
+    this.index = new int[capacity];
+    for (int i = 0; i < this.size; i++) {
+      this.place(i);
+    } // for
+  } // reindex(int)
+
+  /**
+   * Find the index of the entry in `pairs` that contains key.
    * If no such entry is found, throws an exception.
    *
    * @param key
@@ -240,12 +345,10 @@ public class AssociativeArray<K, V> {
    *   If the key does not appear in the associative array.
    */
   private int find(K key) throws KeyNotFoundException {
-    /* Find the key by iterating (if it exists). */
-    for (int i = 0; i < this.size; i++) {
-      if (this.pairs[i].key.equals(key)) {
-        return i;
-      } // if
-    } // for
-    throw new KeyNotFoundException();
+    int index = this.indexOf(key);
+    if (index < 0) {
+      throw new KeyNotFoundException();
+    } // if
+    return index;
   } // find(K)
 } // class AssociativeArray
@@ -0,0 +1,236 @@
+package edu.grinnell.csc207.util;
+
+import java.util.Arrays;
+
+/**
+ * An associative array that many threads may share, for data that is
+ * read far more often than it is changed.
+ *
+ * The pairs live in an ordinary AssociativeArray that is never changed
+ * once it has been published. Reads take whichever version is current,
+ * without locking. Writes are serialized: each one copies the current
+ * version, changes the copy, and publishes it, so a reader sees either
+ * all of a write or none of it. A write costs time proportional to the
+ * size of the array, so setAll should be used to add many pairs at once.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ *
+ * @author Sara Jaljaa
+ */
+public class ConcurrentAssociativeArray<K, V> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The current version of the pairs. Never modified once published.
+   */
+  private volatile AssociativeArray<K, V> current;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty associative array.
+   */
+  public ConcurrentAssociativeArray() {
+    this.current = new AssociativeArray<K, V>();
+  } // ConcurrentAssociativeArray()
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Convert the associative array to a string.
+   *
+   * @return
+   *    A string of the form "{Key0:Value0, Key1:Value1, ... KeyN:ValueN}."
+   */
+  public String toString() {
+    return this.current.toString();
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Get the current version of the pairs. Later writes do not change
+   * it, so a client that needs several consistent reads (say, walking
+   * `pairs`) should take one snapshot and read from it.
+   *
+   * @return
+   *   The current version, which must not be modified.
+   */
+  public AssociativeArray<K, V> snapshot() {
+    return this.current;
+  } // snapshot()
+
+  /**
+   * Set the value associated with key to value.
+   *
+   * @param key
+   *   The key whose value we are setting.
+   * @param value
+   *   The value of that key.
+   *
+   * @throws NullKeyException
+   *   If the client provides a null key.
+   */
+  public synchronized void set(K key, V value) throws NullKeyException {
+    if (key == null) {
+      throw new NullKeyException();
+    } // if
+    AssociativeArray<K, V> next = copy(this.current);
+    put(next, key, value);
+    this.current = next;
+  } // set(K,V)
+
+  /**
+   * Set many keys at once, as if by calling set on each in turn, but
+   * copying the pairs only once. Readers see all of the new values or
+   * none of them.
+   *
+   * @param keys
+   *   The keys whose values we are setting.
+   * @param values
+   *   The values of those keys, in the same order.
+   *
+   * @throws NullKeyException
+   *   If any of the keys is null, in which case nothing is set.
+   */
+  public synchronized void setAll(K[] keys, V[] values) throws NullKeyException {
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException("Keys and values differ in length.");
+    } // if
+    for (K key : keys) {
+      if (key == null) {
+        throw new NullKeyException();
+      } // if
+    } // for
+    AssociativeArray<K, V> next = copy(this.current);
+    for (int i = 0; i < keys.length; i++) {
+      put(next, keys[i], values[i]);
+    } // for
+    this.current = next;
+  } // setAll(K[],V[])
+
+  /**
+   * Get the value associated with key.
+   *
+   * @param key
+   *   A key.
+   *
+   * @return
+   *   The corresponding value.
+   *
+   * @throws KeyNotFoundException
+   *   when the key is null or does not exist.
+   */
+  public V get(K key) throws KeyNotFoundException {
+    return this.current.get(key);
+  } // get(K)
+
+  /**
+   * Get the value associated with key, or a default if there is none.
+   *
+   * @param key
+   *   A key.
+   * @param defaultValue
+   *   The value to return if key is null or does not exist.
+   *
+   * @return
+   *   The corresponding value, or defaultValue.
+   */
+  public V getOrDefault(K key, V defaultValue) {
+    return this.current.getOrDefault(key, defaultValue);
+  } // getOrDefault(K,V)
+
+  /**
+   * Determine if key appears in the associative array.
+   *
+   * @param key
+   *   The key we're looking for.
+   *
+   * @return
+   *    True if the key appears and false otherwise.
+   */
+  public boolean hasKey(K key) {
+    return this.current.hasKey(key);
+  } // hasKey(K)
+
+  /**
+   * Remove the key/value pair associated with a key. If the key does not
+   * appear in the associative array, does nothing.
+   *
+   * @param key
+   *   The key to remove.
+   */
+  public synchronized void remove(K key) {
+    if (!this.current.hasKey(key)) {
+      return;
+    } // if
+    AssociativeArray<K, V> next = copy(this.current);
+    next.remove(key);
+    this.current = next;
+  } // remove(K)
+
+  /**
+   * Determine how many key/value pairs are in the associative array.
+   *
+   * @return
+   *    The number of key/value pairs in the array.
+   */
+  public int size() {
+    return this.current.size();
+  } // size()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Copy an associative array, sharing its pairs. Since the pairs are
+   * shared, the copy must never change a pair in place; see put.
+   *
+   * @param original
+   *   The array to copy.
+   * @return
+   *   The copy.
+   */
+  private static <K, V> AssociativeArray<K, V> copy(AssociativeArray<K, V> original) {
+    AssociativeArray<K, V> copy = new AssociativeArray<K, V>();
+    copy.pairs = Arrays.copyOf(original.pairs, original.pairs.length);
+    copy.index = original.index.clone();
+    copy.size = original.size;
+    return copy;
+  } // copy(AssociativeArray)
+
+  /**
+   * Set key to value in a copy made by copy, replacing the pair for an
+   * existing key rather than changing it, since older versions share it.
+   *
+   * @param array
+   *   The copy.
+   * @param key
+   *   The key, which must not be null.
+   * @param value
+   *   The value.
+   */
+  private static <K, V> void put(AssociativeArray<K, V> array, K key, V value) {
+    int i = array.indexOf(key);
+    if (i >= 0) {
+      array.pairs[i] = new KVPair<K, V>(key, value);
+    } else {
+      try {
+        array.set(key, value);
+      } catch (NullKeyException e) {
+        // Callers check for null keys before copying.
+      } // try/catch
+    } // if/else
+  } // put(AssociativeArray, K, V)
+} // class ConcurrentAssociativeArray
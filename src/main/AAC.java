@@ -2,9 +2,10 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
-import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 
 import java.awt.BorderLayout;
 import java.awt.Container;
@@ -16,12 +17,10 @@ import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
-import java.util.Locale;
+import java.util.List;
 import java.util.Scanner;
-
-import javax.speech.Central;
-import javax.speech.synthesis.Synthesizer;
-import javax.speech.synthesis.SynthesizerModeDesc;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Creates a GUI that has a grid of images that represent the communication
@@ -32,14 +31,27 @@ import javax.speech.synthesis.SynthesizerModeDesc;
 public class AAC implements ActionListener {
 
 	private JFrame frame;
-	private static Synthesizer synthesizer;
-	private int startIndex;
-	private int endIndex;
+	private static final String VOICE = "kevin16";
+	private static final long SPEAKER_TIMEOUT = 30;
 	private static final int NUM_ACROSS = 3;
 	private static final int NUM_DOWN = 3;
-	private String[] images;
+	private static final int ARROW_WIDTH = 64;
+	private static final int HEADER_HEIGHT = 196;
+	private static final int ICON_STEP = 16;
+	private static final int FRAME_SIZE = 500;
+	private static final String[] NAV_ICONS = {"img/home.png", "img/save.png",
+			"img/plus.png", "img/back-to.png", "img/next.png"};
+	private static final String FOUND = "found:";
+	private static final String SENTENCE = "sentence:";
+	private static final String[] SENTENCE_BUTTONS = {"Speak", "Undo", "Clear", "Replay"};
 	private AACPage page;
+	private AACSession session;
 	private Scanner input;
+	private SaveService saver;
+	private IconCache icons;
+	private IconLoader loader;
+	private String query;
+	private List<SymbolIndex.Hit> found;
 
 	/**
 	 * Creates the AAC display for the file provided.
@@ -50,18 +62,53 @@ public class AAC implements ActionListener {
 	 */
 	public AAC(String filename) {
 		// this.page = new AACCategory("test");
-		this.page = new AACMappings(filename);
-		this.images = this.page.getImageLocs();
-		this.startIndex = 0;
-		this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.length);
+		this(new AACMappings(filename), new IconLoader(new IconCache(), 2));
+	} // AAC(String)
+
+	/**
+	 * Creates the AAC display for a page that has already been loaded.
+	 *
+	 * @param page
+	 * 		The page to display.
+	 * @param loader
+	 * 		What decodes the icons, which may already hold some of them.
+	 */
+	public AAC(AACPage page, IconLoader loader) {
+		this.page = page;
+		if (page instanceof AACMappings
+				&& Boolean.parseBoolean(System.getProperty("aac.compose", "false"))) {
+			// opt in with -Daac.compose=true: collect symbols into a sentence,
+			// spoken with the Speak button
+			((AACMappings) page).setComposing(true);
+		} // if
+		this.session = new AACSession(page, NUM_ACROSS * NUM_DOWN, null);
+		this.loader = loader;
+		icons = loader.getCache();
 		frame = new JFrame();
-		frame.setPreferredSize(new Dimension(500, 500));
+		frame.setPreferredSize(new Dimension(FRAME_SIZE, FRAME_SIZE));
+		saver = new SaveService("AACMappingsNew.txt", (target, error) ->
+				SwingUtilities.invokeLater(() -> {
+					if (error == null) {
+						frame.setTitle("Saved " + target.getFileName());
+					} else {
+						frame.setTitle("Save failed: " + error.getMessage());
+					} // if/else
+				}));
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			saver.close();
+			if (page instanceof AACMappings) {
+				synchronized (session) {
+					((AACMappings) page).saveUses();
+				} // synchronized
+			} // if
+			System.err.println(icons);
+		}));
 		loadImages(NUM_ACROSS, NUM_DOWN);
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		frame.pack();
 		frame.setVisible(true);
 		input = new Scanner(System.in);
-	} // AAC(String)
+	} // AAC(AACPage, IconLoader)
 
 	/**
 	 * Loads the images in the screen in a width by length grid.
@@ -74,14 +121,29 @@ public class AAC implements ActionListener {
 	public void loadImages(int width, int length) {
 		Container pane = frame.getContentPane();
 		pane.removeAll();
+		AACSession.View view = session.view();
+
+		// while showing search results, show them instead of the page
+		String[] images = view.getImageLocs();
+		String[] commands = images;
+		if (found != null) {
+			images = new String[found.size()];
+			commands = new String[found.size()];
+			for (int i = 0; i < images.length; i++) {
+				images[i] = found.get(i).getImageLoc();
+				commands[i] = FOUND + i;
+			} // for
+		} // if
 
 		// add options to go to home screen
 		JPanel topPanel = new JPanel();
 		topPanel.setLayout(new GridBagLayout());
 		GridBagConstraints c = new GridBagConstraints();
 		String category = "Home Page";
-		if (!this.page.getCategory().equals("")) {
-			category = this.page.getCategory();
+		if (found != null) {
+			category = "Found: " + query;
+		} else if (!view.getCategory().equals("")) {
+			category = view.getCategory();
 		} // if
 		c.gridx = 0;
 		c.gridy = 0;
@@ -91,42 +153,67 @@ public class AAC implements ActionListener {
 		JPanel panel1 = new JPanel();
 		panel1.setLayout(new GridLayout(1, 3));
 		if (this.page instanceof AACMappings) {
-			JButton home = new JButton(new ImageIcon("img/home.png"));
+			JButton home = new JButton(icons.get("img/home.png"));
 			home.setActionCommand("");
 			home.addActionListener(this);
 			panel1.add(home);
-			JButton save = new JButton(new ImageIcon("img/save.png"));
+			JButton save = new JButton(icons.get("img/save.png"));
 			save.setActionCommand("save");
 			save.addActionListener(this);
 			panel1.add(save);
 		} // if
-		JButton add = new JButton(new ImageIcon("img/plus.png"));
+		JButton add = new JButton(icons.get("img/plus.png"));
 		add.setActionCommand("add");
 		add.addActionListener(this);
 		panel1.add(add);
 		c.gridx = 0;
 		c.gridy = 1;
 		topPanel.add(panel1, c);
+		if (this.page instanceof AACMappings) {
+			// type and press enter to find a symbol anywhere on the board
+			JTextField search = new JTextField((found == null) ? "" : query, 20);
+			search.setActionCommand("search");
+			search.addActionListener(this);
+			c.gridy = 2;
+			topPanel.add(search, c);
+		} // if
+		SentenceStrip sentence = this.page.getSentence();
+		if (sentence != null) {
+			// the sentence so far, and what to do with it
+			JPanel strip = new JPanel();
+			String text = sentence.getText();
+			strip.add(new JLabel(text.isEmpty() ? "(tap symbols to build a sentence)" : text));
+			for (String name : SENTENCE_BUTTONS) {
+				JButton button = new JButton(name);
+				button.setActionCommand(SENTENCE + name);
+				button.addActionListener(this);
+				strip.add(button);
+			} // for
+			c.gridy = 3;
+			topPanel.add(strip, c);
+		} // if
 		pane.add(topPanel, BorderLayout.PAGE_START);
 
 		// if on page 2+, add back button
-		if (startIndex > 0) {
-			JButton backArrow = new JButton(new ImageIcon("img/back-to.png"));
+		if (found == null && view.hasPrevious()) {
+			JButton backArrow = new JButton(icons.get("img/back-to.png"));
 			backArrow.setActionCommand("back");
 			backArrow.addActionListener(this);
 			pane.add(backArrow, BorderLayout.LINE_START);
 		} // if
 
-		// add images
+		// add images, decoded in the background at the size of a grid cell
+		int cell = cellSize(width, length);
 		JPanel panel = new JPanel();
 		panel.setLayout(new GridLayout(width, length));
-		int currImage = startIndex;
+		int currImage = 0;
 		for (int y = 0; y < length; y++) {
 			for (int x = 0; x < width; x++) {
-				if (currImage < this.images.length) {
-					ImageIcon img = new ImageIcon(images[currImage]);
-					JButton button = new JButton(img);
-					button.setActionCommand(images[currImage]);
+				if (currImage < images.length) {
+					JButton button = new JButton();
+					button.setIcon(loader.load(images[currImage], cell, cell,
+							button::setIcon));
+					button.setActionCommand(commands[currImage]);
 					button.addActionListener(this);
 					panel.add(button);
 					currImage++;
@@ -136,8 +223,8 @@ public class AAC implements ActionListener {
 		pane.add(panel, BorderLayout.CENTER);
 
 		// if have later pages, add next button
-		if (endIndex < images.length) {
-			JButton nextArrow = new JButton(new ImageIcon("img/next.png"));
+		if (found == null && view.hasNext()) {
+			JButton nextArrow = new JButton(icons.get("img/next.png"));
 			nextArrow.setActionCommand("next");
 			nextArrow.addActionListener(this);
 			pane.add(nextArrow, BorderLayout.LINE_END);
@@ -147,31 +234,169 @@ public class AAC implements ActionListener {
 		pane.add(ack, BorderLayout.PAGE_END);
 		pane.revalidate();
 		pane.requestFocusInWindow();
+		prefetch(cell, view);
 	} // loadImages(int, int)
 
+	/**
+	 * Works out how many pixels across and down each image in the grid
+	 * can take up, rounded down so that small changes in the window size
+	 * reuse the same decoded icons.
+	 *
+	 * @param width
+	 * 		The number of images across.
+	 * @param length
+	 * 		The number of images down.
+	 * @return
+	 * 		The size of an icon.
+	 */
+	private int cellSize(int width, int length) {
+		Dimension size = frame.getContentPane().getSize();
+		if (size.width <= 0 || size.height <= 0) {
+			size = frame.getPreferredSize();
+		} // if
+		return cellSize(size, width, length);
+	} // cellSize(int, int)
+
+	/**
+	 * Works out the size of an icon in a window of a given size.
+	 *
+	 * @param size
+	 * 		The size of the window.
+	 * @param width
+	 * 		The number of images across.
+	 * @param length
+	 * 		The number of images down.
+	 * @return
+	 * 		The size of an icon.
+	 */
+	private static int cellSize(Dimension size, int width, int length) {
+		int cell = Math.min((size.width - 2 * ARROW_WIDTH) / width,
+				(size.height - HEADER_HEIGHT) / length);
+		return Math.max(ICON_STEP, cell - cell % ICON_STEP);
+	} // cellSize(Dimension, int, int)
+
+	/**
+	 * Starts decoding the images for the next page and, on the home page,
+	 * the first page of each category, so that they show up at once.
+	 *
+	 * @param cell
+	 * 		The size of an icon.
+	 * @param view
+	 * 		What the session shows.
+	 */
+	private void prefetch(int cell, AACSession.View view) {
+		int pageSize = NUM_ACROSS * NUM_DOWN;
+		for (String upcoming : view.getUpcoming()) {
+			loader.prefetch(upcoming, cell, cell);
+		} // for
+		if (this.page instanceof AACMappings && view.getCategory().equals("")) {
+			AACMappings mappings = (AACMappings) this.page;
+			synchronized (session) {
+				for (String category : mappings.getImageLocs()) {
+					for (String first : mappings.getImageLocs(category, 0, pageSize)) {
+						loader.prefetch(first, cell, cell);
+					} // for
+				} // for
+			} // synchronized
+		} // if
+	} // prefetch(int, AACSession.View)
+
 	public static void main(String[] args) {
-		try {
-			// Set property as Kevin Dictionary
-			System.setProperty(
-					"freetts.voices",
-					"com.sun.speech.freetts.en.us" + ".cmu_us_kal.KevinVoiceDirectory");
+		// Set property as Kevin Dictionary
+		System.setProperty(
+				"freetts.voices",
+				"com.sun.speech.freetts.en.us" + ".cmu_us_kal.KevinVoiceDirectory");
 
-			// Register Engine
-			Central.registerEngineCentral(
-					"com.sun.speech.freetts" + ".jsapi.FreeTTSEngineCentral");
-			synthesizer = Central.createSynthesizer(new SynthesizerModeDesc(Locale.US));
+		// Load the voice, the mappings and the first page of icons at once
+		StartupTimer startup = new StartupTimer();
+		CompletableFuture<Speaker> voice = startup.run("voice", AAC::openSpeaker)
+				.thenCompose((speaker) -> startup.run("warm-up", () -> {
+					speaker.warmUp();
+					return speaker;
+				}));
+		CompletableFuture<AACMappings> mappings = startup.run("mappings", () -> {
+			// journal each edit as it is made with -Daac.journal=true
+			AACMappings loaded = Boolean.getBoolean("aac.journal")
+					? MappingsJournal.openBeside("AACMappings.txt")
+					: new AACMappings("AACMappings.txt");
+			// list the most used symbols first with -Daac.orderByUse=true
+			loaded.setOrderByUse(Boolean.getBoolean("aac.orderByUse"));
+			return loaded;
+		});
+		IconLoader loader = new IconLoader(new IconCache(), 2);
+		CompletableFuture<Integer> firstPage = mappings.thenCompose((loaded) ->
+				startup.run("icons", () -> preload(loaded, loader)));
 
-			// Allocate synthesizer
-			synthesizer.allocate();
+		long began = System.nanoTime();
+		firstPage.join();
+		AAC aac = new AAC(mappings.join(), loader);
+		startup.record("window", began);
 
-			// Resume Synthesizer
-			synthesizer.resume();
+		// Start speaking once the voice is ready
+		voice.whenComplete((speaker, error) -> {
+			if (error != null) {
+				error.printStackTrace();
+			} else {
+				aac.session.setSpeech(new SpeechDispatcher(speaker));
+				if (speaker instanceof AudioCache
+						&& Boolean.parseBoolean(System.getProperty("aac.prerender", "true"))) {
+					((AudioCache) speaker).prerender(mappings.join());
+				} // if
+			} // if/else
+			System.err.println(startup);
+			startup.close();
+		});
+	} // main(String[])
 
-		} catch (Exception e) {
-			e.printStackTrace();
+	/**
+	 * Gets something to speak with: cached audio from the FreeTTS voice if
+	 * it is available, or else a JSAPI synthesizer from a pool.
+	 *
+	 * @return
+	 * 		A speaker whose voice has been allocated.
+	 *
+	 * @throws Exception
+	 * 		If there is no way to speak.
+	 */
+	private static Speaker openSpeaker() throws Exception {
+		// Play cached audio, synthesizing each label only once
+		try {
+			AudioCache audio = new AudioCache(VOICE, AudioCache.DEFAULT_CAPACITY);
+			audio.allocate();
+			return audio;
+		} catch (IllegalArgumentException e) {
+			// Otherwise borrow a JSAPI synthesizer for each utterance
+			SynthesizerPool pool = new SynthesizerPool(SynthesizerPool::allocate, 1);
+			pool.checkout(VOICE, SPEAKER_TIMEOUT, TimeUnit.SECONDS).close();
+			return pool.speaker(VOICE, SPEAKER_TIMEOUT, TimeUnit.SECONDS);
 		} // try/catch
-		AAC aac = new AAC("AACMappings.txt");
-	} // main(String[])
+	} // openSpeaker()
+
+	/**
+	 * Decodes the icons on the first page of mappings, and the navigation
+	 * icons, at the size they will be shown in a new window.
+	 *
+	 * @param mappings
+	 * 		The mappings to be shown.
+	 * @param loader
+	 * 		What decodes the icons.
+	 * @return
+	 * 		The number of icons decoded.
+	 */
+	private static int preload(AACMappings mappings, IconLoader loader) {
+		for (String nav : NAV_ICONS) {
+			loader.getCache().get(nav);
+		} // for
+		int cell = cellSize(new Dimension(FRAME_SIZE, FRAME_SIZE), NUM_ACROSS, NUM_DOWN);
+		String[] first = mappings.getImageLocs(0, NUM_ACROSS * NUM_DOWN);
+		int count = first.length;
+		CompletableFuture<?>[] icons = new CompletableFuture<?>[count];
+		for (int i = 0; i < count; i++) {
+			icons[i] = loader.preload(first[i], cell, cell);
+		} // for
+		CompletableFuture.allOf(icons).join();
+		return count + NAV_ICONS.length;
+	} // preload(AACMappings, IconLoader)
 
 	/**
 	 * Responds to the click of a button. If the button is a category or action
@@ -181,16 +406,14 @@ public class AAC implements ActionListener {
 	public void actionPerformed(ActionEvent e) {
 		String actionCommand = e.getActionCommand();
 		if (actionCommand.equals("back")) {
-			this.startIndex -= NUM_ACROSS * NUM_DOWN;
-			this.endIndex -= NUM_ACROSS * NUM_DOWN;
+			session.previous();
 		} else if (actionCommand.equals("next")) {
-			this.startIndex += NUM_ACROSS * NUM_DOWN;
-			this.endIndex = Math.min(endIndex + NUM_ACROSS * NUM_DOWN, this.images.length);
+			session.next();
 		} else if (actionCommand.equals("save") && this.page instanceof AACMappings) {
-			((AACMappings) this.page).writeToFile("AACMappingsNew.txt");
-			this.images = this.page.getImageLocs();
-			this.startIndex = 0;
-			this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.length);
+			frame.setTitle("Saving...");
+			synchronized (session) {
+				saver.save((AACMappings) this.page);
+			} // synchronized
 		} else if (actionCommand.equals("add")) {
 			JFileChooser chooser = new JFileChooser();
 			int returnVal = chooser.showOpenDialog(frame);
@@ -200,32 +423,36 @@ public class AAC implements ActionListener {
 				String result = (String) JOptionPane.showInputDialog(frame, "What is the text?", "AAC Add",
 						JOptionPane.PLAIN_MESSAGE, null, null, "");
 				if (result != null && result.length() > 0) {
-					this.page.addItem(imageLoc, result);
+					session.addItem(imageLoc, result);
 				} // if
 			} // if
-			this.images = this.page.getImageLocs();
-			this.startIndex = 0;
-			this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.length);
+		} else if (actionCommand.equals("search")) {
+			query = ((JTextField) e.getSource()).getText().trim();
+			found = query.isEmpty() ? null : session.find(query, NUM_ACROSS * NUM_DOWN);
+		} else if (found != null && actionCommand.startsWith(FOUND)) {
+			SymbolIndex.Hit hit = found.get(Integer.parseInt(actionCommand.substring(FOUND.length())));
+			session.say(hit.getImageLoc(), hit.getText());
+			found = null;
+		} else if (actionCommand.equals(SENTENCE + "Speak")) {
+			session.speakSentence();
+		} else if (actionCommand.equals(SENTENCE + "Undo")) {
+			session.undo();
+		} else if (actionCommand.equals(SENTENCE + "Clear")) {
+			session.clearSentence();
+		} else if (actionCommand.equals(SENTENCE + "Replay")) {
+			session.replay();
+		} else if (actionCommand.equals("") && found != null) {
+			// the home button closes the search results
+			found = null;
 		} else if (actionCommand.equals("") && this.page instanceof AACMappings) {
-			((AACMappings) this.page).reset();
-			this.images = this.page.getImageLocs();
-			this.startIndex = 0;
-			this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.length);
+			// the home button goes up one level, which is home from a top category
+			session.back();
 		} else {
-			if (this.page.getCategory().equals("")) {
-				this.page.select(actionCommand);
-				this.images = this.page.getImageLocs();
-				this.startIndex = 0;
-				this.endIndex = Math.min(NUM_ACROSS * NUM_DOWN, this.images.length);
-			} else {
-				try {
-					String toSpeak = this.page.select(actionCommand);
-					synthesizer.speakPlainText(toSpeak, null);
-					synthesizer.waitEngineState(Synthesizer.QUEUE_EMPTY);
-				} catch (Exception e1) {
-					e1.printStackTrace();
-				} // try/catch
-			} // elif
+			try {
+				session.select(actionCommand);
+			} catch (Exception e1) {
+				e1.printStackTrace();
+			} // try/catch
 		} // elif
 		loadImages(NUM_ACROSS, NUM_DOWN);
 	} // actionPerformed(ActionListener)
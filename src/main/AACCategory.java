@@ -1,17 +1,118 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import edu.grinnell.csc207.util.NullKeyException;
 import edu.grinnell.csc207.util.AssociativeArray;
-import edu.grinnell.csc207.util.KeyNotFoundException;
+import edu.grinnell.csc207.util.ConcurrentAssociativeArray;
 
 /**
  * Represents the mappings for a single category of items that should
- * be displayed.
+ * be displayed. Many threads may read a category while one edits it;
+ * each read sees the items either before or after an edit.
+ *
+ * Each item counts how often it is used, with older uses counting for
+ * less: a use HALF_LIFE uses of the category ago counts half as much as
+ * one now. Rather than shrinking every count on each use, each use adds
+ * 2^(t / HALF_LIFE), where t is the number of uses of the category so
+ * far, so the counts only grow and their order never changes except by
+ * the item used. They are kept as base-2 logarithms, so they do not
+ * overflow, in AtomicLongs updated by compare-and-set, so counting a
+ * use takes no lock. In order-by-use mode the images are listed most
+ * used first, with ties in the order they were added. Using an item only
+ * notes that it moved; the next time the images are listed, each item
+ * that moved is swapped up past those now used less, and the ranking is
+ * only made again from scratch after an edit.
  *
  * @author Catie Baker
  * @author Sara Jaljaa
  */
 public class AACCategory implements AACPage {
 
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The number of uses of a category after which a use counts half as
+	 * much.
+	 */
+	static final double HALF_LIFE = 100;
+
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+	/**
+	 * The images of a category, most used first, and the version of the
+	 * items they were ranked from. A ranking is only read or changed by a
+	 * thread holding the lock of its category.
+	 */
+	private static class Ranking {
+		/** The items ranked. */
+		final AssociativeArray<String, String> items;
+
+		/** Their images, most used first. */
+		final String[] images;
+
+		/** The logarithm of the use count of each image, in the same order. */
+		final double[] weights;
+
+		/** The index of each image in images. */
+		final HashMap<String, Integer> positions;
+
+		/**
+		 * Creates a ranking.
+		 *
+		 * @param items
+		 * 		The items ranked.
+		 * @param images
+		 * 		Their images, most used first.
+		 * @param weights
+		 * 		The logarithm of the use count of each image.
+		 */
+		Ranking(AssociativeArray<String, String> items, String[] images, double[] weights) {
+			this.items = items;
+			this.images = images;
+			this.weights = weights;
+			this.positions = new HashMap<String, Integer>();
+			for (int i = 0; i < images.length; i++) {
+				this.positions.put(images[i], i);
+			} // for
+		} // Ranking(AssociativeArray<String, String>, String[], double[])
+
+		/**
+		 * Moves an image up past those used less than it now is, by swapping
+		 * it with the one above it until it is in place.
+		 *
+		 * @param imageLoc
+		 * 		The image, which is ignored if it was not ranked.
+		 * @param weight
+		 * 		The logarithm of its use count, which must not be less than it
+		 * 		was.
+		 */
+		void moveUp(String imageLoc, double weight) {
+			Integer position = this.positions.get(imageLoc);
+			if (position == null) {
+				return;
+			} // if
+			int i = position;
+			this.weights[i] = weight;
+			while (i > 0 && this.weights[i - 1] < weight) {
+				this.images[i] = this.images[i - 1];
+				this.weights[i] = this.weights[i - 1];
+				this.positions.put(this.images[i], i);
+				i--;
+			} // while
+			this.images[i] = imageLoc;
+			this.weights[i] = weight;
+			this.positions.put(imageLoc, i);
+		} // moveUp(String, double)
+	} // class Ranking
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
@@ -22,9 +123,42 @@ public class AACCategory implements AACPage {
 	protected String category;
 
 	/**
-	 * The image & text pairs of a category.
+	 * The image & text pairs of a category. Code that reads more than one
+	 * pair should read them from a single snapshot.
 	 */
-	protected AssociativeArray<String, String> items;
+	protected ConcurrentAssociativeArray<String, String> items;
+
+	/**
+	 * The logarithm of the use count of each image that has been used, as
+	 * the bits of a double.
+	 */
+	private ConcurrentHashMap<String, AtomicLong> uses;
+
+	/**
+	 * The number of times any item has been used.
+	 */
+	private AtomicLong ticks;
+
+	/**
+	 * Whether images are listed most used first.
+	 */
+	private volatile boolean orderByUse;
+
+	/**
+	 * The ranking, or null if there is none yet or it must be made again.
+	 * Guarded by lock.
+	 */
+	private Ranking ranking;
+
+	/**
+	 * The images used since the ranking was brought up to date.
+	 */
+	private Set<String> moved;
+
+	/**
+	 * The lock that guards the ranking.
+	 */
+	private final Object lock;
 
   // +--------------+-------------------------------------------------
   // | Constructors |
@@ -38,7 +172,13 @@ public class AACCategory implements AACPage {
 	 */
 	public AACCategory(String name) {
 		this.category = name;
-		this.items = new AssociativeArray<String, String>();
+		this.items = new ConcurrentAssociativeArray<String, String>();
+		this.uses = new ConcurrentHashMap<String, AtomicLong>();
+		this.ticks = new AtomicLong(0);
+		this.orderByUse = false;
+		this.ranking = null;
+		this.moved = ConcurrentHashMap.newKeySet();
+		this.lock = new Object();
 	} // AACCategory(String)
 
   // +---------+-----------------------------------------------------
@@ -78,7 +218,8 @@ public class AACCategory implements AACPage {
 	} // hasImage(String)
 
 	/**
-	 * Adds the image location, text pairing to the category.
+	 * Adds the image location, text pairing to the category. Null text is
+	 * reported on standard error and nothing is added.
 	 *
 	 * @param imageLoc
 	 * 		The location of the image.
@@ -86,6 +227,10 @@ public class AACCategory implements AACPage {
 	 * 		The text that image should speak.
 	 */
 	public void addItem(String imageLoc, String text) {
+		if (text == null) {
+			System.err.println("Cannot set an image to null text.");
+			return;
+		} // if
 		try {
 			this.items.set(imageLoc, text);
 		} catch (NullKeyException e) {
@@ -94,22 +239,99 @@ public class AACCategory implements AACPage {
 	} // addItem(String, String)
 
 	/**
-	 * Returns an array of all the images in the category.
+	 * Adds many image location, text pairings to the category at once,
+	 * as if by addItem, which is much faster for a large category.
+	 *
+	 * @param imageLocs
+	 * 		The locations of the images.
+	 * @param texts
+	 * 		The text each image should speak.
+	 */
+	public void addItems(String[] imageLocs, String[] texts) {
+		try {
+			this.items.setAll(imageLocs, texts);
+		} catch (NullKeyException e) {
+			System.err.println("Cannot set an image to null location.");
+		} // try/catch
+	} // addItems(String[], String[])
+
+	/**
+	 * Removes the image, and its text, from the category. Does nothing if
+	 * the image is not in the category.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 */
+	public void removeItem(String imageLoc) {
+		this.items.remove(imageLoc);
+		this.uses.remove(imageLoc);
+	} // removeItem(String)
+
+	/**
+	 * Returns an array of all the images in the category, in the order
+	 * they were added or, in order-by-use mode, most used first.
 	 *
 	 * @return
 	 * 		The array of image locations; if there are no images, it should
 	 * 		return an empty array.
 	 */
 	public String[] getImageLocs() {
-		String[] locations = new String[this.items.size()];
+		if (this.orderByUse) {
+			synchronized (this.lock) {
+				return this.ranked().images.clone();
+			} // synchronized
+		} // if
+		AssociativeArray<String, String> snapshot = this.items.snapshot();
+		String[] locations = new String[snapshot.size()];
 		for (int i = 0; i < locations.length; i++) {
-			locations[i] = this.items.pairs[i].key;
+			locations[i] = snapshot.pairs[i].key;
 		} // for
 		return locations;
 	} // getImageLocs()
 
 	/**
-	 * Returns the text associated with the given image in this category.
+	 * Returns some of the images in the category, copying no others.
+	 *
+	 * @param offset
+	 * 		The index of the first image wanted.
+	 * @param limit
+	 * 		The most images wanted.
+	 * @return
+	 * 		The images from offset on, at most limit of them.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If offset or limit is negative.
+	 */
+	public String[] getImageLocs(int offset, int limit) {
+		if (this.orderByUse) {
+			synchronized (this.lock) {
+				return AACPage.page(this.ranked().images, offset, limit);
+			} // synchronized
+		} else if (offset < 0 || limit < 0) {
+			throw new IllegalArgumentException("Negative offset or limit: " + offset + ", " + limit);
+		} // if/else
+		AssociativeArray<String, String> snapshot = this.items.snapshot();
+		int start = Math.min(offset, snapshot.size());
+		String[] locations = new String[Math.min(limit, snapshot.size() - start)];
+		for (int i = 0; i < locations.length; i++) {
+			locations[i] = snapshot.pairs[start + i].key;
+		} // for
+		return locations;
+	} // getImageLocs(int, int)
+
+	/**
+	 * Returns the number of images in the category.
+	 *
+	 * @return
+	 * 		The number of images.
+	 */
+	public int getImageCount() {
+		return this.items.size();
+	} // getImageCount()
+
+	/**
+	 * Returns the text associated with the given image in this category,
+	 * and counts a use of it.
 	 *
 	 * @param imageLoc
 	 * 		The location of the image.
@@ -120,10 +342,154 @@ public class AACCategory implements AACPage {
 	 *		If the image provided is not in the current category.
 	 */
 	public String select(String imageLoc) throws NoSuchElementException {
-		try {
-			return this.items.get(imageLoc);
-		} catch (KeyNotFoundException e) {
+		String text = this.items.getOrDefault(imageLoc, null);
+		if (text == null) {
 			throw new NoSuchElementException("Image does not exist in category.");
-		} // try/catch
+		} // if
+		this.use(imageLoc);
+		return text;
 	} // select(String)
+
+	/**
+	 * Counts a use of an image, without taking a lock.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 */
+	public void use(String imageLoc) {
+		double now = this.ticks.incrementAndGet() / HALF_LIFE;
+		AtomicLong count = this.uses.get(imageLoc);
+		if (count == null) {
+			count = this.uses.computeIfAbsent(imageLoc,
+					(key) -> new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY)));
+		} // if
+		long old;
+		long next;
+		do {
+			old = count.get();
+			next = Double.doubleToLongBits(sum(Double.longBitsToDouble(old), now));
+		} while (!count.compareAndSet(old, next));
+		if (this.orderByUse) {
+			this.moved.add(imageLoc);
+		} // if
+	} // use(String)
+
+	/**
+	 * Gets how much an image has been used, with older uses counting for
+	 * less.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @return
+	 * 		The number of uses, as if each use HALF_LIFE uses ago counted
+	 * 		for half; 0 if it has not been used.
+	 */
+	public double getUses(String imageLoc) {
+		return Math.pow(2, this.weight(imageLoc) - this.ticks.get() / HALF_LIFE);
+	} // getUses(String)
+
+	/**
+	 * Sets how much an image has been used, as returned by getUses, such
+	 * as when loading counts that were saved.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param uses
+	 * 		The number of uses.
+	 */
+	public void setUses(String imageLoc, double uses) {
+		double weight = (uses > 0)
+				? Math.log(uses) / Math.log(2) + this.ticks.get() / HALF_LIFE
+				: Double.NEGATIVE_INFINITY;
+		this.uses.put(imageLoc, new AtomicLong(Double.doubleToLongBits(weight)));
+		synchronized (this.lock) {
+			this.ranking = null;
+		} // synchronized
+	} // setUses(String, double)
+
+	/**
+	 * Sets whether images are listed most used first, rather than in the
+	 * order they were added.
+	 *
+	 * @param orderByUse
+	 * 		True to list the most used first.
+	 */
+	public void setOrderByUse(boolean orderByUse) {
+		synchronized (this.lock) {
+			this.orderByUse = orderByUse;
+			this.ranking = null;
+			this.moved.clear();
+		} // synchronized
+	} // setOrderByUse(boolean)
+
+	/**
+	 * Gets the images most used first. Each image used since the last call
+	 * is moved up into place; the ranking is only made again, by a stable
+	 * sort, if the items have been edited or a use count set since. The
+	 * caller must hold lock.
+	 *
+	 * @return
+	 * 		The ranking, which is not to be changed.
+	 */
+	private Ranking ranked() {
+		AssociativeArray<String, String> snapshot = this.items.snapshot();
+		if (this.ranking != null && this.ranking.items == snapshot) {
+			/* Each image's weight only grew, so moving each up in turn sorts them. */
+			Iterator<String> images = this.moved.iterator();
+			while (images.hasNext()) {
+				String image = images.next();
+				images.remove();
+				this.ranking.moveUp(image, this.weight(image));
+			} // while
+			return this.ranking;
+		} // if
+		this.moved.clear();
+		Integer[] order = new Integer[snapshot.size()];
+		double[] weights = new double[snapshot.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+			weights[i] = this.weight(snapshot.pairs[i].key);
+		} // for
+		Arrays.sort(order, (a, b) -> Double.compare(weights[b], weights[a]));
+		String[] images = new String[order.length];
+		double[] ranked = new double[order.length];
+		for (int i = 0; i < order.length; i++) {
+			images[i] = snapshot.pairs[order[i]].key;
+			ranked[i] = weights[order[i]];
+		} // for
+		this.ranking = new Ranking(snapshot, images, ranked);
+		return this.ranking;
+	} // ranked()
+
+	/**
+	 * Gets the logarithm of the use count of an image.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @return
+	 * 		The logarithm, or negative infinity if it has not been used.
+	 */
+	private double weight(String imageLoc) {
+		AtomicLong count = this.uses.get(imageLoc);
+		return (count == null) ? Double.NEGATIVE_INFINITY : Double.longBitsToDouble(count.get());
+	} // weight(String)
+
+	/**
+	 * Adds two numbers given as base-2 logarithms.
+	 *
+	 * @param a
+	 * 		The logarithm of one number.
+	 * @param b
+	 * 		The logarithm of the other.
+	 * @return
+	 * 		The logarithm of their sum.
+	 */
+	static double sum(double a, double b) {
+		double high = Math.max(a, b);
+		double low = Math.min(a, b);
+		if (low == Double.NEGATIVE_INFINITY) {
+			return high;
+		} // if
+		return high + Math.log1p(Math.pow(2, low - high)) / Math.log(2);
+	} // sum(double, double)
 } // class AACCategory
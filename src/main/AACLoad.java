@@ -0,0 +1,261 @@
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates load on an AACServer: many simulated people, each of whom
+ * starts a session, picks a category, looks through its pages, selects
+ * an item and goes home, over and over. Reports how many requests were
+ * made, how many failed and how long they took.
+ *
+ *   java AACLoad [base URL] [sessions] [rounds]
+ *
+ * @author Sara Jaljaa
+ */
+public class AACLoad {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * Finds the images in a session's JSON.
+	 */
+	static final Pattern IMAGES = Pattern.compile("\"images\":\\[(.*?)\\]");
+
+	/**
+	 * Finds the session ID in a session's JSON.
+	 */
+	static final Pattern SESSION = Pattern.compile("\"session\":\"([^\"]*)\"");
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * Where the server is, such as "http://localhost:8207".
+	 */
+	private String base;
+
+	/**
+	 * What makes requests.
+	 */
+	private HttpClient client;
+
+	/**
+	 * The threads that simulated sessions run on.
+	 */
+	private ExecutorService threads;
+
+	/**
+	 * How long each request took, in microseconds.
+	 */
+	private ConcurrentLinkedQueue<Long> latencies;
+
+	/**
+	 * The number of requests that failed.
+	 */
+	private AtomicInteger failures;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates a load generator.
+	 *
+	 * @param base
+	 * 		Where the server is.
+	 * @param threads
+	 * 		The threads to run simulated sessions on.
+	 */
+	public AACLoad(String base, ExecutorService threads) {
+		this.base = base;
+		this.client = HttpClient.newHttpClient();
+		this.threads = threads;
+		this.latencies = new ConcurrentLinkedQueue<Long>();
+		this.failures = new AtomicInteger();
+	} // AACLoad(String, ExecutorService)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Runs sessions at once, each for a number of rounds, and waits for
+	 * them all to finish.
+	 *
+	 * @param sessions
+	 * 		The number of sessions.
+	 * @param rounds
+	 * 		The number of times each session visits a category.
+	 */
+	public void run(int sessions, int rounds) {
+		List<CompletableFuture<Void>> running = new ArrayList<CompletableFuture<Void>>();
+		for (int i = 0; i < sessions; i++) {
+			int seed = i;
+			running.add(CompletableFuture.runAsync(() -> this.session(seed, rounds),
+					this.threads));
+		} // for
+		CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[0])).join();
+	} // run(int, int)
+
+	/**
+	 * Gets the number of requests made.
+	 *
+	 * @return
+	 * 		The number of requests.
+	 */
+	public int getRequests() {
+		return this.latencies.size();
+	} // getRequests()
+
+	/**
+	 * Gets the number of requests that failed.
+	 *
+	 * @return
+	 * 		The number of failures.
+	 */
+	public int getFailures() {
+		return this.failures.get();
+	} // getFailures()
+
+	/**
+	 * Summarizes the requests made.
+	 *
+	 * @return
+	 * 		A string of the form "N requests, F failed, latency p50 A ms,
+	 * 		p99 B ms, max C ms".
+	 */
+	public String toString() {
+		long[] sorted = this.latencies.stream().mapToLong(Long::longValue).toArray();
+		Arrays.sort(sorted);
+		if (sorted.length == 0) {
+			return "0 requests";
+		} // if
+		return String.format("%d requests, %d failed, latency p50 %.1f ms, p99 %.1f ms,"
+				+ " max %.1f ms", sorted.length, this.failures.get(),
+				sorted[sorted.length / 2] / 1000.0, sorted[sorted.length * 99 / 100] / 1000.0,
+				sorted[sorted.length - 1] / 1000.0);
+	} // toString()
+
+	/**
+	 * Runs a load test against a server.
+	 *
+	 * @param args
+	 * 		The server's base URL, the number of sessions and the number of
+	 * 		rounds, each optional.
+	 */
+	public static void main(String[] args) {
+		String base = (args.length > 0) ? args[0] : "http://localhost:" + AACServer.DEFAULT_PORT;
+		int sessions = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+		int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+		ExecutorService threads = AACServer.threads();
+		AACLoad load = new AACLoad(base, threads);
+		long began = System.nanoTime();
+		load.run(sessions, rounds);
+		double seconds = (System.nanoTime() - began) / 1e9;
+		System.out.println(load + String.format(", %.0f requests/s",
+				load.getRequests() / seconds));
+		threads.shutdown();
+	} // main(String[])
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Runs one simulated session.
+	 *
+	 * @param seed
+	 * 		Picks which images the session selects.
+	 * @param rounds
+	 * 		The number of categories the session visits.
+	 */
+	private void session(int seed, int rounds) {
+		String home = this.request("POST", "/sessions");
+		Matcher matcher = SESSION.matcher(home);
+		if (!matcher.find()) {
+			return;
+		} // if
+		String path = "/sessions/" + matcher.group(1);
+		for (int round = 0; round < rounds; round++) {
+			String[] categories = images(home);
+			if (categories.length == 0) {
+				break;
+			} // if
+			String category = categories[(seed + round) % categories.length];
+			String[] items = images(this.request("POST", path + "/select?image="
+					+ URLEncoder.encode(category, StandardCharsets.UTF_8)));
+			this.request("POST", path + "/next");
+			this.request("POST", path + "/previous");
+			if (items.length > 0) {
+				this.request("POST", path + "/select?image="
+						+ URLEncoder.encode(items[(seed + round) % items.length], StandardCharsets.UTF_8));
+			} // if
+			home = this.request("POST", path + "/home");
+		} // for
+		this.request("DELETE", path);
+	} // session(int, int)
+
+	/**
+	 * Makes a request, timing it.
+	 *
+	 * @param method
+	 * 		The HTTP method.
+	 * @param path
+	 * 		The path and query.
+	 * @return
+	 * 		The body of the response, or "" if it failed.
+	 */
+	private String request(String method, String path) {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(this.base + path))
+				.method(method, HttpRequest.BodyPublishers.noBody()).build();
+		long began = System.nanoTime();
+		try {
+			HttpResponse<String> response = this.client.send(request,
+					HttpResponse.BodyHandlers.ofString());
+			if (response.statusCode() >= 400) {
+				this.failures.incrementAndGet();
+			} // if
+			return response.body();
+		} catch (Exception e) {
+			this.failures.incrementAndGet();
+			return "";
+		} finally {
+			this.latencies.add((System.nanoTime() - began) / 1000);
+		} // try/catch/finally
+	} // request(String, String)
+
+	/**
+	 * Reads the images out of a session's JSON.
+	 *
+	 * @param json
+	 * 		The JSON.
+	 * @return
+	 * 		The image locations.
+	 */
+	static String[] images(String json) {
+		Matcher matcher = IMAGES.matcher(json);
+		if (!matcher.find() || matcher.group(1).isEmpty()) {
+			return new String[0];
+		} // if
+		String[] quoted = matcher.group(1).split(",");
+		for (int i = 0; i < quoted.length; i++) {
+			quoted[i] = quoted[i].substring(1, quoted[i].length() - 1);
+		} // for
+		return quoted;
+	} // images(String)
+} // class AACLoad
@@ -1,18 +1,30 @@
+import java.util.ArrayDeque;
+import java.util.List;
 import java.util.NoSuchElementException;
 import edu.grinnell.csc207.util.AssociativeArray;
-import edu.grinnell.csc207.util.KeyNotFoundException;
 import edu.grinnell.csc207.util.NullKeyException;
 
-import java.io.IOException;
+import java.io.ByteArrayOutputStream;
 import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.PrintWriter;
-import java.io.File;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
 
 /**
- * Creates a set of mappings of an AAC that has two levels, one for
- * categories and then within each category, it has images that have
- * associated text to be spoken. This class provides the methods for
+ * Creates a set of mappings of an AAC whose categories may be nested to
+ * any depth: the default category holds categories, and each category
+ * holds images that have associated text to be spoken and, possibly,
+ * further categories. Every category is indexed by its image, along
+ * with the category it is nested in, so selecting an image takes the
+ * same time at any depth. Category images should therefore be unique
+ * across the whole board. This class provides the methods for
  * interacting with the categories and updating the set of images that
  * would be shown and handling an interactions.
  *
@@ -21,14 +33,36 @@ import java.io.File;
  */
 public class AACMappings implements AACPage {
 
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The size of the buffer used when writing mappings to a file.
+	 */
+	static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * What is added to the name of a mappings file to name the file that
+	 * stores how often each image is used.
+	 */
+	static final String USES_SUFFIX = ".uses";
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
 
 	/**
-	 * Stores an AA that maps filenames to categories.
+	 * Stores an AA that maps filenames to categories, at every depth, with
+	 * each category after the one it is nested in.
 	 */
-	private AssociativeArray<String, AACCategory> categories;
+	protected AssociativeArray<String, AACCategory> categories;
+
+	/**
+	 * Stores an AA that maps the image of each category to the image of
+	 * the category it is nested in ("" for the default category).
+	 */
+	protected AssociativeArray<String, String> parents;
 
 	/**
 	 * The current category.
@@ -39,6 +73,51 @@ public class AACMappings implements AACPage {
 	 * The default category.
 	 */
 	private AACCategory root;
+
+	/**
+	 * The image of the current category ("" for the default category).
+	 */
+	private String currentLoc;
+
+	/**
+	 * The images of the categories shown before the current one, most
+	 * recent first, for going back.
+	 */
+	private ArrayDeque<String> history;
+
+	/**
+	 * The journal that edits are recorded in, or null if they are not
+	 * recorded.
+	 */
+	private MappingsJournal journal;
+
+	/**
+	 * The index of every label, for search, or null until the first
+	 * search. Once made, it follows every edit made through the mappings.
+	 */
+	private SymbolIndex index;
+
+	/**
+	 * Learns from every symbol spoken which ones tend to follow which, to
+	 * predict the next.
+	 */
+	private Predictor predictor;
+
+	/**
+	 * The sentence being composed, or null if each selection is spoken on
+	 * its own.
+	 */
+	private SentenceStrip sentence;
+
+	/**
+	 * Whether every category lists its most used images first.
+	 */
+	private boolean orderByUse;
+
+	/**
+	 * The file the mappings were read from, or null if they were not.
+	 */
+	protected String source;
 	
   // +--------------+-------------------------------------------------
   // | Constructors |
@@ -64,41 +143,91 @@ public class AACMappings implements AACPage {
 	 * represents the file with two categories, food and clothing and food has
 	 * french fries and watermelon and clothing has a collared shirt.
 	 *
+	 * Categories may be nested by adding a > for each level: an item
+	 * followed by lines with one more > becomes a category holding them.
+	 * For instance,
+	 *
+	 * img/food/plate.png food
+	 * >img/food/bowl.png fruit
+	 * >>img/food/icons8-watermelon-96.png watermelon
+	 * >img/food/icons8-french-fries-96.png french fries
+	 *
+	 * puts a fruit category, holding watermelon, inside food.
+	 *
+	 * Lines that cannot be read are skipped and reported on standard error
+	 * with their line numbers, as is a file that cannot be opened.
+	 *
+	 * How often each image has been used is read from the file named by
+	 * usesFile(filename), if there is one.
+	 *
 	 * @param filename
 	 * 		The name of the file that stores the mapping information.
 	 */
 	public AACMappings(String filename) {
+		this();
+		this.source = filename;
+		try (FileChannel channel = FileChannel.open(Paths.get(filename))) {
+			MappingsParser parser = new MappingsParser(this, filename);
+			parser.parse(channel);
+			for (String problem : parser.getProblems()) {
+				System.err.println(problem);
+			} // for
+		} catch (IOException e) {
+			System.err.println("Cannot read " + filename + ": " + e.getMessage());
+		} // try/catch
+		this.loadUses(usesFile(filename));
+	} // AACMappings(String)
+
+	/**
+	 * Creates an empty set of mappings, with no categories.
+	 */
+	AACMappings() {
 		this.categories = new AssociativeArray<String, AACCategory>();
+		this.parents = new AssociativeArray<String, String>();
 		this.root = new AACCategory("");
 		this.current = this.root;
-		String line = "";
+		this.currentLoc = "";
+		this.history = new ArrayDeque<String>();
+		this.journal = null;
+		this.index = null;
+		this.predictor = new Predictor();
+		this.orderByUse = false;
+		this.source = null;
+		this.sentence = null;
+	} // AACMappings()
 
-		try {
-			BufferedReader br = new BufferedReader(new FileReader(filename));
-			/* Until EOF, read a line and store the file name + text. */
-			while ((line = br.readLine()) != null) {
-				String[] metadata = line.split(" ", 2);
-				if (metadata.length > 1) {
-					/* If line is a category, add it to the rest of the categories & update
-					the current category to match. */
-					if (line.charAt(0) != '>') {
-						this.reset();
-						this.addItem(metadata[0], metadata[1]);
-						this.current = this.categories.get(metadata[0]);
-					/* If line is not a category & instead an item, add it to the current
-					category.*/
-					} else {
-						this.addItem(metadata[0].substring(1), metadata[1]);
-					} // elif
-				} // if
-			} // while
-			this.current = this.root;
-			br.close();
-		} catch (IOException | KeyNotFoundException e) {
-			/* Doesn't matter (IO) & shouldn't ever happen (KNF). */
-			return;
-		} // try/catch
-	} // AACMappings(String)
+	/**
+	 * Creates a set of mappings by memory-mapping the provided file, in the
+	 * same format as AACMappings(String), and parsing it directly out of the
+	 * mapped region. This avoids copying the file through a reader, which
+	 * matters for very large files.
+	 *
+	 * @param filename
+	 * 		The name of the file that stores the mapping information.
+	 * @return
+	 * 		The new mappings.
+	 *
+	 * @throws IOException
+	 * 		If the file cannot be opened or mapped.
+	 */
+	public static AACMappings mapFile(String filename) throws IOException {
+		AACMappings mappings = new AACMappings();
+		mappings.source = filename;
+		try (FileChannel channel = FileChannel.open(Paths.get(filename))) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(filename + " is too large to map");
+			} // if
+			MappedByteBuffer buffer =
+					channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			MappingsParser parser = new MappingsParser(mappings, filename);
+			parser.parse(buffer);
+			for (String problem : parser.getProblems()) {
+				System.err.println(problem);
+			} // for
+		} // try
+		mappings.loadUses(usesFile(filename));
+		return mappings;
+	} // mapFile(String)
 
   // +---------+-----------------------------------------------------
   // | Helpers |
@@ -114,6 +243,282 @@ public class AACMappings implements AACPage {
 		return this.current.equals(this.root);
 	} // atRoot()
 
+	/**
+	 * Determines whether an image is that of a category nested directly in
+	 * another.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the outer category ("" for the default category).
+	 * @param imageLoc
+	 * 		The image.
+	 * @return
+	 * 		True if selecting the image in the outer category opens a
+	 * 		category, false otherwise.
+	 */
+	private boolean isSubcategory(String categoryLoc, String imageLoc) {
+		return categoryLoc.equals(this.parents.getOrDefault(imageLoc, null));
+	} // isSubcategory(String, String)
+
+	/**
+	 * Adds an image to, or removes an image from, a category. Adding to the
+	 * default category adds a category; adding an image that is already a
+	 * category in the target renames it; removing a category removes every
+	 * category nested in it.
+	 *
+	 * @param targetLoc
+	 * 		The image of the category to edit ("" for the default category).
+	 * @param target
+	 * 		The category to edit.
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param text
+	 * 		The text associated with the image, or null to remove it.
+	 */
+	private void edit(String targetLoc, AACCategory target, String imageLoc, String text) {
+		if (text == null) {
+			if (this.isSubcategory(targetLoc, imageLoc)) {
+				this.removeCategory(imageLoc);
+			} // if
+			target.removeItem(imageLoc);
+			if (this.index != null) {
+				this.index.remove(targetLoc, imageLoc);
+			} // if
+			this.predictor.forget(targetLoc, imageLoc);
+		} else if (target == this.root || this.isSubcategory(targetLoc, imageLoc)) {
+			this.addCategory(targetLoc, imageLoc, text);
+		} else {
+			target.addItem(imageLoc, text);
+			if (this.index != null) {
+				this.index.add(targetLoc, imageLoc, text);
+			} // if
+			this.predictor.relabel(targetLoc, imageLoc, text);
+		} // if/else
+	} // edit(String, AACCategory, String, String)
+
+	/**
+	 * Gets the search index, indexing every label if this is the first
+	 * search.
+	 *
+	 * @return
+	 * 		The index.
+	 */
+	private SymbolIndex index() {
+		if (this.index == null) {
+			this.index = SymbolIndex.of(this);
+		} // if
+		return this.index;
+	} // index()
+
+	/**
+	 * Removes a category, and every category nested in it, from the index.
+	 * Goes back to the default category if the current category is one of
+	 * them.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category.
+	 */
+	private void removeCategory(String categoryLoc) {
+		ArrayDeque<String> doomed = new ArrayDeque<String>();
+		doomed.push(categoryLoc);
+		while (!doomed.isEmpty()) {
+			String loc = doomed.pop();
+			AACCategory category = this.categories.getOrDefault(loc, null);
+			if (category == null) {
+				continue;
+			} // if
+			for (String imageLoc : category.getImageLocs()) {
+				if (this.isSubcategory(loc, imageLoc)) {
+					doomed.push(imageLoc);
+				} // if
+				if (this.index != null) {
+					this.index.remove(loc, imageLoc);
+				} // if
+				this.predictor.forget(loc, imageLoc);
+			} // for
+			this.categories.remove(loc);
+			this.parents.remove(loc);
+			if (category == this.current) {
+				this.reset();
+			} // if
+		} // while
+	} // removeCategory(String)
+
+	/**
+	 * Replays an edit recorded in a journal.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category edited ("" for the default category).
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param text
+	 * 		The text associated with the image, or null to remove it.
+	 */
+	void apply(String categoryLoc, String imageLoc, String text) {
+		AACCategory target = categoryLoc.isEmpty()
+				? this.root : this.categories.getOrDefault(categoryLoc, null);
+		if (target != null) {
+			this.edit(categoryLoc, target, imageLoc, text);
+		} // if
+	} // apply(String, String, String)
+
+	/**
+	 * Records an edit to the current category in the journal, if there is
+	 * one.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param text
+	 * 		The text associated with the image, or null if it was removed.
+	 */
+	private void log(String imageLoc, String text) {
+		if (this.journal == null || imageLoc == null) {
+			return;
+		} // if
+		try {
+			if (text == null) {
+				this.journal.recordRemove(this.currentLoc, imageLoc);
+			} else {
+				this.journal.recordAdd(this.currentLoc, imageLoc, text);
+			} // if/else
+		} catch (IOException e) {
+			System.err.println("Cannot journal edit: " + e.getMessage());
+		} // try/catch
+	} // log(String, String)
+
+	/**
+	 * Sets the journal that edits are recorded in.
+	 *
+	 * @param journal
+	 * 		The journal, or null to stop recording edits.
+	 */
+	void setJournal(MappingsJournal journal) {
+		this.journal = journal;
+	} // setJournal(MappingsJournal)
+
+	/**
+	 * Gets the journal that edits are recorded in.
+	 *
+	 * @return
+	 * 		The journal, or null if edits are not recorded.
+	 */
+	MappingsJournal getJournal() {
+		return this.journal;
+	} // getJournal()
+
+	/**
+	 * Adds a category to the default category, or finds the category that
+	 * is already stored under the same image.
+	 *
+	 * @param imageLoc
+	 * 		The location of the category's image.
+	 * @param name
+	 * 		The name of the category.
+	 * @return
+	 * 		The category stored under imageLoc.
+	 */
+	AACCategory addCategory(String imageLoc, String name) {
+		return this.addCategory("", imageLoc, name);
+	} // addCategory(String, String)
+
+	/**
+	 * Adds a category to another category, or finds the category that is
+	 * already stored under the same image.
+	 *
+	 * @param parentLoc
+	 * 		The image of the category to add it to ("" for the default
+	 * 		category).
+	 * @param imageLoc
+	 * 		The location of the category's image.
+	 * @param name
+	 * 		The name of the category.
+	 * @return
+	 * 		The category stored under imageLoc.
+	 *
+	 * @throws NoSuchElementException
+	 * 		If there is no category under parentLoc.
+	 */
+	AACCategory addCategory(String parentLoc, String imageLoc, String name)
+			throws NoSuchElementException {
+		AACCategory category = this.register(parentLoc, imageLoc, name);
+		AACCategory parent = parentLoc.isEmpty()
+				? this.root : this.categories.getOrDefault(parentLoc, null);
+		parent.addItem(imageLoc, name);
+		if (this.index != null) {
+			this.index.add(parentLoc, imageLoc, name);
+		} // if
+		return category;
+	} // addCategory(String, String, String)
+
+	/**
+	 * Makes an image of a category open a category of its own, or finds
+	 * the category that is already stored under the same image, without
+	 * adding the image to the parent category. Loaders that add the
+	 * images in bulk, with addItems, use this.
+	 *
+	 * @param parentLoc
+	 * 		The image of the category it is in ("" for the default
+	 * 		category).
+	 * @param imageLoc
+	 * 		The location of the category's image.
+	 * @param name
+	 * 		The name of the category.
+	 * @return
+	 * 		The category stored under imageLoc.
+	 *
+	 * @throws NoSuchElementException
+	 * 		If there is no category under parentLoc.
+	 */
+	AACCategory register(String parentLoc, String imageLoc, String name)
+			throws NoSuchElementException {
+		if (!parentLoc.isEmpty() && !this.categories.hasKey(parentLoc)) {
+			throw new NoSuchElementException("No category " + parentLoc);
+		} // if
+		AACCategory category = this.categories.getOrDefault(imageLoc, null);
+		if (category == null) {
+			category = new AACCategory(name);
+			category.setOrderByUse(this.orderByUse);
+			try {
+				this.categories.set(imageLoc, category);
+				this.parents.set(imageLoc, parentLoc);
+			} catch (NullKeyException e) {
+				/* Nothing to index; the parent below reports the null location. */
+			} // try/catch
+		} else {
+			category.category = name;
+		} // if/else
+		return category;
+	} // register(String, String, String)
+
+	/**
+	 * Adds many images to a category at once, copying its items only once,
+	 * as AACCategory.addItems does. Images of categories must have been
+	 * registered first.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category ("" for the default category).
+	 * @param imageLocs
+	 * 		The locations of the images.
+	 * @param texts
+	 * 		The text of each image.
+	 *
+	 * @throws NoSuchElementException
+	 * 		If there is no category under categoryLoc.
+	 */
+	void addItems(String categoryLoc, String[] imageLocs, String[] texts)
+			throws NoSuchElementException {
+		AACCategory category = categoryLoc.isEmpty()
+				? this.root : this.categories.getOrDefault(categoryLoc, null);
+		if (category == null) {
+			throw new NoSuchElementException("No category " + categoryLoc);
+		} // if
+		category.addItems(imageLocs, texts);
+		if (this.index != null) {
+			for (int i = 0; i < imageLocs.length; i++) {
+				this.index.add(categoryLoc, imageLocs[i], texts[i]);
+			} // for
+		} // if
+	} // addItems(String, String[], String[])
+
   // +---------+-----------------------------------------------------
   // | Methods |
   // +---------+
@@ -123,8 +528,29 @@ public class AACMappings implements AACPage {
 	 */
 	public void reset() {
 		this.current = this.root;
+		this.currentLoc = "";
+		this.history.clear();
 	} // reset()
 
+	/**
+	 * Goes back to the category shown before the current one, skipping any
+	 * that have since been removed, or to the default category if there is
+	 * none.
+	 */
+	public void back() {
+		while (!this.history.isEmpty()) {
+			String loc = this.history.pop();
+			AACCategory previous = loc.isEmpty()
+					? this.root : this.categories.getOrDefault(loc, null);
+			if (previous != null) {
+				this.current = previous;
+				this.currentLoc = loc;
+				return;
+			} // if
+		} // while
+		this.reset();
+	} // back()
+
 	/**
 	 * Gets the name of the current category.
 	 *
@@ -160,15 +586,166 @@ public class AACMappings implements AACPage {
 	public String[] getImageLocs() {
 		return this.current.getImageLocs();
 	} // getImageLocs()
+
+	/**
+	 * Provides some of the images in the current category, copying no
+	 * others.
+	 *
+	 * @param offset
+	 * 		The index of the first image wanted.
+	 * @param limit
+	 * 		The most images wanted.
+	 * @return
+	 * 		The images from offset on, at most limit of them.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If offset or limit is negative.
+	 */
+	public String[] getImageLocs(int offset, int limit) {
+		return this.current.getImageLocs(offset, limit);
+	} // getImageLocs(int, int)
+
+	/**
+	 * Provides the number of images in the current category.
+	 *
+	 * @return
+	 * 		The number of images.
+	 */
+	public int getImageCount() {
+		return this.current.getImageCount();
+	} // getImageCount()
 	
+	/**
+	 * Provides an array of all the images in a category, without making it
+	 * the current category.
+	 *
+	 * @param categoryLoc
+	 * 		The location of the category's image.
+	 * @return
+	 * 		The array of images in that category; if there is no such
+	 * 		category, it returns an empty array.
+	 */
+	public String[] getImageLocs(String categoryLoc) {
+		AACCategory category = this.categories.getOrDefault(categoryLoc, null);
+		return (category == null) ? new String[0] : category.getImageLocs();
+	} // getImageLocs(String)
+
+	/**
+	 * Provides some of the images in a category, without making it the
+	 * current category.
+	 *
+	 * @param categoryLoc
+	 * 		The location of the category's image.
+	 * @param offset
+	 * 		The index of the first image wanted.
+	 * @param limit
+	 * 		The most images wanted.
+	 * @return
+	 * 		The images from offset on, at most limit of them; empty if there
+	 * 		is no such category.
+	 */
+	public String[] getImageLocs(String categoryLoc, int offset, int limit) {
+		AACCategory category = this.categories.getOrDefault(categoryLoc, null);
+		return (category == null) ? new String[0] : category.getImageLocs(offset, limit);
+	} // getImageLocs(String, int, int)
+
+	/**
+	 * Finds the images, in any category, whose text best matches what has
+	 * been typed so far, as described for SymbolIndex.search. The first
+	 * search indexes every label; after that, the index is kept up to date
+	 * as images are added and removed.
+	 *
+	 * @param query
+	 * 		What has been typed so far.
+	 * @param limit
+	 * 		The most hits wanted.
+	 * @return
+	 * 		The hits, best first, each with the image of its category.
+	 */
+	public List<SymbolIndex.Hit> search(String query, int limit) {
+		return this.index().search(query, limit);
+	} // search(String, int)
+
+	/**
+	 * Finds the images, in any category, whose text best matches a query
+	 * that may be misspelled, as described for SymbolIndex.fuzzySearch.
+	 *
+	 * @param query
+	 * 		The query, in whole words.
+	 * @param maxDistance
+	 * 		The most edits allowed for each word.
+	 * @param limit
+	 * 		The most hits wanted.
+	 * @return
+	 * 		The hits, best first, each with the image of its category.
+	 */
+	public List<SymbolIndex.Hit> fuzzySearch(String query, int maxDistance, int limit) {
+		return this.index().fuzzySearch(query, maxDistance, limit);
+	} // fuzzySearch(String, int, int)
+
+	/**
+	 * Predicts the symbols, in any category, most likely to be spoken next,
+	 * from those spoken before, as described for Predictor.predict.
+	 *
+	 * @param limit
+	 * 		The most predictions wanted.
+	 * @return
+	 * 		The predictions, most likely first, each with the image of its
+	 * 		category.
+	 */
+	public List<SymbolIndex.Hit> predict(int limit) {
+		return this.predictor.predict(limit);
+	} // predict(int)
+
+	/**
+	 * Gets the predictor that learns from the symbols spoken, such as to
+	 * show its predictions as a PredictionPage.
+	 *
+	 * @return
+	 * 		The predictor.
+	 */
+	public Predictor getPredictor() {
+		return this.predictor;
+	} // getPredictor()
+
+	/**
+	 * Sets whether the text of the images selected is collected into a
+	 * sentence, to be spoken all at once, rather than spoken as each is
+	 * selected.
+	 *
+	 * @param composing
+	 * 		True to collect a sentence. Turning it on when it is already on
+	 * 		keeps the sentence so far; turning it off discards it.
+	 */
+	public void setComposing(boolean composing) {
+		if (!composing) {
+			this.sentence = null;
+		} else if (this.sentence == null) {
+			this.sentence = new SentenceStrip();
+		} // if/else
+	} // setComposing(boolean)
+
+	/**
+	 * Gets the sentence being composed.
+	 *
+	 * @return
+	 * 		The sentence, or null if not composing.
+	 */
+	public SentenceStrip getSentence() {
+		return this.sentence;
+	} // getSentence()
+
 	/**
 	 * Given the image location selected, it determines the action to be
 	 * taken. This can be updating the information that should be displayed
-	 * or returning text to be spoken. If the image provided is a category,
-	 * it updates the AAC's current category to be the category associated
-	 * with that image and returns the empty string. If the AAC is currently
-	 * in a category and the image provided is in that category, it returns
-	 * the text to be spoken.
+	 * or returning text to be spoken. If the image provided is a category
+	 * in the current category, it updates the AAC's current category to be
+	 * the category associated with that image, remembering the old one for
+	 * back, and returns the empty string. If the AAC is currently in a
+	 * category and the image provided is in that category, it returns the
+	 * text to be spoken, and the predictor learns that it was chosen. When
+	 * composing, the text is also added to the end of the sentence, to be
+	 * spoken with the rest of it.
 	 *
 	 * @param imageLoc
 	 * 		The location where the image is stored.
@@ -180,20 +757,28 @@ public class AACMappings implements AACPage {
 	 * 		If the image provided is not in the current category.
 	 */
 	public String select(String imageLoc) throws NoSuchElementException {
-		try {
-			if (atRoot()) {
-				this.current = this.categories.get(imageLoc);
-				return "";
-			} // if
-			return this.current.select(imageLoc);
-		} catch (KeyNotFoundException e) {
-			throw new NoSuchElementException();
-		} // try/catch
+		if (this.isSubcategory(this.currentLoc, imageLoc)) {
+			AACCategory next = this.categories.getOrDefault(imageLoc, null);
+			this.current.use(imageLoc);
+			this.history.push(this.currentLoc);
+			this.current = next;
+			this.currentLoc = imageLoc;
+			return "";
+		} else if (atRoot()) {
+			throw new NoSuchElementException("Image is not a category.");
+		} // if/else
+		String text = this.current.select(imageLoc);
+		this.predictor.record(this.currentLoc, imageLoc, text);
+		if (this.sentence != null) {
+			this.sentence.append(imageLoc, text);
+		} // if
+		return text;
 	} // select(String)
 
 	/**
 	 * Adds the mapping to the current category (or the default category if
-	 * that is the current category).
+	 * that is the current category). Null text is reported on standard
+	 * error and nothing is added; use removeItem to remove an image.
 	 *
 	 * @param imageLoc
 	 * 		The location of the image.
@@ -201,18 +786,27 @@ public class AACMappings implements AACPage {
 	 * 		The text associated with the image.
 	 */
 	public void addItem(String imageLoc, String text) {
-		try {
-			if (atRoot()) {
-				this.current.items.set(imageLoc, text);
-				this.categories.set(imageLoc, new AACCategory(text));
-			} else {
-				this.current.addItem(imageLoc, text);
-			} // elif
-		} catch (NullKeyException e) {
+		if (text == null) {
+			System.err.println("Cannot set an image to null text.");
 			return;
-		} // try/catch
+		} // if
+		this.edit(this.currentLoc, this.current, imageLoc, text);
+		this.log(imageLoc, text);
 	} // addItem(String, String)
 
+	/**
+	 * Removes the image from the current category. If the current category
+	 * is the default category, removes the category with that image, along
+	 * with all of its items. Does nothing if there is no such image.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 */
+	public void removeItem(String imageLoc) {
+		this.edit(this.currentLoc, this.current, imageLoc, null);
+		this.log(imageLoc, null);
+	} // removeItem(String)
+
 	/**
 	 * Writes the ACC mappings stored to a file. The file is formatted as
 	 * the text location of the category followed by the text name of the
@@ -229,35 +823,194 @@ public class AACMappings implements AACPage {
 	 * >img/clothing/collaredshirt.png collared shirt
 	 *
 	 * represents the file with two categories, food and clothing and food has
-	 * french fries and watermelon and clothing has a collared shirt.
+	 * french fries and watermelon and clothing has a collared shirt. Each
+	 * nested category is written, with a > for each level, right after the
+	 * line for its image, as described for AACMappings(String).
+	 *
+	 * If the mappings are written, how often each image has been used is
+	 * then written to the file named by usesFile(filename).
 	 *
 	 * @param filename
 	 * 		The name of the file to write the AAC mapping to.
 	 */
 	public void writeToFile(String filename) {
-		try {
-			/* To write to the file directly. */
-			PrintWriter pen = new PrintWriter(new File(filename));
-			AACCategory category;
-
-			/* The category & image paths. */
-			String[] paths = this.categories.keys();
-			String[] imgs;
-
-			/* Format a category, then format all of the images contained within
-			the same category. */
-			for (String path : paths) {
-				category = this.categories.get(path);
-				imgs = category.getImageLocs();
-				pen.printf("%s %s\n", path, category.getCategory());
-				for (String img : imgs) {
-					pen.printf(">%s %s\n", img, category.select(img));
-				} // for (images)
-			} // for (locations)
-			pen.close();
-		} catch (IOException | KeyNotFoundException e) {
-		/* Doesn't matter (IO) & shouldn't ever happen (KNF). */
+		try (Writer pen = new BufferedWriter(new OutputStreamWriter(
+				Files.newOutputStream(Paths.get(filename)), StandardCharsets.UTF_8),
+				WRITE_BUFFER_SIZE)) {
+			this.write(pen);
+		} catch (IOException e) {
+			System.err.println("Cannot write " + filename + ": " + e.getMessage());
 			return;
 		} // try/catch
+		this.saveUses(usesFile(filename));
 	} // writeToFile(String)
+
+	/**
+	 * Writes the AAC mappings stored in the format described for
+	 * writeToFile. Walks the stored pairs directly, so the time taken
+	 * grows linearly with the number of items.
+	 *
+	 * @param pen
+	 * 		Where to write the mappings.
+	 *
+	 * @throws IOException
+	 * 		If pen cannot be written to.
+	 */
+	void write(Writer pen) throws IOException {
+		this.capture().write(pen);
+	} // write(Writer)
+
+	/**
+	 * Captures the categories and items as they are now, cheaply, so that
+	 * they can be written later on another thread.
+	 *
+	 * @return
+	 * 		The capture.
+	 */
+	MappingsCapture capture() {
+		return new MappingsCapture(this.root, this.categories, this.parents);
+	} // capture()
+
+	/**
+	 * Sets whether every category, including the default one, lists its
+	 * most used images first, so that they are on the first page, rather
+	 * than in the order they were added. Files are written in the order
+	 * images were added either way.
+	 *
+	 * @param orderByUse
+	 * 		True to list the most used first.
+	 */
+	public void setOrderByUse(boolean orderByUse) {
+		this.orderByUse = orderByUse;
+		this.root.setOrderByUse(orderByUse);
+		for (int i = 0; i < this.categories.size(); i++) {
+			this.categories.pairs[i].val.setOrderByUse(orderByUse);
+		} // for
+	} // setOrderByUse(boolean)
+
+	/**
+	 * Names the file that stores how often the images of a mappings file
+	 * are used, next to it.
+	 *
+	 * @param filename
+	 * 		The name of the mappings file.
+	 * @return
+	 * 		The name of its uses file.
+	 */
+	public static String usesFile(String filename) {
+		return filename + USES_SUFFIX;
+	} // usesFile(String)
+
+	/**
+	 * Writes how often each image has been used, as returned by
+	 * AACCategory.getUses, one image per line: the image of its category
+	 * ("" for the default category), a tab, the image, a tab and the
+	 * number of uses. Images that have not been used are left out. The
+	 * file is replaced as SaveService replaces the mappings, so it always
+	 * holds either the old or the new counts in full.
+	 *
+	 * @param filename
+	 * 		The name of the file to write.
+	 */
+	public void saveUses(String filename) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			try (Writer pen = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+				this.writeUses(pen);
+			} // try
+			SaveService.write(Paths.get(filename), bytes.toByteArray());
+		} catch (IOException e) {
+			System.err.println("Cannot write " + filename + ": " + e.getMessage());
+		} // try/catch
+	} // saveUses(String)
+
+	/**
+	 * Writes how often each image has been used, in the format described
+	 * for saveUses.
+	 *
+	 * @param pen
+	 * 		Where to write.
+	 *
+	 * @throws IOException
+	 * 		If pen cannot be written to.
+	 */
+	void writeUses(Writer pen) throws IOException {
+		this.capture().writeUses(pen);
+	} // writeUses(Writer)
+
+	/**
+	 * Writes how often each image has been used next to the file the
+	 * mappings were read from, as saveUses(usesFile(filename)) does. Does
+	 * nothing if they were not read from a file.
+	 */
+	public void saveUses() {
+		if (this.source != null) {
+			this.saveUses(usesFile(this.source));
+		} // if
+	} // saveUses()
+
+	/**
+	 * Reads how often each image has been used from a file written by
+	 * saveUses. Lines for images that are no longer there are ignored;
+	 * lines that cannot be read are skipped and reported on standard
+	 * error with their line numbers. Does nothing if there is no file.
+	 *
+	 * @param filename
+	 * 		The name of the file to read.
+	 */
+	public void loadUses(String filename) {
+		try (BufferedReader eyes = Files.newBufferedReader(Paths.get(filename),
+				StandardCharsets.UTF_8)) {
+			int number = 0;
+			String line;
+			while ((line = eyes.readLine()) != null) {
+				number++;
+				String[] fields = line.split("\t", -1);
+				try {
+					AACCategory category = fields[0].isEmpty()
+							? this.root : this.categories.getOrDefault(fields[0], null);
+					if (category != null && category.hasImage(fields[1])) {
+						category.setUses(fields[1], Double.parseDouble(fields[2]));
+					} // if
+				} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+					System.err.println(filename + ":" + number + ": cannot read uses: " + line);
+				} // try/catch
+			} // while
+		} catch (NoSuchFileException e) {
+			/* Nothing has been used yet. */
+		} catch (IOException e) {
+			System.err.println("Cannot read " + filename + ": " + e.getMessage());
+		} // try/catch
+	} // loadUses(String)
+
+
+	/**
+	 * Writes the AAC mappings stored to a binary snapshot file, which is
+	 * much faster to load than the text format written by writeToFile.
+	 *
+	 * @param filename
+	 * 		The name of the file to write the snapshot to.
+	 *
+	 * @throws IOException
+	 * 		If the file cannot be written.
+	 */
+	public void saveSnapshot(String filename) throws IOException {
+		MappingsSnapshot.save(this.capture(), filename);
+	} // saveSnapshot(String)
+
+	/**
+	 * Creates a set of mappings from a snapshot file written by
+	 * saveSnapshot.
+	 *
+	 * @param filename
+	 * 		The name of the snapshot file.
+	 * @return
+	 * 		The mappings stored in the snapshot.
+	 *
+	 * @throws IOException
+	 * 		If the file cannot be read or is not a valid snapshot.
+	 */
+	public static AACMappings loadSnapshot(String filename) throws IOException {
+		return MappingsSnapshot.load(filename);
+	} // loadSnapshot(String)
 } // class AACMappings
@@ -1,3 +1,6 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
@@ -29,6 +32,37 @@ public interface AACPage {
 	 * 		it should return an empty array.
 	 */
 	public String[] getImageLocs();
+
+	/**
+	 * Returns some of the images to be displayed on the page, such as
+	 * those that fit on one screen, without copying the rest. Unless
+	 * overridden, it copies them out of getImageLocs().
+	 *
+	 * @param offset
+	 * 		The index of the first image wanted.
+	 * @param limit
+	 * 		The most images wanted.
+	 * @return
+	 * 		The images from offset on, at most limit of them; empty if
+	 * 		offset is past the last image.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If offset or limit is negative.
+	 */
+	public default String[] getImageLocs(int offset, int limit) {
+		return page(this.getImageLocs(), offset, limit);
+	} // getImageLocs(int, int)
+
+	/**
+	 * Returns the number of images to be displayed on the page. Unless
+	 * overridden, it counts the images from getImageLocs().
+	 *
+	 * @return
+	 * 		The number of images.
+	 */
+	public default int getImageCount() {
+		return this.getImageLocs().length;
+	} // getImageCount()
 	
 	/**
 	 * Returns the name of the current category.
@@ -66,4 +100,88 @@ public interface AACPage {
 	 * 		can be displayed, false otherwise.
 	 */
 	public boolean hasImage(String imageLoc);
+
+	/**
+	 * Goes back to the page's home, if it has one other than itself. Does
+	 * nothing unless overridden.
+	 */
+	public default void reset() {
+	} // reset()
+
+	/**
+	 * Goes back to what the page showed before its current category.
+	 * Unless overridden, goes home.
+	 */
+	public default void back() {
+		this.reset();
+	} // back()
+
+	/**
+	 * Finds the images whose text starts with what has been typed so far,
+	 * wherever they are on the page. Unless overridden, finds nothing.
+	 *
+	 * @param query
+	 * 		What has been typed so far.
+	 * @param limit
+	 * 		The most hits wanted.
+	 * @return
+	 * 		The hits, best first.
+	 */
+	public default List<SymbolIndex.Hit> search(String query, int limit) {
+		return new ArrayList<SymbolIndex.Hit>();
+	} // search(String, int)
+
+	/**
+	 * Finds the images whose text nearly matches a query that may be
+	 * misspelled, wherever they are on the page. Unless overridden, finds
+	 * nothing.
+	 *
+	 * @param query
+	 * 		The query, in whole words.
+	 * @param maxDistance
+	 * 		The most edits allowed for each word.
+	 * @param limit
+	 * 		The most hits wanted.
+	 * @return
+	 * 		The hits, best first.
+	 */
+	public default List<SymbolIndex.Hit> fuzzySearch(String query, int maxDistance, int limit) {
+		return new ArrayList<SymbolIndex.Hit>();
+	} // fuzzySearch(String, int, int)
+
+	/**
+	 * Gets the sentence being composed from the images selected on this
+	 * page, if it composes sentences rather than speaking each image's
+	 * text as it is selected. Unless overridden, there is none.
+	 *
+	 * @return
+	 * 		The sentence, or null if the page does not compose them.
+	 */
+	public default SentenceStrip getSentence() {
+		return null;
+	} // getSentence()
+
+	/**
+	 * Copies a window of an array of images, as getImageLocs(int, int)
+	 * describes.
+	 *
+	 * @param images
+	 * 		All of the images.
+	 * @param offset
+	 * 		The index of the first image wanted.
+	 * @param limit
+	 * 		The most images wanted.
+	 * @return
+	 * 		The images from offset on, at most limit of them.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If offset or limit is negative.
+	 */
+	public static String[] page(String[] images, int offset, int limit) {
+		if (offset < 0 || limit < 0) {
+			throw new IllegalArgumentException("Negative offset or limit: " + offset + ", " + limit);
+		} // if
+		int start = Math.min(offset, images.length);
+		return Arrays.copyOfRange(images, start, start + Math.min(limit, images.length - start));
+	} // page(String[], int, int)
 } // class AACPage
@@ -0,0 +1,654 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves one AAC board to many browsers (such as tablets) over HTTP,
+ * using the JDK's built-in server. Every session browses the same
+ * shared board, with a BoardCursor of its own. The server offers
+ *
+ *   GET    /board                     every category and item, as JSON
+ *   POST   /sessions                  start a session, at home
+ *   GET    /sessions/ID               what the session shows
+ *   POST   /sessions/ID/select?image=I select an image
+ *   POST   /sessions/ID/home          go home
+ *   POST   /sessions/ID/back          go back to the category before
+ *   POST   /sessions/ID/next          go to the next page
+ *   POST   /sessions/ID/previous      go to the previous page
+ *   DELETE /sessions/ID               end the session
+ *   GET    /icons?image=I             the bytes of an image on the board
+ *   GET    /speech?text=T             a label, spoken, as a WAV file
+ *
+ * Icons and speech carry ETag and Cache-Control headers, so browsers
+ * fetch each one only once. Each request runs on a virtual thread of
+ * its own when the JDK has them, and on a bounded pool of ordinary
+ * threads when it does not. Speech not yet cached is rendered by a pool
+ * of voices, so one session waiting for a label does not hold up
+ * others. Sessions that sit idle are ended. A new
+ * version of the board can be published while the server runs.
+ *
+ * @author Sara Jaljaa
+ */
+public class AACServer {
+
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+	/**
+	 * A session and when it was last used.
+	 */
+	private static class Client {
+		/** The session. */
+		AACSession session;
+
+		/** When the session was last used, from System.nanoTime. */
+		volatile long used;
+
+		/**
+		 * Creates a client.
+		 *
+		 * @param session
+		 * 		The session.
+		 */
+		Client(AACSession session) {
+			this.session = session;
+			this.used = System.nanoTime();
+		} // Client(AACSession)
+	} // class Client
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The default port.
+	 */
+	public static final int DEFAULT_PORT = 8207;
+
+	/**
+	 * The default number of sessions that may be open at once.
+	 */
+	public static final int DEFAULT_MAX_SESSIONS = 10000;
+
+	/**
+	 * How long a session may sit idle before it is ended, in minutes.
+	 */
+	static final long IDLE_MINUTES = 30;
+
+	/**
+	 * The number of threads to serve requests on when there are no
+	 * virtual threads.
+	 */
+	static final int FALLBACK_THREADS = 64;
+
+	/**
+	 * How long browsers may cache icons and speech, in seconds.
+	 */
+	static final int MAX_AGE = 24 * 60 * 60;
+
+	/**
+	 * The number of voices that render speech, so that as many labels as
+	 * there are processors can be rendered at once.
+	 */
+	static final int RENDER_VOICES = Runtime.getRuntime().availableProcessors();
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The board every session browses.
+	 */
+	private SharedBoard board;
+
+	/**
+	 * What renders speech, or null if there is no voice.
+	 */
+	private AudioCache audio;
+
+	/**
+	 * The most sessions that may be open at once.
+	 */
+	private int maxSessions;
+
+	/**
+	 * The open sessions, by ID.
+	 */
+	private ConcurrentHashMap<String, Client> clients;
+
+	/**
+	 * The number of sessions open or being opened, never more than
+	 * maxSessions. A slot is reserved here before a session is made.
+	 */
+	private AtomicInteger open;
+
+	/**
+	 * The HTTP server.
+	 */
+	private HttpServer server;
+
+	/**
+	 * The threads that serve requests.
+	 */
+	private ExecutorService threads;
+
+	/**
+	 * The thread that ends idle sessions.
+	 */
+	private ScheduledExecutorService sweeper;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates a server for a board. It does not serve anything until
+	 * started.
+	 *
+	 * @param board
+	 * 		The board.
+	 * @param audio
+	 * 		What renders speech, or null to serve no speech.
+	 * @param port
+	 * 		The port to listen on, or 0 for any free port.
+	 * @param maxSessions
+	 * 		The most sessions that may be open at once.
+	 *
+	 * @throws IOException
+	 * 		If the port cannot be listened on.
+	 */
+	public AACServer(SharedBoard board, AudioCache audio, int port, int maxSessions)
+			throws IOException {
+		this.board = board;
+		this.audio = audio;
+		this.maxSessions = maxSessions;
+		this.clients = new ConcurrentHashMap<String, Client>();
+		this.open = new AtomicInteger(0);
+		this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		this.server.createContext("/board", this::board);
+		this.server.createContext("/sessions", this::sessions);
+		this.server.createContext("/icons", this::icons);
+		this.server.createContext("/speech", this::speech);
+		this.threads = threads();
+		this.server.setExecutor(this.threads);
+		this.sweeper = Executors.newSingleThreadScheduledExecutor((task) -> {
+			Thread thread = new Thread(task, "AAC session sweeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+	} // AACServer(SharedBoard, AudioCache, int, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Starts serving requests.
+	 */
+	public void start() {
+		this.server.start();
+		this.sweeper.scheduleAtFixedRate(this::sweep, 1, 1, TimeUnit.MINUTES);
+	} // start()
+
+	/**
+	 * Stops serving requests, giving those in progress up to a second to
+	 * finish.
+	 */
+	public void stop() {
+		this.server.stop(1);
+		this.sweeper.shutdownNow();
+		this.threads.shutdown();
+	} // stop()
+
+	/**
+	 * Gets the port the server listens on.
+	 *
+	 * @return
+	 * 		The port.
+	 */
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	} // getPort()
+
+	/**
+	 * Gets the board the server serves, to publish new versions of.
+	 *
+	 * @return
+	 * 		The board.
+	 */
+	public SharedBoard getBoard() {
+		return this.board;
+	} // getBoard()
+
+	/**
+	 * Gets the number of open sessions.
+	 *
+	 * @return
+	 * 		The number of sessions.
+	 */
+	public int getSessions() {
+		return this.clients.size();
+	} // getSessions()
+
+	/**
+	 * Serves the board in AACMappings.txt, speaking with the Kevin voice
+	 * if it is available.
+	 *
+	 * @param args
+	 * 		The port to listen on, if not the default.
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		System.setProperty("freetts.voices",
+				"com.sun.speech.freetts.en.us" + ".cmu_us_kal.KevinVoiceDirectory");
+		AACMappings mappings = new AACMappings("AACMappings.txt");
+		AudioCache audio = null;
+		try {
+			audio = new AudioCache("kevin16", AudioCache.DEFAULT_CAPACITY, RENDER_VOICES);
+			audio.prerender(mappings);
+		} catch (IllegalArgumentException e) {
+			System.err.println("No voice, so no speech: " + e.getMessage());
+		} // try/catch
+		SharedBoard board = new SharedBoard(Board.of(mappings));
+		AACServer server = new AACServer(board, audio, port, DEFAULT_MAX_SESSIONS);
+		server.start();
+		System.err.println("Serving AACMappings.txt on port " + server.getPort());
+	} // main(String[])
+
+  // +----------+----------------------------------------------------
+  // | Handlers |
+  // +----------+
+
+	/**
+	 * Serves every category and item on the board.
+	 *
+	 * @param exchange
+	 * 		The request and response.
+	 */
+	private void board(HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("GET")) {
+			error(exchange, 405, "Use GET");
+			return;
+		} // if
+		Board board = this.board.get();
+		StringBuilder json = new StringBuilder("{\"version\":")
+				.append(board.getVersion()).append(",\"categories\":[");
+		String[] categories = board.getCategoryLocs();
+		for (int i = 0; i < categories.length; i++) {
+			json.append((i == 0) ? "" : ",").append("{\"image\":")
+					.append(quote(categories[i])).append(",\"name\":")
+					.append(quote(board.getName(categories[i]))).append(",\"parent\":")
+					.append(quote(board.getParent(categories[i]))).append(",\"items\":[");
+			String[] items = board.getImageLocs(categories[i]);
+			for (int j = 0; j < items.length; j++) {
+				json.append((j == 0) ? "" : ",").append("{\"image\":")
+						.append(quote(items[j])).append(",\"text\":")
+						.append(quote(board.getText(categories[i], items[j]))).append('}');
+			} // for (items)
+			json.append("]}");
+		} // for (categories)
+		json.append("]}");
+		send(exchange, 200, json.toString());
+	} // board(HttpExchange)
+
+	/**
+	 * Serves requests to start, drive and end sessions.
+	 *
+	 * @param exchange
+	 * 		The request and response.
+	 */
+	private void sessions(HttpExchange exchange) throws IOException {
+		String method = exchange.getRequestMethod();
+		String[] parts = exchange.getRequestURI().getPath().split("/");
+		// parts are "", "sessions", then the ID and the operation, if any
+		if (parts.length == 2) {
+			if (!method.equals("POST")) {
+				error(exchange, 405, "Use POST");
+			} else if (this.open.getAndUpdate((n) -> (n < this.maxSessions) ? n + 1 : n)
+					>= this.maxSessions) {
+				error(exchange, 503, "Too many sessions");
+			} else {
+				String id = UUID.randomUUID().toString();
+				Client client = new Client(new AACSession(new BoardCursor(this.board)));
+				this.clients.put(id, client);
+				send(exchange, 201, view(id, client.session.view(), null));
+			} // if/else
+			return;
+		} // if
+
+		String id = parts[2];
+		Client client = this.clients.get(id);
+		if (client == null) {
+			error(exchange, 404, "No session " + id);
+			return;
+		} // if
+		client.used = System.nanoTime();
+		AACSession session = client.session;
+		String operation = (parts.length > 3) ? parts[3] : "";
+		if (operation.equals("")) {
+			if (method.equals("DELETE")) {
+				this.end(id, client);
+				send(exchange, 200, "{}");
+			} else {
+				send(exchange, 200, view(id, session.view(), null));
+			} // if/else
+		} else if (!method.equals("POST")) {
+			error(exchange, 405, "Use POST");
+		} else if (operation.equals("select")) {
+			String image = query(exchange.getRequestURI()).get("image");
+			try {
+				String text = session.select(image);
+				send(exchange, 200, view(id, session.view(), text));
+			} catch (NoSuchElementException e) {
+				error(exchange, 404, "No image " + image);
+			} // try/catch
+		} else if (operation.equals("home")) {
+			send(exchange, 200, view(id, session.home(), null));
+		} else if (operation.equals("back")) {
+			send(exchange, 200, view(id, session.back(), null));
+		} else if (operation.equals("next")) {
+			send(exchange, 200, view(id, session.next(), null));
+		} else if (operation.equals("previous")) {
+			send(exchange, 200, view(id, session.previous(), null));
+		} else {
+			error(exchange, 404, "No operation " + operation);
+		} // if/else
+	} // sessions(HttpExchange)
+
+	/**
+	 * Serves the bytes of an image on the board.
+	 *
+	 * @param exchange
+	 * 		The request and response.
+	 */
+	private void icons(HttpExchange exchange) throws IOException {
+		String image = query(exchange.getRequestURI()).get("image");
+		if (image == null || !this.board.get().hasImage(image)) {
+			error(exchange, 404, "No image " + image);
+			return;
+		} // if
+		Path path = Paths.get(image);
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (IOException e) {
+			error(exchange, 404, "Cannot read " + image);
+			return;
+		} // try/catch
+		String tag = "\"" + Long.toHexString(attributes.size()) + "-"
+				+ Long.toHexString(attributes.lastModifiedTime().toMillis()) + "\"";
+		if (notModified(exchange, tag)) {
+			return;
+		} // if
+		String type = Files.probeContentType(path);
+		exchange.getResponseHeaders().set("Content-Type",
+				(type == null) ? "application/octet-stream" : type);
+		send(exchange, 200, Files.readAllBytes(path));
+	} // icons(HttpExchange)
+
+	/**
+	 * Serves a label on the board, spoken, as a WAV file.
+	 *
+	 * @param exchange
+	 * 		The request and response.
+	 */
+	private void speech(HttpExchange exchange) throws IOException {
+		String text = query(exchange.getRequestURI()).get("text");
+		if (this.audio == null) {
+			error(exchange, 503, "No voice");
+			return;
+		} else if (text == null || !this.board.get().hasLabel(text)) {
+			error(exchange, 404, "No label " + text);
+			return;
+		} // if
+		String tag = "\"" + Integer.toHexString(text.hashCode()) + "\"";
+		if (notModified(exchange, tag)) {
+			return;
+		} // if
+		AudioCache.Clip clip = this.audio.clip(text);
+		ByteBuffer samples = clip.samples.duplicate();
+		byte[] pcm = new byte[samples.remaining()];
+		samples.get(pcm);
+		AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(pcm),
+				clip.format, pcm.length / clip.format.getFrameSize());
+		ByteArrayOutputStream wav = new ByteArrayOutputStream(pcm.length + 64);
+		AudioSystem.write(stream, AudioFileFormat.Type.WAVE, wav);
+		exchange.getResponseHeaders().set("Content-Type", "audio/wav");
+		send(exchange, 200, wav.toByteArray());
+	} // speech(HttpExchange)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Ends the sessions that have been idle too long.
+	 */
+	private void sweep() {
+		long cutoff = System.nanoTime() - TimeUnit.MINUTES.toNanos(IDLE_MINUTES);
+		for (Map.Entry<String, Client> entry : this.clients.entrySet()) {
+			if (entry.getValue().used - cutoff < 0) {
+				this.end(entry.getKey(), entry.getValue());
+			} // if
+		} // for
+	} // sweep()
+
+	/**
+	 * Ends a session, freeing its slot, unless it has already been ended.
+	 *
+	 * @param id
+	 * 		The ID of the session.
+	 * @param client
+	 * 		The session.
+	 */
+	private void end(String id, Client client) {
+		if (this.clients.remove(id, client)) {
+			this.open.decrementAndGet();
+		} // if
+	} // end(String, Client)
+
+	/**
+	 * Describes what a session shows, as JSON.
+	 *
+	 * @param id
+	 * 		The ID of the session.
+	 * @param view
+	 * 		What it shows.
+	 * @param text
+	 * 		The text just spoken, or null.
+	 * @return
+	 * 		The JSON.
+	 */
+	private String view(String id, AACSession.View view, String text) {
+		StringBuilder json = new StringBuilder("{\"session\":").append(quote(id))
+				.append(",\"category\":").append(quote(view.getCategory()))
+				.append(",\"page\":").append(view.getPage())
+				.append(",\"pages\":").append(view.getPages())
+				.append(",\"images\":[");
+		String[] images = view.getImageLocs();
+		for (int i = 0; i < images.length; i++) {
+			json.append((i == 0) ? "" : ",").append(quote(images[i]));
+		} // for
+		json.append(']');
+		if (text != null && !text.isEmpty()) {
+			json.append(",\"text\":").append(quote(text));
+			if (this.audio != null) {
+				json.append(",\"audio\":")
+						.append(quote("/speech?text=" + URLEncoder.encode(text, StandardCharsets.UTF_8)));
+			} // if
+		} // if
+		return json.append('}').toString();
+	} // view(String, AACSession.View, String)
+
+	/**
+	 * Answers a conditional request whose copy is still current.
+	 *
+	 * @param exchange
+	 * 		The request and response.
+	 * @param tag
+	 * 		The entity tag of the current copy.
+	 * @return
+	 * 		True if the response has been sent, false if the caller should
+	 * 		send the whole thing.
+	 */
+	private static boolean notModified(HttpExchange exchange, String tag)
+			throws IOException {
+		Headers headers = exchange.getResponseHeaders();
+		headers.set("ETag", tag);
+		headers.set("Cache-Control", "public, max-age=" + MAX_AGE);
+		String match = exchange.getRequestHeaders().getFirst("If-None-Match");
+		if (match != null && (match.equals(tag) || match.equals("*"))) {
+			exchange.sendResponseHeaders(304, -1);
+			exchange.close();
+			return true;
+		} // if
+		return false;
+	} // notModified(HttpExchange, String)
+
+	/**
+	 * Sends a JSON error.
+	 *
+	 * @param exchange
+	 * 		The request and response.
+	 * @param status
+	 * 		The HTTP status.
+	 * @param message
+	 * 		What went wrong.
+	 */
+	private static void error(HttpExchange exchange, int status, String message)
+			throws IOException {
+		send(exchange, status, "{\"error\":" + quote(message) + "}");
+	} // error(HttpExchange, int, String)
+
+	/**
+	 * Sends JSON.
+	 *
+	 * @param exchange
+	 * 		The request and response.
+	 * @param status
+	 * 		The HTTP status.
+	 * @param json
+	 * 		The body.
+	 */
+	private static void send(HttpExchange exchange, int status, String json)
+			throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		send(exchange, status, json.getBytes(StandardCharsets.UTF_8));
+	} // send(HttpExchange, int, String)
+
+	/**
+	 * Sends a body and ends the exchange.
+	 *
+	 * @param exchange
+	 * 		The request and response.
+	 * @param status
+	 * 		The HTTP status.
+	 * @param body
+	 * 		The body.
+	 */
+	private static void send(HttpExchange exchange, int status, byte[] body)
+			throws IOException {
+		exchange.sendResponseHeaders(status, (body.length == 0) ? -1 : body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		} // try
+	} // send(HttpExchange, int, byte[])
+
+	/**
+	 * Reads the parameters in a query string.
+	 *
+	 * @param uri
+	 * 		The request URI.
+	 * @return
+	 * 		The parameters, by name.
+	 */
+	static Map<String, String> query(URI uri) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		String query = uri.getRawQuery();
+		if (query == null) {
+			return parameters;
+		} // if
+		for (String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0) {
+				parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+						URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+			} // if
+		} // for
+		return parameters;
+	} // query(URI)
+
+	/**
+	 * Quotes a string for JSON.
+	 *
+	 * @param str
+	 * 		The string.
+	 * @return
+	 * 		The string in double quotes, with anything that needs it escaped.
+	 */
+	static String quote(String str) {
+		StringBuilder quoted = new StringBuilder(str.length() + 2).append('"');
+		for (int i = 0; i < str.length(); i++) {
+			char ch = str.charAt(i);
+			if (ch == '"' || ch == '\\') {
+				quoted.append('\\').append(ch);
+			} else if (ch < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) ch));
+			} else {
+				quoted.append(ch);
+			} // if/else
+		} // for
+		return quoted.append('"').toString();
+	} // quote(String)
+
+	/**
+	 * Makes the threads that serve requests: a virtual thread per request
+	 * if this JDK has them (Java 21 and later), or else a bounded pool of
+	 * daemon threads.
+	 *
+	 * @return
+	 * 		The threads.
+	 */
+	static ExecutorService threads() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(FALLBACK_THREADS, (task) -> {
+				Thread thread = new Thread(task, "AAC server");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} // try/catch
+	} // threads()
+} // class AACServer
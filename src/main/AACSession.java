@@ -0,0 +1,488 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * One person's use of an AAC, without any user interface: which
+ * category they are in, which page of images they are looking at, and
+ * what selecting an image does. The Swing AAC is one front end for a
+ * session; a server or a load test can drive thousands of them without
+ * creating any windows. A session may be used from many threads.
+ *
+ * @author Sara Jaljaa
+ */
+public class AACSession {
+
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+	/**
+	 * What a session shows at one moment. Views do not change.
+	 */
+	public static class View {
+		/** The name of the category, or "" at home. */
+		private final String category;
+
+		/** The images on the page. */
+		private final String[] images;
+
+		/** The images on the next page. */
+		private final String[] upcoming;
+
+		/** The number of the page, from 0. */
+		private final int page;
+
+		/** The number of pages, at least 1. */
+		private final int pages;
+
+		/**
+		 * Creates a view.
+		 *
+		 * @param category
+		 * 		The name of the category.
+		 * @param images
+		 * 		The images on the page.
+		 * @param upcoming
+		 * 		The images on the next page.
+		 * @param page
+		 * 		The number of the page.
+		 * @param pages
+		 * 		The number of pages.
+		 */
+		View(String category, String[] images, String[] upcoming, int page, int pages) {
+			this.category = category;
+			this.images = images;
+			this.upcoming = upcoming;
+			this.page = page;
+			this.pages = pages;
+		} // View(String, String[], String[], int, int)
+
+		/**
+		 * Gets the name of the category shown.
+		 *
+		 * @return
+		 * 		The name, or "" at home.
+		 */
+		public String getCategory() {
+			return this.category;
+		} // getCategory()
+
+		/**
+		 * Gets the images on the page shown.
+		 *
+		 * @return
+		 * 		A copy of the image locations.
+		 */
+		public String[] getImageLocs() {
+			return this.images.clone();
+		} // getImageLocs()
+
+		/**
+		 * Gets the images on the page after the one shown, to fetch ahead.
+		 *
+		 * @return
+		 * 		A copy of the image locations, empty on the last page.
+		 */
+		public String[] getUpcoming() {
+			return this.upcoming.clone();
+		} // getUpcoming()
+
+		/**
+		 * Gets the number of the page shown.
+		 *
+		 * @return
+		 * 		The page number, from 0.
+		 */
+		public int getPage() {
+			return this.page;
+		} // getPage()
+
+		/**
+		 * Gets the number of pages in the category.
+		 *
+		 * @return
+		 * 		The number of pages, at least 1.
+		 */
+		public int getPages() {
+			return this.pages;
+		} // getPages()
+
+		/**
+		 * Determines whether there is a page before this one.
+		 *
+		 * @return
+		 * 		True if there is, false otherwise.
+		 */
+		public boolean hasPrevious() {
+			return this.page > 0;
+		} // hasPrevious()
+
+		/**
+		 * Determines whether there is a page after this one.
+		 *
+		 * @return
+		 * 		True if there is, false otherwise.
+		 */
+		public boolean hasNext() {
+			return this.page < this.pages - 1;
+		} // hasNext()
+	} // class View
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The default number of images on a page.
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 9;
+
+	/**
+	 * The shortest word that find allows two edits in; shorter words are
+	 * allowed one, since two edits turn a short word into almost anything.
+	 */
+	public static final int TWO_EDIT_LENGTH = 5;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The images and text. Guarded by this.
+	 */
+	private AACPage page;
+
+	/**
+	 * The number of images in the current category. Guarded by this.
+	 */
+	private int count;
+
+	/**
+	 * The index of the first image on the current page. Guarded by this.
+	 */
+	private int startIndex;
+
+	/**
+	 * The number of images on a page.
+	 */
+	private int pageSize;
+
+	/**
+	 * Where to send text to be spoken, if anywhere.
+	 */
+	private volatile SpeechDispatcher speech;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates a session showing the first page of page.
+	 *
+	 * @param page
+	 * 		The images and text. The session should be the only thing that
+	 * 		uses it.
+	 * @param pageSize
+	 * 		The number of images on a page.
+	 * @param speech
+	 * 		Where to send text to be spoken, or null to not speak.
+	 */
+	public AACSession(AACPage page, int pageSize, SpeechDispatcher speech) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+		} // if
+		this.page = page;
+		this.pageSize = pageSize;
+		this.speech = speech;
+		this.refresh();
+	} // AACSession(AACPage, int, SpeechDispatcher)
+
+	/**
+	 * Creates a silent session, with the default page size.
+	 *
+	 * @param page
+	 * 		The images and text.
+	 */
+	public AACSession(AACPage page) {
+		this(page, DEFAULT_PAGE_SIZE, null);
+	} // AACSession(AACPage)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Gets what the session shows now.
+	 *
+	 * @return
+	 * 		The view.
+	 */
+	public synchronized View view() {
+		int pages = Math.max(1, (this.count + this.pageSize - 1) / this.pageSize);
+		String[] window = this.page.getImageLocs(this.startIndex, this.pageSize * 2);
+		int end = Math.min(this.pageSize, window.length);
+		return new View(this.page.getCategory(),
+				Arrays.copyOfRange(window, 0, end),
+				Arrays.copyOfRange(window, end, window.length),
+				this.startIndex / this.pageSize, pages);
+	} // view()
+
+	/**
+	 * Goes back to the home page, if the page has one.
+	 *
+	 * @return
+	 * 		What the session shows afterwards.
+	 */
+	public synchronized View home() {
+		this.page.reset();
+		this.refresh();
+		return this.view();
+	} // home()
+
+	/**
+	 * Goes back to the category shown before the current one.
+	 *
+	 * @return
+	 * 		What the session shows afterwards.
+	 */
+	public synchronized View back() {
+		this.page.back();
+		this.refresh();
+		return this.view();
+	} // back()
+
+	/**
+	 * Selects an image. Selecting a category goes to its first page;
+	 * selecting anything else speaks its text or, if the page composes
+	 * sentences, adds it to the sentence.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @return
+	 * 		The text spoken or added, or "" if a category was selected.
+	 *
+	 * @throws NoSuchElementException
+	 * 		If the image is not shown in the current category.
+	 */
+	public String select(String imageLoc) throws NoSuchElementException {
+		String text;
+		boolean composing;
+		synchronized (this) {
+			text = this.page.select(imageLoc);
+			composing = this.page.getSentence() != null;
+			if (text.isEmpty()) {
+				this.refresh();
+			} // if
+		} // synchronized
+		if (!text.isEmpty() && !composing) {
+			this.speak(text);
+		} // if
+		return text;
+	} // select(String)
+
+	/**
+	 * Says the text of an image found some other way than by selecting
+	 * it, such as by searching: adds it to the sentence if the page
+	 * composes sentences, and speaks it otherwise.
+	 *
+	 * @param imageLoc
+	 * 		The image.
+	 * @param text
+	 * 		Its text.
+	 */
+	public void say(String imageLoc, String text) {
+		SentenceStrip sentence;
+		synchronized (this) {
+			sentence = this.page.getSentence();
+		} // synchronized
+		if (sentence == null) {
+			this.speak(text);
+		} else {
+			sentence.append(imageLoc, text);
+		} // if/else
+	} // say(String, String)
+
+	/**
+	 * Speaks the sentence composed so far, in one piece, and starts a new
+	 * one. Does nothing if the page does not compose sentences or the
+	 * sentence is empty.
+	 *
+	 * @return
+	 * 		The sentence spoken, or "" if there was none.
+	 */
+	public String speakSentence() {
+		String text = "";
+		synchronized (this) {
+			SentenceStrip sentence = this.page.getSentence();
+			if (sentence != null) {
+				text = sentence.finish();
+			} // if
+		} // synchronized
+		if (!text.isEmpty()) {
+			this.speak(text);
+		} // if
+		return text;
+	} // speakSentence()
+
+	/**
+	 * Speaks the last sentence spoken again.
+	 *
+	 * @return
+	 * 		The sentence, or "" if there is none.
+	 */
+	public String replay() {
+		String text = "";
+		synchronized (this) {
+			SentenceStrip sentence = this.page.getSentence();
+			if (sentence != null) {
+				text = sentence.replay();
+			} // if
+		} // synchronized
+		if (!text.isEmpty()) {
+			this.speak(text);
+		} // if
+		return text;
+	} // replay()
+
+	/**
+	 * Takes the last symbol off the sentence, if there is one.
+	 *
+	 * @return
+	 * 		Its text, or null if there was none.
+	 */
+	public synchronized String undo() {
+		SentenceStrip sentence = this.page.getSentence();
+		return (sentence == null) ? null : sentence.undo();
+	} // undo()
+
+	/**
+	 * Empties the sentence, if there is one.
+	 */
+	public synchronized void clearSentence() {
+		SentenceStrip sentence = this.page.getSentence();
+		if (sentence != null) {
+			sentence.clear();
+		} // if
+	} // clearSentence()
+
+	/**
+	 * Goes to the next page, if there is one.
+	 *
+	 * @return
+	 * 		What the session shows afterwards.
+	 */
+	public synchronized View next() {
+		if (this.startIndex + this.pageSize < this.count) {
+			this.startIndex += this.pageSize;
+		} // if
+		return this.view();
+	} // next()
+
+	/**
+	 * Goes to the previous page, if there is one.
+	 *
+	 * @return
+	 * 		What the session shows afterwards.
+	 */
+	public synchronized View previous() {
+		this.startIndex = Math.max(0, this.startIndex - this.pageSize);
+		return this.view();
+	} // previous()
+
+	/**
+	 * Adds an image to the current category and goes back to its first
+	 * page.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param text
+	 * 		The text (or category name, at home) for the image.
+	 */
+	public synchronized void addItem(String imageLoc, String text) {
+		this.page.addItem(imageLoc, text);
+		this.refresh();
+	} // addItem(String, String)
+
+	/**
+	 * Finds the images whose text matches what has been typed: first those
+	 * that start with it, then, if there are not enough, those that match
+	 * it with a spelling mistake or two.
+	 *
+	 * @param query
+	 * 		What has been typed.
+	 * @param limit
+	 * 		The most hits wanted.
+	 * @return
+	 * 		The hits, best first.
+	 */
+	public synchronized List<SymbolIndex.Hit> find(String query, int limit) {
+		List<SymbolIndex.Hit> hits = this.page.search(query, limit);
+		if (hits.size() < limit) {
+			int shortest = Integer.MAX_VALUE;
+			for (String word : SymbolIndex.words(query)) {
+				shortest = Math.min(shortest, word.length());
+			} // for
+			int edits = (shortest >= TWO_EDIT_LENGTH) ? 2 : 1;
+			HashSet<String> found = new HashSet<String>();
+			for (SymbolIndex.Hit hit : hits) {
+				found.add(hit.getCategoryLoc() + '\n' + hit.getImageLoc());
+			} // for
+			for (SymbolIndex.Hit hit : this.page.fuzzySearch(query, edits, limit)) {
+				if (hits.size() < limit && found.add(hit.getCategoryLoc() + '\n' + hit.getImageLoc())) {
+					hits.add(hit);
+				} // if
+			} // for
+		} // if
+		return hits;
+	} // find(String, int)
+
+	/**
+	 * Speaks text, without waiting for it to be spoken. Does nothing if
+	 * the session has nowhere to send speech.
+	 *
+	 * @param text
+	 * 		The text to speak.
+	 */
+	public void speak(String text) {
+		SpeechDispatcher dispatcher = this.speech;
+		if (dispatcher != null) {
+			dispatcher.speak(text, SpeechDispatcher.Policy.QUEUE, null);
+		} // if
+	} // speak(String)
+
+	/**
+	 * Sets where to send text to be spoken.
+	 *
+	 * @param speech
+	 * 		The dispatcher, or null to not speak.
+	 */
+	public void setSpeech(SpeechDispatcher speech) {
+		this.speech = speech;
+	} // setSpeech(SpeechDispatcher)
+
+	/**
+	 * Gets the images and text the session shows. Anything done to it
+	 * directly should be synchronized on the session.
+	 *
+	 * @return
+	 * 		The page.
+	 */
+	public AACPage getPage() {
+		return this.page;
+	} // getPage()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Recounts the images in the current category and goes to its first
+	 * page. Guarded by this.
+	 */
+	private void refresh() {
+		this.count = this.page.getImageCount();
+		this.startIndex = 0;
+	} // refresh()
+} // class AACSession
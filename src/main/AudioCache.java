@@ -0,0 +1,553 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+import com.sun.speech.freetts.Voice;
+import com.sun.speech.freetts.VoiceManager;
+import com.sun.speech.freetts.audio.AudioPlayer;
+
+import edu.grinnell.csc207.util.AssociativeArray;
+
+/**
+ * A cache of synthesized speech. The first time a label is spoken, it is
+ * synthesized by a FreeTTS voice into PCM audio, which is kept off the
+ * heap in a direct buffer. Every later time, the audio is played
+ * straight through javax.sound.sampled without going near the
+ * synthesizer. Entries are keyed by voice and text, and the cache is
+ * bounded by the bytes of audio it holds, evicting the least recently
+ * spoken labels first. A label asked for by many threads at once is
+ * rendered only once, and a cache may have several voices of the same
+ * kind, so that different labels are rendered at the same time.
+ *
+ * The labels in a set of mappings can be rendered ahead of time, in the
+ * background, with prerender.
+ *
+ * @author Sara Jaljaa
+ */
+public class AudioCache implements Speaker {
+
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+	/**
+	 * Rendered audio for one label.
+	 */
+	static class Clip {
+		/** The format of the samples. */
+		AudioFormat format;
+
+		/** The samples, off the heap. */
+		ByteBuffer samples;
+
+		/**
+		 * Creates a clip.
+		 *
+		 * @param format
+		 * 		The format of the samples.
+		 * @param samples
+		 * 		The samples.
+		 */
+		Clip(AudioFormat format, ByteBuffer samples) {
+			this.format = format;
+			this.samples = samples;
+		} // Clip(AudioFormat, ByteBuffer)
+	} // class Clip
+
+	/**
+	 * A FreeTTS audio player that keeps what it is given instead of playing
+	 * it.
+	 */
+	static class Recorder implements AudioPlayer {
+		/** The format of the samples. */
+		AudioFormat format;
+
+		/** The samples written so far. */
+		ByteArrayOutputStream samples = new ByteArrayOutputStream();
+
+		/** The volume (ignored). */
+		float volume = 1.0f;
+
+		public void setAudioFormat(AudioFormat format) {
+			this.format = format;
+		} // setAudioFormat(AudioFormat)
+
+		public AudioFormat getAudioFormat() {
+			return this.format;
+		} // getAudioFormat()
+
+		public boolean write(byte[] audio) {
+			return this.write(audio, 0, audio.length);
+		} // write(byte[])
+
+		public boolean write(byte[] audio, int offset, int size) {
+			this.samples.write(audio, offset, size);
+			return true;
+		} // write(byte[], int, int)
+
+		public void reset() {
+			this.samples.reset();
+		} // reset()
+
+		public void cancel() {
+			this.samples.reset();
+		} // cancel()
+
+		public float getVolume() {
+			return this.volume;
+		} // getVolume()
+
+		public void setVolume(float volume) {
+			this.volume = volume;
+		} // setVolume(float)
+
+		public boolean drain() {
+			return true;
+		} // drain()
+
+		public boolean end() {
+			return true;
+		} // end()
+
+		public void begin(int size) {
+		} // begin(int)
+
+		public void pause() {
+		} // pause()
+
+		public void resume() {
+		} // resume()
+
+		public void close() {
+		} // close()
+
+		public long getTime() {
+			return 0;
+		} // getTime()
+
+		public void resetTime() {
+		} // resetTime()
+
+		public void startFirstSampleTimer() {
+		} // startFirstSampleTimer()
+
+		public void showMetrics() {
+		} // showMetrics()
+	} // class Recorder
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The default capacity, in bytes of audio.
+	 */
+	public static final long DEFAULT_CAPACITY = 64L * 1024 * 1024;
+
+	/**
+	 * The number of bytes copied to the sound line at a time.
+	 */
+	static final int CHUNK = 4096;
+
+	/**
+	 * The format given to a clip for which the voice produced no audio.
+	 */
+	static final AudioFormat SILENCE = new AudioFormat(16000, 16, 1, true, false);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The FreeTTS voices that render labels, each guarded by itself.
+	 */
+	private List<Voice> voices;
+
+	/**
+	 * The voices not rendering anything now.
+	 */
+	private BlockingQueue<Voice> idle;
+
+	/**
+	 * The name of the voice, part of every key.
+	 */
+	private String voiceName;
+
+	/**
+	 * The rendered clips, from least to most recently spoken. Guarded by
+	 * itself.
+	 */
+	private LinkedHashMap<String, Clip> clips;
+
+	/**
+	 * The most bytes of audio to keep.
+	 */
+	private long capacity;
+
+	/**
+	 * The bytes of audio kept. Guarded by clips.
+	 */
+	private long used;
+
+	/**
+	 * The labels being rendered, by key, each with the clip it will be.
+	 */
+	private ConcurrentHashMap<String, CompletableFuture<Clip>> inFlight;
+
+	/**
+	 * The line being played, if any.
+	 */
+	private volatile SourceDataLine playing;
+
+	/**
+	 * The thread that renders labels ahead of time.
+	 */
+	private ExecutorService renderer;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates an empty cache that renders with one FreeTTS voice.
+	 *
+	 * @param voiceName
+	 * 		The name of the voice, such as "kevin16".
+	 * @param capacity
+	 * 		The most bytes of audio to keep.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If there is no voice with that name.
+	 */
+	public AudioCache(String voiceName, long capacity) {
+		this(voiceName, capacity, 1);
+	} // AudioCache(String, long)
+
+	/**
+	 * Creates an empty cache that renders with several FreeTTS voices of
+	 * the same kind, each rendering one label at a time.
+	 *
+	 * @param voiceName
+	 * 		The name of the voice, such as "kevin16".
+	 * @param capacity
+	 * 		The most bytes of audio to keep.
+	 * @param count
+	 * 		The number of voices, at least one.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		If there is no voice with that name.
+	 */
+	public AudioCache(String voiceName, long capacity, int count) {
+		this.voices = new ArrayList<Voice>();
+		this.idle = new ArrayBlockingQueue<Voice>(Math.max(1, count));
+		for (int i = 0; i < Math.max(1, count); i++) {
+			Voice voice;
+			try {
+				voice = VoiceManager.getInstance().getVoice(voiceName);
+			} catch (Error e) {
+				/* FreeTTS reports a missing voice directory with an Error. */
+				voice = null;
+			} // try/catch
+			if (voice == null) {
+				throw new IllegalArgumentException("No FreeTTS voice named " + voiceName);
+			} // if
+			this.voices.add(voice);
+			this.idle.add(voice);
+		} // for
+		this.voiceName = voiceName;
+		this.clips = new LinkedHashMap<String, Clip>(64, 0.75f, true);
+		this.capacity = capacity;
+		this.used = 0;
+		this.inFlight = new ConcurrentHashMap<String, CompletableFuture<Clip>>();
+		this.playing = null;
+		this.renderer = Executors.newSingleThreadExecutor((task) -> {
+			Thread thread = new Thread(task, "AAC audio prerender");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+	} // AudioCache(String, long, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Plays the audio for text, rendering and caching it first if needed.
+	 * Returns once it has played or been stopped, or at once if the voice
+	 * produced no audio for it.
+	 *
+	 * @param text
+	 * 		The text to speak.
+	 *
+	 * @throws LineUnavailableException
+	 * 		If there is no sound line to play through.
+	 */
+	public void speak(String text) throws LineUnavailableException {
+		Clip clip = this.clip(text);
+		if (!clip.samples.hasRemaining()) {
+			return;
+		} // if
+		SourceDataLine line = AudioSystem.getSourceDataLine(clip.format);
+		line.open(clip.format);
+		line.start();
+		this.playing = line;
+		try {
+			ByteBuffer samples = clip.samples.duplicate();
+			byte[] chunk = new byte[CHUNK];
+			while (samples.hasRemaining() && this.playing == line) {
+				int size = Math.min(chunk.length, samples.remaining());
+				samples.get(chunk, 0, size);
+				line.write(chunk, 0, size);
+			} // while
+			if (this.playing == line) {
+				line.drain();
+			} // if
+		} finally {
+			this.playing = null;
+			line.close();
+		} // try/finally
+	} // speak(String)
+
+	/**
+	 * Stops the clip being played, if any.
+	 */
+	public void stop() {
+		SourceDataLine line = this.playing;
+		this.playing = null;
+		if (line != null) {
+			line.stop();
+			line.flush();
+		} // if
+	} // stop()
+
+	/**
+	 * Loads the voices, if they have not been loaded yet.
+	 */
+	public void allocate() {
+		for (Voice voice : this.voices) {
+			synchronized (voice) {
+				if (!voice.isLoaded()) {
+					voice.allocate();
+				} // if
+			} // synchronized
+		} // for
+	} // allocate()
+
+	/**
+	 * Renders a short utterance and throws the audio away, so that the
+	 * first label spoken is not slowed down by loading and compiling.
+	 */
+	public void warmUp() {
+		this.render(WARM_UP);
+	} // warmUp()
+
+	/**
+	 * Determines whether the audio for text has been rendered.
+	 *
+	 * @param text
+	 * 		The text.
+	 * @return
+	 * 		True if it is cached, false otherwise.
+	 */
+	public boolean isCached(String text) {
+		synchronized (this.clips) {
+			return this.clips.containsKey(this.key(text));
+		} // synchronized
+	} // isCached(String)
+
+	/**
+	 * Renders, in the background, the audio for every item in a set of
+	 * mappings that is not already cached.
+	 *
+	 * @param mappings
+	 * 		The mappings whose labels should be rendered.
+	 * @return
+	 * 		The number of labels rendered, once they all have been.
+	 */
+	public CompletableFuture<Integer> prerender(AACMappings mappings) {
+		List<String> labels = new ArrayList<String>();
+		AssociativeArray<String, AACCategory> categories = mappings.categories;
+		for (int i = 0; i < categories.size(); i++) {
+			AssociativeArray<String, String> items = categories.pairs[i].val.items.snapshot();
+			for (int j = 0; j < items.size(); j++) {
+				labels.add(items.pairs[j].val);
+			} // for (items)
+		} // for (categories)
+
+		return CompletableFuture.supplyAsync(() -> {
+			int rendered = 0;
+			for (String label : labels) {
+				if (label != null && !this.isCached(label)) {
+					this.clip(label);
+					rendered++;
+				} // if
+			} // for
+			return rendered;
+		}, this.renderer);
+	} // prerender(AACMappings)
+
+	/**
+	 * Stops rendering in the background and frees the voices.
+	 */
+	public void close() {
+		this.renderer.shutdownNow();
+		this.stop();
+		for (Voice voice : this.voices) {
+			synchronized (voice) {
+				voice.deallocate();
+			} // synchronized
+		} // for
+	} // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Gets the clip for text, rendering and caching it if needed. If the
+	 * text is already being rendered, waits for that rendering rather
+	 * than starting another.
+	 *
+	 * @param text
+	 * 		The text.
+	 * @return
+	 * 		The clip.
+	 */
+	Clip clip(String text) {
+		String key = this.key(text);
+		Clip clip = this.cached(key);
+		if (clip != null) {
+			return clip;
+		} // if
+		CompletableFuture<Clip> mine = new CompletableFuture<Clip>();
+		CompletableFuture<Clip> rendering = this.inFlight.putIfAbsent(key, mine);
+		if (rendering != null) {
+			return rendering.join();
+		} // if
+		try {
+			/* It may have been cached just before we claimed it. */
+			clip = this.cached(key);
+			if (clip == null) {
+				clip = this.render(text);
+				this.store(key, clip);
+			} // if
+			mine.complete(clip);
+			return clip;
+		} catch (RuntimeException e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			this.inFlight.remove(key, mine);
+		} // try/catch/finally
+	} // clip(String)
+
+	/**
+	 * Gets a cached clip, counting it as just spoken.
+	 *
+	 * @param key
+	 * 		The key of the clip.
+	 * @return
+	 * 		The clip, or null if it is not cached.
+	 */
+	private Clip cached(String key) {
+		synchronized (this.clips) {
+			return this.clips.get(key);
+		} // synchronized
+	} // cached(String)
+
+	/**
+	 * Caches a clip, evicting the least recently spoken clips if there is
+	 * no longer room for everything.
+	 *
+	 * @param key
+	 * 		The key of the clip.
+	 * @param clip
+	 * 		The clip.
+	 */
+	private void store(String key, Clip clip) {
+		synchronized (this.clips) {
+			Clip old = this.clips.put(key, clip);
+			if (old != null) {
+				this.used -= old.samples.capacity();
+			} // if
+			this.used += clip.samples.capacity();
+			Iterator<Map.Entry<String, Clip>> eldest = this.clips.entrySet().iterator();
+			while (this.used > this.capacity && this.clips.size() > 1) {
+				this.used -= eldest.next().getValue().samples.capacity();
+				eldest.remove();
+			} // while
+		} // synchronized
+	} // store(String, Clip)
+
+	/**
+	 * Synthesizes text into a clip with the first voice that is idle,
+	 * waiting for one if they are all rendering.
+	 *
+	 * @param text
+	 * 		The text.
+	 * @return
+	 * 		The clip, which is empty, in the SILENCE format, if the voice
+	 * 		produced no audio.
+	 *
+	 * @throws CancellationException
+	 * 		If the thread is interrupted while waiting for a voice.
+	 */
+	private Clip render(String text) {
+		Recorder recorder = new Recorder();
+		Voice voice;
+		try {
+			voice = this.idle.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted waiting for a voice");
+		} // try/catch
+		try {
+			synchronized (voice) {
+				if (!voice.isLoaded()) {
+					voice.allocate();
+				} // if
+				voice.setAudioPlayer(recorder);
+				voice.speak(text);
+			} // synchronized
+		} finally {
+			this.idle.add(voice);
+		} // try/finally
+		byte[] samples = recorder.samples.toByteArray();
+		ByteBuffer direct = ByteBuffer.allocateDirect(samples.length);
+		direct.put(samples);
+		direct.flip();
+		AudioFormat format = recorder.getAudioFormat();
+		if (format == null) {
+			return new Clip(SILENCE, ByteBuffer.allocateDirect(0).asReadOnlyBuffer());
+		} // if
+		return new Clip(format, direct.asReadOnlyBuffer());
+	} // render(String)
+
+	/**
+	 * Makes the cache key for text spoken in this cache's voice.
+	 *
+	 * @param text
+	 * 		The text.
+	 * @return
+	 * 		The key.
+	 */
+	private String key(String text) {
+		return this.voiceName + "\u0000" + text;
+	} // key(String)
+} // class AudioCache
@@ -0,0 +1,187 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A Burkhard-Keller tree of words, for finding every word within a few
+ * edits of a misspelled one. Each child of a node is filed under its
+ * edit distance from that node, so by the triangle inequality a search
+ * for words within d of a query that is k from a node only has to visit
+ * the children filed under k - d through k + d.
+ *
+ * Words can be added but not removed; callers that remove words should
+ * ignore the ones they no longer want. A tree is not safe to use from
+ * many threads at once.
+ *
+ * @author Sara Jaljaa
+ */
+public class BKTree {
+
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+	/**
+	 * A node of the tree.
+	 */
+	private static class Node {
+		/** The word. */
+		final String word;
+
+		/** The children, by their distance from word. */
+		final HashMap<Integer, Node> children = new HashMap<Integer, Node>();
+
+		/**
+		 * Creates a node with no children.
+		 *
+		 * @param word
+		 * 		The word.
+		 */
+		Node(String word) {
+			this.word = word;
+		} // Node(String)
+	} // class Node
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The root, or null if the tree is empty.
+	 */
+	private Node root;
+
+	/**
+	 * The number of words in the tree.
+	 */
+	private int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates an empty tree.
+	 */
+	public BKTree() {
+		this.root = null;
+		this.size = 0;
+	} // BKTree()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Adds a word. Does nothing if it is already there.
+	 *
+	 * @param word
+	 * 		The word.
+	 */
+	public void add(String word) {
+		if (this.root == null) {
+			this.root = new Node(word);
+			this.size++;
+			return;
+		} // if
+		Node node = this.root;
+		while (true) {
+			int d = distance(node.word, word, Integer.MAX_VALUE);
+			if (d == 0) {
+				return;
+			} // if
+			Node child = node.children.get(d);
+			if (child == null) {
+				node.children.put(d, new Node(word));
+				this.size++;
+				return;
+			} // if
+			node = child;
+		} // while
+	} // add(String)
+
+	/**
+	 * Finds every word within some number of edits of a word.
+	 *
+	 * @param word
+	 * 		The word.
+	 * @param max
+	 * 		The most edits (insertions, deletions and substitutions of one
+	 * 		character) allowed.
+	 * @return
+	 * 		The words found, in no particular order.
+	 */
+	public List<String> within(String word, int max) {
+		List<String> found = new ArrayList<String>();
+		if (this.root == null) {
+			return found;
+		} // if
+		ArrayDeque<Node> pending = new ArrayDeque<Node>();
+		pending.push(this.root);
+		while (!pending.isEmpty()) {
+			Node node = pending.pop();
+			int d = distance(node.word, word, Integer.MAX_VALUE);
+			if (d <= max) {
+				found.add(node.word);
+			} // if
+			for (int k = Math.max(1, d - max); k <= d + max; k++) {
+				Node child = node.children.get(k);
+				if (child != null) {
+					pending.push(child);
+				} // if
+			} // for
+		} // while
+		return found;
+	} // within(String, int)
+
+	/**
+	 * Gets the number of words in the tree.
+	 *
+	 * @return
+	 * 		The number of words.
+	 */
+	public int size() {
+		return this.size;
+	} // size()
+
+	/**
+	 * Computes the edit (Levenshtein) distance between two strings, giving
+	 * up once it is sure to be more than max.
+	 *
+	 * @param a
+	 * 		One string.
+	 * @param b
+	 * 		The other.
+	 * @param max
+	 * 		The largest distance of interest.
+	 * @return
+	 * 		The distance, or max + 1 if it is more than max.
+	 */
+	public static int distance(String a, String b, int max) {
+		if (Math.abs(a.length() - b.length()) > max) {
+			return max + 1;
+		} // if
+		int[] previous = new int[b.length() + 1];
+		int[] row = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) {
+			previous[j] = j;
+		} // for
+		for (int i = 1; i <= a.length(); i++) {
+			row[0] = i;
+			int least = row[0];
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = (a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1;
+				row[j] = Math.min(Math.min(row[j - 1], previous[j]) + 1, previous[j - 1] + cost);
+				least = Math.min(least, row[j]);
+			} // for (j)
+			if (least > max) {
+				return max + 1;
+			} // if
+			int[] swap = previous;
+			previous = row;
+			row = swap;
+		} // for (i)
+		return (previous[b.length()] > max) ? max + 1 : previous[b.length()];
+	} // distance(String, String, int)
+} // class BKTree
@@ -0,0 +1,496 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+
+import edu.grinnell.csc207.util.AssociativeArray;
+
+/**
+ * An immutable AAC board: its categories, in order, and the items in
+ * each. A category may be nested in another, in which case its image
+ * is also one of that category's items. A board never changes once
+ * made, so any number of sessions on any number of threads can read it
+ * at once without locking, each keeping its place in a BoardCursor of
+ * its own. Editing a board makes a new one, with the next version
+ * number, which can be published through a SharedBoard.
+ *
+ * @author Sara Jaljaa
+ */
+public final class Board {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The board with no categories.
+	 */
+	public static final Board EMPTY = new Board(0, new String[0], new String[0],
+			new String[0], new String[0][], new String[0][]);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The version of the board, one more than the board it was edited
+	 * from.
+	 */
+	private final long version;
+
+	/**
+	 * The image of each category, in order.
+	 */
+	private final String[] categoryLocs;
+
+	/**
+	 * The name of each category.
+	 */
+	private final String[] names;
+
+	/**
+	 * The image of the category each category is nested in ("" for the
+	 * home page).
+	 */
+	private final String[] parentLocs;
+
+	/**
+	 * The images of the categories on the home page, in order.
+	 */
+	private final String[] homeLocs;
+
+	/**
+	 * The images of the items in each category, in order.
+	 */
+	private final String[][] itemLocs;
+
+	/**
+	 * The text of the items in each category.
+	 */
+	private final String[][] texts;
+
+	/**
+	 * The position of each category, by image. Shared with the boards
+	 * edited from this one until a category is added.
+	 */
+	private final HashMap<String, Integer> categoryIndex;
+
+	/**
+	 * The position of each item in each category, by item image. The
+	 * map for a category is shared with the boards edited from this one
+	 * until an item is added to that category.
+	 */
+	private final HashMap<String, Integer>[] itemIndex;
+
+	/**
+	 * Every image on the board, or null until first needed.
+	 */
+	private volatile HashSet<String> images;
+
+	/**
+	 * Every item's text, or null until first needed.
+	 */
+	private volatile HashSet<String> labels;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates a board from arrays that nothing else will change, indexing
+	 * them.
+	 *
+	 * @param version
+	 * 		The version of the board.
+	 * @param categoryLocs
+	 * 		The image of each category.
+	 * @param names
+	 * 		The name of each category.
+	 * @param parentLocs
+	 * 		The image of the category each category is nested in.
+	 * @param itemLocs
+	 * 		The images of the items in each category.
+	 * @param texts
+	 * 		The text of the items in each category.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Board(long version, String[] categoryLocs, String[] names,
+			String[] parentLocs, String[][] itemLocs, String[][] texts) {
+		this.version = version;
+		this.categoryLocs = categoryLocs;
+		this.names = names;
+		this.parentLocs = parentLocs;
+		this.itemLocs = itemLocs;
+		this.texts = texts;
+		this.categoryIndex = new HashMap<String, Integer>();
+		this.itemIndex = new HashMap[categoryLocs.length];
+		ArrayList<String> home = new ArrayList<String>();
+		for (int i = 0; i < categoryLocs.length; i++) {
+			if (parentLocs[i].equals("")) {
+				home.add(categoryLocs[i]);
+			} // if
+			this.categoryIndex.put(categoryLocs[i], i);
+			this.itemIndex[i] = new HashMap<String, Integer>();
+			for (int j = 0; j < itemLocs[i].length; j++) {
+				this.itemIndex[i].put(itemLocs[i][j], j);
+			} // for (items)
+		} // for (categories)
+		this.homeLocs = home.toArray(new String[home.size()]);
+	} // Board(long, String[], String[], String[], String[][], String[][])
+
+	/**
+	 * Creates a board from arrays and indexes that nothing else will
+	 * change, as edited from another board.
+	 *
+	 * @param version
+	 * 		The version of the board.
+	 * @param categoryLocs
+	 * 		The image of each category.
+	 * @param names
+	 * 		The name of each category.
+	 * @param parentLocs
+	 * 		The image of the category each category is nested in.
+	 * @param homeLocs
+	 * 		The images of the categories on the home page.
+	 * @param itemLocs
+	 * 		The images of the items in each category.
+	 * @param texts
+	 * 		The text of the items in each category.
+	 * @param categoryIndex
+	 * 		The position of each category.
+	 * @param itemIndex
+	 * 		The position of each item in each category.
+	 */
+	private Board(long version, String[] categoryLocs, String[] names,
+			String[] parentLocs, String[] homeLocs, String[][] itemLocs, String[][] texts,
+			HashMap<String, Integer> categoryIndex, HashMap<String, Integer>[] itemIndex) {
+		this.version = version;
+		this.categoryLocs = categoryLocs;
+		this.names = names;
+		this.parentLocs = parentLocs;
+		this.homeLocs = homeLocs;
+		this.itemLocs = itemLocs;
+		this.texts = texts;
+		this.categoryIndex = categoryIndex;
+		this.itemIndex = itemIndex;
+	} // Board(long, String[], String[], String[], String[], String[][], String[][], HashMap, HashMap[])
+
+	/**
+	 * Makes a board with the categories and items in a set of mappings.
+	 *
+	 * @param mappings
+	 * 		The mappings.
+	 * @return
+	 * 		A board of version 1.
+	 */
+	public static Board of(AACMappings mappings) {
+		AssociativeArray<String, AACCategory> categories = mappings.categories;
+		int count = categories.size();
+		String[] categoryLocs = new String[count];
+		String[] names = new String[count];
+		String[] parentLocs = new String[count];
+		String[][] itemLocs = new String[count][];
+		String[][] texts = new String[count][];
+		for (int i = 0; i < count; i++) {
+			AssociativeArray<String, String> items = categories.pairs[i].val.items.snapshot();
+			categoryLocs[i] = categories.pairs[i].key;
+			names[i] = categories.pairs[i].val.getCategory();
+			parentLocs[i] = mappings.parents.getOrDefault(categoryLocs[i], "");
+			itemLocs[i] = new String[items.size()];
+			texts[i] = new String[items.size()];
+			for (int j = 0; j < items.size(); j++) {
+				itemLocs[i][j] = items.pairs[j].key;
+				texts[i][j] = items.pairs[j].val;
+			} // for (items)
+		} // for (categories)
+		return new Board(1, categoryLocs, names, parentLocs, itemLocs, texts);
+	} // of(AACMappings)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Gets the version of the board.
+	 *
+	 * @return
+	 * 		The version.
+	 */
+	public long getVersion() {
+		return this.version;
+	} // getVersion()
+
+	/**
+	 * Gets the number of categories, at every depth.
+	 *
+	 * @return
+	 * 		The number of categories.
+	 */
+	public int size() {
+		return this.categoryLocs.length;
+	} // size()
+
+	/**
+	 * Gets the images shown in a category.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category, or "" for the home page.
+	 * @return
+	 * 		A copy of the images of the category's items, or of the
+	 * 		categories on the home page; empty if there is no such category.
+	 */
+	public String[] getImageLocs(String categoryLoc) {
+		if (categoryLoc.equals("")) {
+			return this.homeLocs.clone();
+		} // if
+		Integer i = this.categoryIndex.get(categoryLoc);
+		return (i == null) ? new String[0] : this.itemLocs[i].clone();
+	} // getImageLocs(String)
+
+	/**
+	 * Gets some of the images shown in a category.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category, or "" for the home page.
+	 * @param offset
+	 * 		The index of the first image wanted.
+	 * @param limit
+	 * 		The most images wanted.
+	 * @return
+	 * 		The images from offset on, at most limit of them; empty if there
+	 * 		is no such category.
+	 */
+	public String[] getImageLocs(String categoryLoc, int offset, int limit) {
+		if (categoryLoc.equals("")) {
+			return AACPage.page(this.homeLocs, offset, limit);
+		} // if
+		Integer i = this.categoryIndex.get(categoryLoc);
+		return AACPage.page((i == null) ? new String[0] : this.itemLocs[i], offset, limit);
+	} // getImageLocs(String, int, int)
+
+	/**
+	 * Counts the images shown in a category.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category, or "" for the home page.
+	 * @return
+	 * 		The number of images; 0 if there is no such category.
+	 */
+	public int getImageCount(String categoryLoc) {
+		if (categoryLoc.equals("")) {
+			return this.homeLocs.length;
+		} // if
+		Integer i = this.categoryIndex.get(categoryLoc);
+		return (i == null) ? 0 : this.itemLocs[i].length;
+	} // getImageCount(String)
+
+	/**
+	 * Determines whether there is a category with an image.
+	 *
+	 * @param categoryLoc
+	 * 		The image.
+	 * @return
+	 * 		True if there is, false otherwise.
+	 */
+	public boolean hasCategory(String categoryLoc) {
+		return this.categoryIndex.containsKey(categoryLoc);
+	} // hasCategory(String)
+
+	/**
+	 * Determines whether selecting an image in a category opens a category
+	 * nested in it.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the outer category, or "" for the home page.
+	 * @param imageLoc
+	 * 		The image.
+	 * @return
+	 * 		True if it does, false otherwise.
+	 */
+	public boolean isSubcategory(String categoryLoc, String imageLoc) {
+		Integer i = this.categoryIndex.get(imageLoc);
+		return i != null && this.parentLocs[i].equals(categoryLoc);
+	} // isSubcategory(String, String)
+
+	/**
+	 * Gets the images of every category, at every depth, each after the
+	 * category it is nested in.
+	 *
+	 * @return
+	 * 		A copy of the images.
+	 */
+	public String[] getCategoryLocs() {
+		return this.categoryLocs.clone();
+	} // getCategoryLocs()
+
+	/**
+	 * Gets the image of the category a category is nested in.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category.
+	 * @return
+	 * 		The image of the outer category, "" for the home page, or null
+	 * 		if there is no such category.
+	 */
+	public String getParent(String categoryLoc) {
+		Integer i = this.categoryIndex.get(categoryLoc);
+		return (i == null) ? null : this.parentLocs[i];
+	} // getParent(String)
+
+	/**
+	 * Gets the name of a category.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category, or "" for the home page.
+	 * @return
+	 * 		The name, "" for the home page, or null if there is no such
+	 * 		category.
+	 */
+	public String getName(String categoryLoc) {
+		if (categoryLoc.equals("")) {
+			return "";
+		} // if
+		Integer i = this.categoryIndex.get(categoryLoc);
+		return (i == null) ? null : this.names[i];
+	} // getName(String)
+
+	/**
+	 * Gets the text of an item in a category.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category.
+	 * @param imageLoc
+	 * 		The image of the item.
+	 * @return
+	 * 		The text, or null if there is no such item.
+	 */
+	public String getText(String categoryLoc, String imageLoc) {
+		Integer i = this.categoryIndex.get(categoryLoc);
+		Integer j = (i == null) ? null : this.itemIndex[i].get(imageLoc);
+		return (j == null) ? null : this.texts[i][j];
+	} // getText(String, String)
+
+	/**
+	 * Determines whether an image appears anywhere on the board.
+	 *
+	 * @param imageLoc
+	 * 		The image.
+	 * @return
+	 * 		True if it is a category or item image, false otherwise.
+	 */
+	public boolean hasImage(String imageLoc) {
+		HashSet<String> images = this.images;
+		if (images == null) {
+			images = new HashSet<String>(this.categoryIndex.keySet());
+			for (String[] items : this.itemLocs) {
+				images.addAll(Arrays.asList(items));
+			} // for
+			this.images = images;
+		} // if
+		return images.contains(imageLoc);
+	} // hasImage(String)
+
+	/**
+	 * Determines whether any item on the board has some text.
+	 *
+	 * @param text
+	 * 		The text.
+	 * @return
+	 * 		True if an item has it, false otherwise.
+	 */
+	public boolean hasLabel(String text) {
+		HashSet<String> labels = this.labels;
+		if (labels == null) {
+			labels = new HashSet<String>();
+			for (String[] items : this.texts) {
+				labels.addAll(Arrays.asList(items));
+			} // for
+			this.labels = labels;
+		} // if
+		return labels.contains(text);
+	} // hasLabel(String)
+
+	/**
+	 * Makes a new version of the board with a category or item added (or
+	 * renamed, or given new text, if it is already there). Giving a nested
+	 * category new text renames it. Only the arrays and index of the
+	 * category edited are copied; the rest are shared with this board.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category to add an item to, or "" to add a
+	 * 		category.
+	 * @param imageLoc
+	 * 		The image of the new category or item.
+	 * @param text
+	 * 		The name of the category or the text of the item.
+	 * @return
+	 * 		The new board.
+	 *
+	 * @throws NoSuchElementException
+	 * 		If there is no such category.
+	 */
+	public Board with(String categoryLoc, String imageLoc, String text)
+			throws NoSuchElementException {
+		if (categoryLoc.equals("")) {
+			Integer i = this.categoryIndex.get(imageLoc);
+			if (i != null) {
+				String[] names = this.names.clone();
+				names[i] = text;
+				return new Board(this.version + 1, this.categoryLocs, names,
+						this.parentLocs, this.homeLocs, this.itemLocs, this.texts,
+						this.categoryIndex, this.itemIndex);
+			} // if
+			int count = this.categoryLocs.length;
+			String[] categoryLocs = Arrays.copyOf(this.categoryLocs, count + 1);
+			String[] names = Arrays.copyOf(this.names, count + 1);
+			String[] parentLocs = Arrays.copyOf(this.parentLocs, count + 1);
+			String[] homeLocs = Arrays.copyOf(this.homeLocs, this.homeLocs.length + 1);
+			String[][] itemLocs = Arrays.copyOf(this.itemLocs, count + 1);
+			String[][] texts = Arrays.copyOf(this.texts, count + 1);
+			HashMap<String, Integer> categoryIndex =
+					new HashMap<String, Integer>(this.categoryIndex);
+			HashMap<String, Integer>[] itemIndex = Arrays.copyOf(this.itemIndex, count + 1);
+			categoryLocs[count] = imageLoc;
+			names[count] = text;
+			parentLocs[count] = "";
+			homeLocs[homeLocs.length - 1] = imageLoc;
+			itemLocs[count] = new String[0];
+			texts[count] = new String[0];
+			categoryIndex.put(imageLoc, count);
+			itemIndex[count] = new HashMap<String, Integer>();
+			return new Board(this.version + 1, categoryLocs, names, parentLocs, homeLocs,
+					itemLocs, texts, categoryIndex, itemIndex);
+		} // if
+
+		Integer i = this.categoryIndex.get(categoryLoc);
+		if (i == null) {
+			throw new NoSuchElementException("No category " + categoryLoc);
+		} // if
+		Integer j = this.itemIndex[i].get(imageLoc);
+		String[][] itemLocs = this.itemLocs;
+		String[][] texts = this.texts.clone();
+		HashMap<String, Integer>[] itemIndex = this.itemIndex;
+		if (j != null) {
+			texts[i] = texts[i].clone();
+			texts[i][j] = text;
+		} else {
+			int count = itemLocs[i].length;
+			itemLocs = itemLocs.clone();
+			itemLocs[i] = Arrays.copyOf(itemLocs[i], count + 1);
+			texts[i] = Arrays.copyOf(texts[i], count + 1);
+			itemLocs[i][count] = imageLoc;
+			texts[i][count] = text;
+			itemIndex = itemIndex.clone();
+			itemIndex[i] = new HashMap<String, Integer>(itemIndex[i]);
+			itemIndex[i].put(imageLoc, count);
+		} // if/else
+		String[] names = this.names;
+		if (this.isSubcategory(categoryLoc, imageLoc)) {
+			names = names.clone();
+			names[this.categoryIndex.get(imageLoc)] = text;
+		} // if
+		return new Board(this.version + 1, this.categoryLocs, names, this.parentLocs,
+				this.homeLocs, itemLocs, texts, this.categoryIndex, itemIndex);
+	} // with(String, String, String)
+} // class Board
@@ -0,0 +1,201 @@
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+
+/**
+ * One session's place on a shared board: just the category it is in,
+ * and the categories it went through to get there.
+ * The categories and items themselves belong to the board, which every
+ * cursor shares, so a cursor costs next to nothing. Each call reads the
+ * board's current version, so a cursor sees edits as soon as they are
+ * published; if its category goes away, it goes back home.
+ *
+ * A cursor is meant for one session at a time; AACSession synchronizes
+ * access to it.
+ *
+ * @author Sara Jaljaa
+ */
+public class BoardCursor implements AACPage {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The board.
+	 */
+	private SharedBoard shared;
+
+	/**
+	 * The image of the current category ("" for the home page).
+	 */
+	private String categoryLoc;
+
+	/**
+	 * The images of the categories shown before the current one, most
+	 * recent first.
+	 */
+	private ArrayDeque<String> history;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates a cursor on the home page of a board.
+	 *
+	 * @param shared
+	 * 		The board.
+	 */
+	public BoardCursor(SharedBoard shared) {
+		this.shared = shared;
+		this.categoryLoc = "";
+		this.history = new ArrayDeque<String>();
+	} // BoardCursor(SharedBoard)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Adds an item to the current category (or, on the home page, a
+	 * category) and publishes the new version of the board.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param text
+	 * 		The text the image should speak, or the name of the category.
+	 */
+	public void addItem(String imageLoc, String text) {
+		String category = this.categoryLoc;
+		this.shared.update((board) -> board.with(category, imageLoc, text));
+	} // addItem(String, String)
+
+	/**
+	 * Gets the images in the current category.
+	 *
+	 * @return
+	 * 		The images.
+	 */
+	public String[] getImageLocs() {
+		return this.board().getImageLocs(this.categoryLoc);
+	} // getImageLocs()
+
+	/**
+	 * Gets some of the images in the current category.
+	 *
+	 * @param offset
+	 * 		The index of the first image wanted.
+	 * @param limit
+	 * 		The most images wanted.
+	 * @return
+	 * 		The images from offset on, at most limit of them.
+	 */
+	public String[] getImageLocs(int offset, int limit) {
+		return this.board().getImageLocs(this.categoryLoc, offset, limit);
+	} // getImageLocs(int, int)
+
+	/**
+	 * Counts the images in the current category.
+	 *
+	 * @return
+	 * 		The number of images.
+	 */
+	public int getImageCount() {
+		return this.board().getImageCount(this.categoryLoc);
+	} // getImageCount()
+
+	/**
+	 * Gets the name of the current category.
+	 *
+	 * @return
+	 * 		The name, or "" on the home page.
+	 */
+	public String getCategory() {
+		return this.board().getName(this.categoryLoc);
+	} // getCategory()
+
+	/**
+	 * Selects an image: if it is a category nested in the current one
+	 * (or on the home page), goes to it; otherwise, gets its text.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @return
+	 * 		The text to speak, or "" if a category was selected.
+	 *
+	 * @throws NoSuchElementException
+	 * 		If the image is not in the current category.
+	 */
+	public String select(String imageLoc) throws NoSuchElementException {
+		Board board = this.board();
+		if (board.isSubcategory(this.categoryLoc, imageLoc)) {
+			this.history.push(this.categoryLoc);
+			this.categoryLoc = imageLoc;
+			return "";
+		} else if (this.categoryLoc.equals("")) {
+			throw new NoSuchElementException("Image is not a category.");
+		} // if/else
+		String text = board.getText(this.categoryLoc, imageLoc);
+		if (text == null) {
+			throw new NoSuchElementException("Image is not in " + board.getName(this.categoryLoc));
+		} // if
+		return text;
+	} // select(String)
+
+	/**
+	 * Determines whether an image is in the current category.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @return
+	 * 		True if it is, false otherwise.
+	 */
+	public boolean hasImage(String imageLoc) {
+		Board board = this.board();
+		return this.categoryLoc.equals("") ? board.isSubcategory("", imageLoc)
+				: board.getText(this.categoryLoc, imageLoc) != null;
+	} // hasImage(String)
+
+	/**
+	 * Goes back to the home page.
+	 */
+	public void reset() {
+		this.categoryLoc = "";
+		this.history.clear();
+	} // reset()
+
+	/**
+	 * Goes back to the category shown before the current one, skipping any
+	 * that are no longer on the board.
+	 */
+	public void back() {
+		Board board = this.shared.get();
+		while (!this.history.isEmpty()) {
+			String previous = this.history.pop();
+			if (previous.equals("") || board.hasCategory(previous)) {
+				this.categoryLoc = previous;
+				return;
+			} // if
+		} // while
+		this.categoryLoc = "";
+	} // back()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Gets the current version of the board, going home if the current
+	 * category is no longer on it.
+	 *
+	 * @return
+	 * 		The board.
+	 */
+	private Board board() {
+		Board board = this.shared.get();
+		if (!this.categoryLoc.equals("") && !board.hasCategory(this.categoryLoc)) {
+			this.reset();
+		} // if
+		return board;
+	} // board()
+} // class BoardCursor
@@ -0,0 +1,244 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.ImageIcon;
+
+/**
+ * A cache of decoded icons, keyed by image location, so that redrawing
+ * the AAC grid does not read and decode the same files again. The cache
+ * is bounded by the number of bytes the decoded images take up (four
+ * per pixel); when it is full, the least recently used icons are
+ * evicted. Hits, misses and evictions are counted to help pick a size;
+ * only lookups for icons about to be shown count as hits or misses, not
+ * those made while loading icons ahead of time.
+ *
+ * @author Sara Jaljaa
+ */
+public class IconCache {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The default capacity, in bytes.
+	 */
+	public static final long DEFAULT_CAPACITY = 32L * 1024 * 1024;
+
+	/**
+	 * The bytes charged for an icon beyond its pixels, so that even icons
+	 * that fail to load take up some room.
+	 */
+	static final long OVERHEAD = 64;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The cached icons, from least to most recently used.
+	 */
+	private LinkedHashMap<String, ImageIcon> icons;
+
+	/**
+	 * The most bytes the cached icons may take up.
+	 */
+	private long capacity;
+
+	/**
+	 * The bytes the cached icons take up.
+	 */
+	private long used;
+
+	/**
+	 * The number of requests for a cached icon.
+	 */
+	private long hits;
+
+	/**
+	 * The number of requests for an icon that had to be loaded.
+	 */
+	private long misses;
+
+	/**
+	 * The number of icons evicted to make room.
+	 */
+	private long evictions;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param capacity
+	 * 		The most bytes the decoded icons may take up.
+	 */
+	public IconCache(long capacity) {
+		this.icons = new LinkedHashMap<String, ImageIcon>(64, 0.75f, true);
+		this.capacity = capacity;
+		this.used = 0;
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	} // IconCache(long)
+
+	/**
+	 * Creates an empty cache of the default capacity.
+	 */
+	public IconCache() {
+		this(DEFAULT_CAPACITY);
+	} // IconCache()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Gets the icon for an image, loading and caching it if necessary.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @return
+	 * 		The icon.
+	 */
+	public synchronized ImageIcon get(String imageLoc) {
+		ImageIcon icon = this.icons.get(imageLoc);
+		if (icon != null) {
+			this.hits++;
+			return icon;
+		} // if
+		this.misses++;
+		icon = new ImageIcon(imageLoc);
+		this.put(imageLoc, icon);
+		return icon;
+	} // get(String)
+
+	/**
+	 * Gets a cached icon to show, without loading anything on a miss.
+	 *
+	 * @param key
+	 * 		The key the icon was cached under.
+	 * @return
+	 * 		The icon, or null if it is not cached.
+	 */
+	public synchronized ImageIcon getIfPresent(String key) {
+		ImageIcon icon = this.icons.get(key);
+		if (icon != null) {
+			this.hits++;
+		} else {
+			this.misses++;
+		} // if/else
+		return icon;
+	} // getIfPresent(String)
+
+	/**
+	 * Gets a cached icon without loading anything on a miss, and without
+	 * counting a hit or a miss, such as to check whether an icon needs to
+	 * be loaded ahead of time.
+	 *
+	 * @param key
+	 * 		The key the icon was cached under.
+	 * @return
+	 * 		The icon, or null if it is not cached.
+	 */
+	public synchronized ImageIcon peek(String key) {
+		return this.icons.get(key);
+	} // peek(String)
+
+	/**
+	 * Adds an icon to the cache, evicting the least recently used icons if
+	 * there is no longer room for everything.
+	 *
+	 * @param key
+	 * 		The key to cache the icon under.
+	 * @param icon
+	 * 		The icon.
+	 */
+	public synchronized void put(String key, ImageIcon icon) {
+		ImageIcon old = this.icons.put(key, icon);
+		if (old != null) {
+			this.used -= bytes(old);
+		} // if
+		this.used += bytes(icon);
+		Iterator<Map.Entry<String, ImageIcon>> eldest = this.icons.entrySet().iterator();
+		while (this.used > this.capacity && this.icons.size() > 1) {
+			Map.Entry<String, ImageIcon> entry = eldest.next();
+			this.used -= bytes(entry.getValue());
+			eldest.remove();
+			this.evictions++;
+		} // while
+	} // put(String, ImageIcon)
+
+	/**
+	 * Gets the number of requests for an icon that was cached.
+	 *
+	 * @return
+	 * 		The number of hits.
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	} // getHits()
+
+	/**
+	 * Gets the number of requests for an icon that had to be loaded.
+	 *
+	 * @return
+	 * 		The number of misses.
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	} // getMisses()
+
+	/**
+	 * Gets the number of icons evicted to make room for others.
+	 *
+	 * @return
+	 * 		The number of evictions.
+	 */
+	public synchronized long getEvictions() {
+		return this.evictions;
+	} // getEvictions()
+
+	/**
+	 * Gets the number of bytes the cached icons take up.
+	 *
+	 * @return
+	 * 		The bytes used.
+	 */
+	public synchronized long getUsed() {
+		return this.used;
+	} // getUsed()
+
+	/**
+	 * Summarizes the cache's size and counters.
+	 *
+	 * @return
+	 * 		A string of the form
+	 * 		"IconCache[icons=N, used=B/C, hits=H, misses=M, evictions=E]".
+	 */
+	public synchronized String toString() {
+		return "IconCache[icons=" + this.icons.size() + ", used=" + this.used
+				+ "/" + this.capacity + ", hits=" + this.hits + ", misses="
+				+ this.misses + ", evictions=" + this.evictions + "]";
+	} // toString()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Estimates the bytes taken up by a decoded icon.
+	 *
+	 * @param icon
+	 * 		The icon.
+	 * @return
+	 * 		Four bytes per pixel, plus a little overhead.
+	 */
+	static long bytes(ImageIcon icon) {
+		long width = Math.max(0, icon.getIconWidth());
+		long height = Math.max(0, icon.getIconHeight());
+		return width * height * 4 + OVERHEAD;
+	} // bytes(ImageIcon)
+} // class IconCache
@@ -0,0 +1,314 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+
+/**
+ * Decodes icons on background threads, scaled to the size they will be
+ * shown at, and keeps them in an IconCache. A request for an icon that
+ * is not ready yet gets a placeholder straight away, and a callback on
+ * the event dispatch thread once the real icon has been decoded.
+ * Icons can also be prefetched ahead of time, on a separate thread, so
+ * that prefetching never delays the icons currently on screen.
+ *
+ * @author Sara Jaljaa
+ */
+public class IconLoader {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The color of placeholder icons.
+	 */
+	static final Color PLACEHOLDER = new Color(0xEEEEEE);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * Where decoded icons are kept.
+	 */
+	private IconCache cache;
+
+	/**
+	 * The threads that decode icons that are needed now.
+	 */
+	private ExecutorService decoders;
+
+	/**
+	 * The thread that decodes icons that may be needed later.
+	 */
+	private ExecutorService prefetcher;
+
+	/**
+	 * The icons being decoded by the decoders, by cache key.
+	 */
+	private ConcurrentHashMap<String, CompletableFuture<ImageIcon>> inFlight;
+
+	/**
+	 * The icons waiting for or being decoded by the prefetcher, by cache
+	 * key. Kept apart from inFlight so that an icon needed now is never
+	 * left waiting behind the prefetch queue.
+	 */
+	private ConcurrentHashMap<String, CompletableFuture<ImageIcon>> prefetching;
+
+	/**
+	 * A placeholder icon of each size requested, by cache key.
+	 */
+	private ConcurrentHashMap<String, ImageIcon> placeholders;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates a loader that keeps icons in cache.
+	 *
+	 * @param cache
+	 * 		Where to keep decoded icons.
+	 * @param threads
+	 * 		The number of threads decoding icons that are needed now.
+	 */
+	public IconLoader(IconCache cache, int threads) {
+		this.cache = cache;
+		this.decoders = Executors.newFixedThreadPool(threads, (task) -> {
+			Thread thread = new Thread(task, "AAC icon decoder");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.prefetcher = Executors.newSingleThreadExecutor((task) -> {
+			Thread thread = new Thread(task, "AAC icon prefetch");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+		this.inFlight = new ConcurrentHashMap<String, CompletableFuture<ImageIcon>>();
+		this.prefetching = new ConcurrentHashMap<String, CompletableFuture<ImageIcon>>();
+		this.placeholders = new ConcurrentHashMap<String, ImageIcon>();
+	} // IconLoader(IconCache, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Gets the icon for an image, scaled to fit in width by height pixels.
+	 * If it has not been decoded yet, returns a placeholder and decodes it
+	 * in the background.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param width
+	 * 		The most pixels across.
+	 * @param height
+	 * 		The most pixels down.
+	 * @param ready
+	 * 		Called on the event dispatch thread with the decoded icon, if a
+	 * 		placeholder was returned.
+	 * @return
+	 * 		The icon, or a placeholder of the same size.
+	 */
+	public ImageIcon load(String imageLoc, int width, int height,
+			Consumer<ImageIcon> ready) {
+		String key = key(imageLoc, width, height);
+		ImageIcon icon = this.cache.getIfPresent(key);
+		if (icon != null) {
+			return icon;
+		} // if
+		this.decode(imageLoc, width, height, this.decoders).thenAccept((decoded) ->
+				SwingUtilities.invokeLater(() -> ready.accept(decoded)));
+		return this.placeholders.computeIfAbsent(key(null, width, height),
+				(k) -> placeholder(width, height));
+	} // load(String, int, int, Consumer)
+
+	/**
+	 * Decodes the icon for an image in the background, if it is not
+	 * already cached or being decoded.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param width
+	 * 		The most pixels across.
+	 * @param height
+	 * 		The most pixels down.
+	 */
+	public void prefetch(String imageLoc, int width, int height) {
+		String key = key(imageLoc, width, height);
+		if (this.cache.peek(key) == null && !this.inFlight.containsKey(key)) {
+			this.decode(imageLoc, width, height, this.prefetcher);
+		} // if
+	} // prefetch(String, int, int)
+
+	/**
+	 * Decodes the icon for an image on the threads for icons that are
+	 * needed now, if it is not already cached or being decoded.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param width
+	 * 		The most pixels across.
+	 * @param height
+	 * 		The most pixels down.
+	 * @return
+	 * 		The icon, once it has been decoded and cached.
+	 */
+	public CompletableFuture<ImageIcon> preload(String imageLoc, int width,
+			int height) {
+		ImageIcon icon = this.cache.peek(key(imageLoc, width, height));
+		if (icon != null) {
+			return CompletableFuture.completedFuture(icon);
+		} // if
+		return this.decode(imageLoc, width, height, this.decoders);
+	} // preload(String, int, int)
+
+	/**
+	 * Gets the cache decoded icons are kept in.
+	 *
+	 * @return
+	 * 		The cache.
+	 */
+	public IconCache getCache() {
+		return this.cache;
+	} // getCache()
+
+	/**
+	 * Stops the decoding threads. Icons already being decoded are
+	 * finished.
+	 */
+	public void close() {
+		this.decoders.shutdown();
+		this.prefetcher.shutdown();
+	} // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Starts decoding an icon on some threads, unless it is already being
+	 * decoded on them. A prefetch skips the icon if it has been cached, or
+	 * is being decoded because it is needed now, by the time its turn
+	 * comes.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param width
+	 * 		The most pixels across.
+	 * @param height
+	 * 		The most pixels down.
+	 * @param executor
+	 * 		The threads to decode on.
+	 * @return
+	 * 		The icon, once it has been decoded and cached (null for a
+	 * 		prefetch that was skipped).
+	 */
+	private CompletableFuture<ImageIcon> decode(String imageLoc, int width,
+			int height, ExecutorService executor) {
+		String key = key(imageLoc, width, height);
+		boolean prefetch = (executor == this.prefetcher);
+		ConcurrentHashMap<String, CompletableFuture<ImageIcon>> flights =
+				prefetch ? this.prefetching : this.inFlight;
+		CompletableFuture<ImageIcon> future = flights.computeIfAbsent(key,
+				(k) -> CompletableFuture.supplyAsync(() -> {
+					ImageIcon icon = this.cache.peek(key);
+					if (icon == null && prefetch && this.inFlight.containsKey(key)) {
+						return null;
+					} // if
+					if (icon == null) {
+						icon = scale(imageLoc, width, height);
+						this.cache.put(key, icon);
+					} // if
+					return icon;
+				}, executor));
+		future.whenComplete((icon, error) -> flights.remove(key, future));
+		return future;
+	} // decode(String, int, int, ExecutorService)
+
+	/**
+	 * Reads an image and scales it to fit in width by height pixels,
+	 * keeping its proportions.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param width
+	 * 		The most pixels across.
+	 * @param height
+	 * 		The most pixels down.
+	 * @return
+	 * 		The scaled icon, or a placeholder if the image cannot be read.
+	 */
+	static ImageIcon scale(String imageLoc, int width, int height) {
+		BufferedImage original;
+		try {
+			original = ImageIO.read(new File(imageLoc));
+		} catch (IOException e) {
+			original = null;
+		} // try/catch
+		if (original == null) {
+			System.err.println("Cannot read image " + imageLoc);
+			return placeholder(width, height);
+		} // if
+
+		double factor = Math.min((double) width / original.getWidth(),
+				(double) height / original.getHeight());
+		int scaledWidth = Math.max(1, (int) Math.round(original.getWidth() * factor));
+		int scaledHeight = Math.max(1, (int) Math.round(original.getHeight() * factor));
+		BufferedImage scaled = new BufferedImage(scaledWidth, scaledHeight,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D pen = scaled.createGraphics();
+		pen.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		pen.drawImage(original, 0, 0, scaledWidth, scaledHeight, null);
+		pen.dispose();
+		return new ImageIcon(scaled);
+	} // scale(String, int, int)
+
+	/**
+	 * Makes a plain placeholder icon.
+	 *
+	 * @param width
+	 * 		The pixels across.
+	 * @param height
+	 * 		The pixels down.
+	 * @return
+	 * 		The placeholder.
+	 */
+	static ImageIcon placeholder(int width, int height) {
+		BufferedImage blank = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D pen = blank.createGraphics();
+		pen.setColor(PLACEHOLDER);
+		pen.fillRect(0, 0, width, height);
+		pen.dispose();
+		return new ImageIcon(blank);
+	} // placeholder(int, int)
+
+	/**
+	 * Makes the cache key for an image at a size.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param width
+	 * 		The most pixels across.
+	 * @param height
+	 * 		The most pixels down.
+	 * @return
+	 * 		The key.
+	 */
+	static String key(String imageLoc, int width, int height) {
+		return imageLoc + "@" + width + "x" + height;
+	} // key(String, int, int)
+} // class IconLoader
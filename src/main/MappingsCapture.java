@@ -0,0 +1,203 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+
+import edu.grinnell.csc207.util.AssociativeArray;
+import edu.grinnell.csc207.util.KVPair;
+
+/**
+ * A capture of an AACMappings as it was at one moment, to be written out
+ * later on another thread. Capturing is cheap: it copies one reference
+ * per category, since the items of each category are kept as immutable
+ * snapshots. Writing walks every item, so it is done from the capture,
+ * off the thread that edits the mappings. Use counts are read when the
+ * capture is written, not when it is made.
+ *
+ * @author Sara Jaljaa
+ */
+class MappingsCapture {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The default category.
+	 */
+	final AACCategory root;
+
+	/**
+	 * The items of the default category.
+	 */
+	final AssociativeArray<String, String> rootItems;
+
+	/**
+	 * The image of each category, in order.
+	 */
+	final String[] locs;
+
+	/**
+	 * The name of each category.
+	 */
+	final String[] names;
+
+	/**
+	 * The image of the category each category is nested in ("" for the
+	 * default category).
+	 */
+	final String[] parents;
+
+	/**
+	 * Each category.
+	 */
+	final AACCategory[] categories;
+
+	/**
+	 * The items of each category.
+	 */
+	final AssociativeArray<String, String>[] items;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Captures the categories and items of a set of mappings. Must be
+	 * called on the thread that edits the mappings.
+	 *
+	 * @param root
+	 * 		The default category.
+	 * @param categories
+	 * 		The other categories, by image.
+	 * @param parents
+	 * 		The image of the category each is nested in.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	MappingsCapture(AACCategory root, AssociativeArray<String, AACCategory> categories,
+			AssociativeArray<String, String> parents) {
+		this.root = root;
+		this.rootItems = root.items.snapshot();
+		int size = categories.size();
+		this.locs = new String[size];
+		this.names = new String[size];
+		this.parents = new String[size];
+		this.categories = new AACCategory[size];
+		this.items = new AssociativeArray[size];
+		for (int i = 0; i < size; i++) {
+			KVPair<String, AACCategory> pair = categories.pairs[i];
+			this.locs[i] = pair.key;
+			this.names[i] = pair.val.getCategory();
+			this.parents[i] = parents.getOrDefault(pair.key, "");
+			this.categories[i] = pair.val;
+			this.items[i] = pair.val.items.snapshot();
+		} // for
+	} // MappingsCapture(AACCategory, AssociativeArray, AssociativeArray)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Writes the mappings in the format described for
+	 * AACMappings.writeToFile, in time that grows linearly with the number
+	 * of items.
+	 *
+	 * @param pen
+	 * 		Where to write the mappings.
+	 *
+	 * @throws IOException
+	 * 		If pen cannot be written to.
+	 */
+	void write(Writer pen) throws IOException {
+		HashMap<String, Integer> index = new HashMap<String, Integer>();
+		for (int i = 0; i < this.locs.length; i++) {
+			index.put(this.locs[i], i);
+		} // for
+		this.write(pen, index, "", this.rootItems, 0);
+	} // write(Writer)
+
+	/**
+	 * Writes how often each image has been used, in the format described
+	 * for AACMappings.saveUses.
+	 *
+	 * @param pen
+	 * 		Where to write.
+	 *
+	 * @throws IOException
+	 * 		If pen cannot be written to.
+	 */
+	void writeUses(Writer pen) throws IOException {
+		writeUses(pen, "", this.root, this.rootItems);
+		for (int i = 0; i < this.locs.length; i++) {
+			writeUses(pen, this.locs[i], this.categories[i], this.items[i]);
+		} // for
+	} // writeUses(Writer)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Writes the images in a category, each followed by the contents of
+	 * the category it opens, if any.
+	 *
+	 * @param pen
+	 * 		Where to write the mappings.
+	 * @param index
+	 * 		The position of each category, by image.
+	 * @param categoryLoc
+	 * 		The image of the category ("" for the default category).
+	 * @param items
+	 * 		The items of the category.
+	 * @param depth
+	 * 		The number of > to write before each image.
+	 *
+	 * @throws IOException
+	 * 		If pen cannot be written to.
+	 */
+	private void write(Writer pen, HashMap<String, Integer> index, String categoryLoc,
+			AssociativeArray<String, String> items, int depth) throws IOException {
+		for (int j = 0; j < items.size(); j++) {
+			KVPair<String, String> item = items.pairs[j];
+			for (int d = 0; d < depth; d++) {
+				pen.write('>');
+			} // for
+			pen.write(item.key);
+			pen.write(' ');
+			pen.write(String.valueOf(item.val));
+			pen.write('\n');
+
+			/* Then all of the images contained within a nested category. */
+			Integer nested = index.get(item.key);
+			if (nested != null && this.parents[nested].equals(categoryLoc)) {
+				this.write(pen, index, item.key, this.items[nested], depth + 1);
+			} // if
+		} // for
+	} // write(Writer, HashMap, String, AssociativeArray, int)
+
+	/**
+	 * Writes how often each image in a category has been used, as
+	 * described for AACMappings.saveUses.
+	 *
+	 * @param pen
+	 * 		Where to write.
+	 * @param categoryLoc
+	 * 		The image of the category ("" for the default category).
+	 * @param category
+	 * 		The category.
+	 * @param items
+	 * 		Its items.
+	 *
+	 * @throws IOException
+	 * 		If pen cannot be written to.
+	 */
+	private static void writeUses(Writer pen, String categoryLoc, AACCategory category,
+			AssociativeArray<String, String> items) throws IOException {
+		for (int j = 0; j < items.size(); j++) {
+			double uses = category.getUses(items.pairs[j].key);
+			if (uses > 0) {
+				pen.write(categoryLoc + '\t' + items.pairs[j].key + '\t' + uses + '\n');
+			} // if
+		} // for
+	} // writeUses(Writer, String, AACCategory, AssociativeArray)
+} // class MappingsCapture
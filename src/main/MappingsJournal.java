@@ -0,0 +1,533 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only journal of the edits made to an AACMappings, kept
+ * beside a binary snapshot (see AACMappings.saveSnapshot). Each addItem
+ * or removeItem appends one small record to the journal and forces it
+ * to the disk, so edits are durable without rewriting the whole board.
+ * Opening the journal loads the snapshot and replays the journal on top
+ * of it. Once the journal grows past a threshold, it is compacted: the
+ * mappings are captured on the thread that edits them, then a compaction
+ * thread writes the capture as a new snapshot and drops the records it
+ * covers from the front of the journal. Edits go on being journaled
+ * while the snapshot is written.
+ *
+ * Each record is a type byte followed by the image of the category, the
+ * image and the text, each as an int length and that many bytes of
+ * UTF-8, so strings of any length can be journaled.
+ *
+ * Replaying a record twice has the same effect as replaying it once, so
+ * a crash between writing a new snapshot and dropping the records it
+ * covers is harmless. A record cut short by a crash is ignored and
+ * dropped.
+ *
+ * @author Sara Jaljaa
+ */
+public class MappingsJournal {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The record type for addItem.
+	 */
+	static final byte ADD = 1;
+
+	/**
+	 * The record type for removeItem.
+	 */
+	static final byte REMOVE = 2;
+
+	/**
+	 * The default journal size, in bytes, above which it is compacted.
+	 */
+	public static final long DEFAULT_THRESHOLD = 1024 * 1024;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The mappings whose edits are journaled.
+	 */
+	private AACMappings mappings;
+
+	/**
+	 * The snapshot the journal applies to.
+	 */
+	private Path snapshot;
+
+	/**
+	 * The name of the journal file.
+	 */
+	private Path path;
+
+	/**
+	 * The journal file, open for appending. Guarded by this.
+	 */
+	private FileChannel journal;
+
+	/**
+	 * The journal size, in bytes, above which it is compacted.
+	 */
+	private long threshold;
+
+	/**
+	 * The number of bytes dropped from the front of the journal by
+	 * compaction so far. Guarded by this.
+	 */
+	private long dropped;
+
+	/**
+	 * Whether a compaction started by append has yet to finish. Guarded
+	 * by this.
+	 */
+	private boolean compacting;
+
+	/**
+	 * The thread that compacts the journal.
+	 */
+	private ExecutorService compactor;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates a journal for mappings that have already been loaded.
+	 *
+	 * @param mappings
+	 * 		The mappings whose edits are journaled.
+	 * @param snapshot
+	 * 		The snapshot the journal applies to.
+	 * @param path
+	 * 		The name of the journal file.
+	 * @param journal
+	 * 		The journal file, positioned at its end.
+	 * @param threshold
+	 * 		The journal size above which it is compacted.
+	 */
+	private MappingsJournal(AACMappings mappings, Path snapshot, Path path,
+			FileChannel journal, long threshold) {
+		this.mappings = mappings;
+		this.snapshot = snapshot;
+		this.path = path;
+		this.journal = journal;
+		this.threshold = threshold;
+		this.dropped = 0;
+		this.compacting = false;
+		this.compactor = Executors.newSingleThreadExecutor((task) -> {
+			Thread thread = new Thread(task, "AAC journal");
+			thread.setDaemon(true);
+			return thread;
+		});
+	} // MappingsJournal(AACMappings, Path, Path, FileChannel, long)
+
+  // +----------------+----------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+	/**
+	 * Loads the mappings stored in a snapshot plus journal, and journals
+	 * all further edits to them. Either file may be missing, in which case
+	 * it is treated as empty.
+	 *
+	 * @param snapshotFile
+	 * 		The name of the snapshot file.
+	 * @param journalFile
+	 * 		The name of the journal file.
+	 * @param threshold
+	 * 		The journal size, in bytes, above which it is compacted.
+	 * @return
+	 * 		The mappings, with the journal attached.
+	 *
+	 * @throws IOException
+	 * 		If either file cannot be read, or the journal cannot be opened
+	 * 		for writing.
+	 */
+	public static AACMappings open(String snapshotFile, String journalFile,
+			long threshold) throws IOException {
+		Path snapshot = Paths.get(snapshotFile);
+		AACMappings mappings = Files.exists(snapshot)
+				? AACMappings.loadSnapshot(snapshotFile) : new AACMappings();
+
+		Path path = Paths.get(journalFile);
+		FileChannel journal = FileChannel.open(path,
+				StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			ByteBuffer contents = ByteBuffer.allocate((int) journal.size());
+			while (contents.hasRemaining() && journal.read(contents) >= 0) {
+				/* Keep reading. */
+			} // while
+			long good = replay(mappings, contents.array(), contents.position());
+			/* Drop a torn record at the end so new records follow good ones. */
+			journal.truncate(good);
+			journal.position(good);
+		} catch (IOException e) {
+			journal.close();
+			throw e;
+		} // try/catch
+
+		MappingsJournal result = new MappingsJournal(mappings, snapshot, path,
+				journal, threshold);
+		mappings.setJournal(result);
+		return result.mappings;
+	} // open(String, String, long)
+
+	/**
+	 * Loads the mappings stored in a snapshot plus journal, compacting at
+	 * the default threshold.
+	 *
+	 * @param snapshotFile
+	 * 		The name of the snapshot file.
+	 * @param journalFile
+	 * 		The name of the journal file.
+	 * @return
+	 * 		The mappings, with the journal attached.
+	 *
+	 * @throws IOException
+	 * 		If either file cannot be read, or the journal cannot be opened
+	 * 		for writing.
+	 */
+	public static AACMappings open(String snapshotFile, String journalFile)
+			throws IOException {
+		return open(snapshotFile, journalFile, DEFAULT_THRESHOLD);
+	} // open(String, String)
+
+	/**
+	 * Loads the mappings in a text file (see AACMappings(String)) and
+	 * journals all further edits beside it, in filename.snapshot and
+	 * filename.journal. The first time, the snapshot is made from the
+	 * text file; after that, the text file is only read for its name, and
+	 * the snapshot plus journal hold the mappings. How often each image
+	 * has been used is still read from and saved to usesFile(filename).
+	 *
+	 * @param filename
+	 * 		The name of the text file.
+	 * @return
+	 * 		The mappings, with the journal attached.
+	 *
+	 * @throws IOException
+	 * 		If the snapshot cannot be made, or either file cannot be read,
+	 * 		or the journal cannot be opened for writing.
+	 */
+	public static AACMappings openBeside(String filename) throws IOException {
+		Path snapshot = Paths.get(filename + ".snapshot");
+		if (!Files.exists(snapshot)) {
+			Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+			new AACMappings(filename).saveSnapshot(temp.toString());
+			SaveService.replace(temp, snapshot);
+		} // if
+		AACMappings mappings = open(snapshot.toString(), filename + ".journal");
+		mappings.source = filename;
+		mappings.loadUses(AACMappings.usesFile(filename));
+		return mappings;
+	} // openBeside(String)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Records that an item was added.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category it was added to ("" for the default
+	 * 		category).
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param text
+	 * 		The text associated with the image.
+	 *
+	 * @throws IOException
+	 * 		If the record cannot be written.
+	 */
+	void recordAdd(String categoryLoc, String imageLoc, String text)
+			throws IOException {
+		this.append(ADD, categoryLoc, imageLoc, text);
+	} // recordAdd(String, String, String)
+
+	/**
+	 * Records that an item was removed.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category it was removed from ("" for the
+	 * 		default category).
+	 * @param imageLoc
+	 * 		The location of the image.
+	 *
+	 * @throws IOException
+	 * 		If the record cannot be written.
+	 */
+	void recordRemove(String categoryLoc, String imageLoc) throws IOException {
+		this.append(REMOVE, categoryLoc, imageLoc, "");
+	} // recordRemove(String, String)
+
+	/**
+	 * Gets the current size of the journal.
+	 *
+	 * @return
+	 * 		The size of the journal, in bytes.
+	 *
+	 * @throws IOException
+	 * 		If the size cannot be read.
+	 */
+	public synchronized long size() throws IOException {
+		return this.journal.size();
+	} // size()
+
+	/**
+	 * Writes the mappings as a new snapshot and empties the journal,
+	 * waiting for the compaction thread to do so. Must be called on the
+	 * thread that edits the mappings.
+	 *
+	 * @throws IOException
+	 * 		If the snapshot cannot be written; the old snapshot and journal
+	 * 		are then left as they were.
+	 */
+	public void compact() throws IOException {
+		Future<?> done;
+		synchronized (this) {
+			MappingsCapture capture = this.mappings.capture();
+			long mark = this.dropped + this.journal.size();
+			done = this.compactor.submit(() -> {
+				this.compact(capture, mark);
+				return null;
+			});
+		} // synchronized
+		try {
+			done.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} // if
+			throw new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while compacting");
+		} // try/catch
+	} // compact()
+
+	/**
+	 * Waits for any compaction to finish and closes the journal file.
+	 * Later edits to the mappings are no longer journaled.
+	 *
+	 * @throws IOException
+	 * 		If the file cannot be closed.
+	 */
+	public void close() throws IOException {
+		this.mappings.setJournal(null);
+		this.compactor.shutdown();
+		try {
+			this.compactor.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} // try/catch
+		synchronized (this) {
+			this.journal.close();
+		} // synchronized
+	} // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Writes captured mappings as a new snapshot, then drops the records
+	 * they cover from the front of the journal. Runs on the compaction
+	 * thread, which handles captures in the order they were taken.
+	 *
+	 * @param capture
+	 * 		The mappings, as captured.
+	 * @param mark
+	 * 		The number of bytes ever written to the journal when the
+	 * 		mappings were captured.
+	 *
+	 * @throws IOException
+	 * 		If the snapshot or the journal cannot be written; the journal
+	 * 		then still holds every record.
+	 */
+	private void compact(MappingsCapture capture, long mark) throws IOException {
+		Path temp = this.snapshot.resolveSibling(this.snapshot.getFileName() + ".tmp");
+		MappingsSnapshot.save(capture, temp.toString());
+		SaveService.replace(temp, this.snapshot);
+
+		/* Keep the records written since the capture. */
+		synchronized (this) {
+			long start = mark - this.dropped;
+			ByteBuffer tail = ByteBuffer.allocate((int) (this.journal.size() - start));
+			while (tail.hasRemaining()
+					&& this.journal.read(tail, start + tail.position()) >= 0) {
+				/* Keep reading. */
+			} // while
+			tail.flip();
+			Path copy = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+			try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				while (tail.hasRemaining()) {
+					channel.write(tail);
+				} // while
+				channel.force(true);
+			} // try
+			SaveService.replace(copy, this.path);
+			FileChannel journal = FileChannel.open(this.path, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			this.journal.close();
+			this.journal = journal;
+			this.journal.position(this.journal.size());
+			this.dropped = mark;
+		} // synchronized
+	} // compact(MappingsCapture, long)
+
+	/**
+	 * Appends one record, forces it to the disk and, if the journal has
+	 * grown too large, captures the mappings and hands them to the
+	 * compaction thread.
+	 *
+	 * @param type
+	 * 		ADD or REMOVE.
+	 * @param categoryLoc
+	 * 		The image of the category edited.
+	 * @param imageLoc
+	 * 		The image added or removed.
+	 * @param text
+	 * 		The text of the image added.
+	 *
+	 * @throws IOException
+	 * 		If the record cannot be written.
+	 */
+	private synchronized void append(byte type, String categoryLoc, String imageLoc,
+			String text) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream record = new DataOutputStream(bytes);
+		record.writeByte(type);
+		writeString(record, categoryLoc);
+		writeString(record, imageLoc);
+		writeString(record, text);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+		while (buffer.hasRemaining()) {
+			this.journal.write(buffer);
+		} // while
+		this.journal.force(false);
+		if (!this.compacting && this.journal.size() > this.threshold) {
+			this.compacting = true;
+			MappingsCapture capture = this.mappings.capture();
+			long mark = this.dropped + this.journal.size();
+			this.compactor.execute(() -> {
+				try {
+					this.compact(capture, mark);
+				} catch (IOException e) {
+					System.err.println("Cannot compact journal: " + e.getMessage());
+				} finally {
+					synchronized (this) {
+						this.compacting = false;
+					} // synchronized
+				} // try/catch/finally
+			});
+		} // if
+	} // append(byte, String, String, String)
+
+	/**
+	 * Applies the records in a journal to mappings.
+	 *
+	 * @param mappings
+	 * 		The mappings to edit.
+	 * @param contents
+	 * 		The journal.
+	 * @param length
+	 * 		The number of bytes of contents in use.
+	 * @return
+	 * 		The length of the complete records at the start of contents.
+	 *
+	 * @throws IOException
+	 * 		If the journal contains a record of an unknown type.
+	 */
+	private static long replay(AACMappings mappings, byte[] contents, int length)
+			throws IOException {
+		ByteArrayInputStream bytes = new ByteArrayInputStream(contents, 0, length);
+		DataInputStream records = new DataInputStream(bytes);
+		long good = 0;
+		try {
+			while (bytes.available() > 0) {
+				byte type = records.readByte();
+				String categoryLoc = readString(records, bytes);
+				String imageLoc = readString(records, bytes);
+				String text = readString(records, bytes);
+				if (type == ADD) {
+					mappings.apply(categoryLoc, imageLoc, text);
+				} else if (type == REMOVE) {
+					mappings.apply(categoryLoc, imageLoc, null);
+				} else {
+					throw new IOException("Unknown journal record type " + type
+							+ " at byte " + good);
+				} // if/else
+				good = length - bytes.available();
+			} // while
+		} catch (EOFException e) {
+			/* A record cut short by a crash; everything before it is good. */
+		} // try/catch
+		return good;
+	} // replay(AACMappings, byte[], int)
+
+	/**
+	 * Writes a string to a record as its length and its UTF-8 bytes.
+	 *
+	 * @param record
+	 * 		Where to write the string.
+	 * @param str
+	 * 		The string.
+	 *
+	 * @throws IOException
+	 * 		If the string cannot be written (which should not happen).
+	 */
+	private static void writeString(DataOutputStream record, String str)
+			throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		record.writeInt(bytes.length);
+		record.write(bytes);
+	} // writeString(DataOutputStream, String)
+
+	/**
+	 * Reads a string written by writeString.
+	 *
+	 * @param records
+	 * 		Where to read the string.
+	 * @param bytes
+	 * 		The stream records reads from.
+	 * @return
+	 * 		The string.
+	 *
+	 * @throws EOFException
+	 * 		If the string was cut short.
+	 */
+	private static String readString(DataInputStream records, ByteArrayInputStream bytes)
+			throws IOException {
+		int length = records.readInt();
+		if (length < 0 || length > bytes.available()) {
+			throw new EOFException("String of " + length + " bytes cut short");
+		} // if
+		byte[] contents = new byte[length];
+		records.readFully(contents);
+		return new String(contents, StandardCharsets.UTF_8);
+	} // readString(DataInputStream, ByteArrayInputStream)
+} // class MappingsJournal
@@ -0,0 +1,367 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the AAC mappings file format into an AACMappings. The file is
+ * scanned a buffer at a time, once, looking only for the bytes that
+ * end a line (a newline) and that separate an image location from its
+ * text (the first space). Each line costs exactly two strings, the
+ * image location and the text; there is no per-line string, split array
+ * or substring. Since both delimiters are ASCII, scanning the raw UTF-8
+ * bytes is safe.
+ *
+ * Each line's depth is the number of > it starts with. A line at depth
+ * 0 is a category; a line at a greater depth goes in the most recent
+ * line one level up, which becomes a category if it was not one yet.
+ *
+ * Categories are made as their lines are read, but the images in each
+ * category are collected and added all at once when the input ends,
+ * since each addition to a category on its own copies the category.
+ *
+ * Lines that cannot be read (no text after the image location, or an
+ * item deeper than the line before it allows) are skipped and recorded,
+ * with their line numbers, in the list returned by getProblems().
+ *
+ * @author Sara Jaljaa
+ */
+class MappingsParser {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The initial size of the read buffer. Lines longer than this make
+	 * the buffer grow.
+	 */
+	static final int BUFFER_SIZE = 64 * 1024;
+
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+	/**
+	 * The images read for one category and not yet added to it.
+	 */
+	private static class Pending {
+		/** The images, in the order read. */
+		final List<String> imageLocs = new ArrayList<String>();
+
+		/** The text of each image. */
+		final List<String> texts = new ArrayList<String>();
+	} // class Pending
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The mappings being filled in.
+	 */
+	private AACMappings mappings;
+
+	/**
+	 * The name of the file being read, for error messages.
+	 */
+	private String source;
+
+	/**
+	 * The image of the most recent line at each depth, down to the depth
+	 * of the last line read.
+	 */
+	private List<String> path;
+
+	/**
+	 * The text of the most recent line at each depth.
+	 */
+	private List<String> texts;
+
+	/**
+	 * The category opened by the most recent line at each depth, or null
+	 * if that line has not become a category (yet).
+	 */
+	private List<AACCategory> nodes;
+
+	/**
+	 * The images read for each category ("" for the default category)
+	 * and not yet added to it.
+	 */
+	private Map<String, Pending> pending;
+
+	/**
+	 * The number of the line being read (starting at 1).
+	 */
+	private int lineNumber;
+
+	/**
+	 * Scratch space for copying out of buffers with no backing array.
+	 */
+	private byte[] scratch;
+
+	/**
+	 * Descriptions of the lines that could not be read.
+	 */
+	private List<String> problems;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates a parser that adds categories and items to mappings.
+	 *
+	 * @param mappings
+	 * 		The mappings to fill in.
+	 * @param source
+	 * 		The name of the file being read, for error messages.
+	 */
+	MappingsParser(AACMappings mappings, String source) {
+		this.mappings = mappings;
+		this.source = source;
+		this.path = new ArrayList<String>();
+		this.texts = new ArrayList<String>();
+		this.nodes = new ArrayList<AACCategory>();
+		this.pending = new LinkedHashMap<String, Pending>();
+		this.lineNumber = 0;
+		this.scratch = new byte[256];
+		this.problems = new ArrayList<String>();
+	} // MappingsParser(AACMappings, String)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Reads every line from channel.
+	 *
+	 * @param channel
+	 * 		The channel to read from.
+	 *
+	 * @throws IOException
+	 * 		If the channel cannot be read.
+	 */
+	public void parse(ReadableByteChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		while (true) {
+			boolean last = channel.read(buffer) < 0;
+			buffer.flip();
+			this.scan(buffer, last);
+			if (last) {
+				this.flush();
+				return;
+			} // if
+			/* A full buffer with no complete line in it needs more room; otherwise
+			move the partial line at the end to the front and read more. */
+			if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+				ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+				bigger.put(buffer);
+				buffer = bigger;
+			} else {
+				buffer.compact();
+			} // if/else
+		} // while
+	} // parse(ReadableByteChannel)
+
+	/**
+	 * Reads every line between the buffer's position and limit, which
+	 * hold the whole file (for instance, a mapped file). Strings are made
+	 * only for the image locations and text, straight from the buffer.
+	 *
+	 * @param buffer
+	 * 		The contents of the file.
+	 */
+	public void parse(ByteBuffer buffer) {
+		this.scan(buffer, true);
+		this.flush();
+	} // parse(ByteBuffer)
+
+	/**
+	 * Gets descriptions of the lines that could not be read, each of the
+	 * form "source:line: reason".
+	 *
+	 * @return
+	 * 		The list of problems; empty if every line was read.
+	 */
+	public List<String> getProblems() {
+		return this.problems;
+	} // getProblems()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Handles each complete line between the buffer's position and limit,
+	 * leaving the position at the start of the first incomplete line.
+	 *
+	 * @param buffer
+	 * 		The bytes to scan.
+	 * @param last
+	 * 		True if no more bytes follow, so that a final line without a
+	 * 		newline is complete.
+	 */
+	private void scan(ByteBuffer buffer, boolean last) {
+		int start = buffer.position();
+		int limit = buffer.limit();
+		for (int i = start; i < limit; i++) {
+			if (buffer.get(i) == '\n') {
+				this.line(buffer, start, i);
+				start = i + 1;
+			} // if
+		} // for
+		if (last && start < limit) {
+			this.line(buffer, start, limit);
+			start = limit;
+		} // if
+		buffer.position(start);
+	} // scan(ByteBuffer, boolean)
+
+	/**
+	 * Handles one line, adding a category or an item to the mappings.
+	 *
+	 * @param buffer
+	 * 		The bytes containing the line.
+	 * @param start
+	 * 		The index of the first byte of the line.
+	 * @param end
+	 * 		The index just past the last byte of the line.
+	 */
+	private void line(ByteBuffer buffer, int start, int end) {
+		this.lineNumber++;
+		if (end > start && buffer.get(end - 1) == '\r') {
+			end--;
+		} // if
+		if (start == end) {
+			return;
+		} // if
+
+		int depth = 0;
+		while (start < end && buffer.get(start) == '>') {
+			depth++;
+			start++;
+		} // while
+		int space = start;
+		while (space < end && buffer.get(space) != ' ') {
+			space++;
+		} // while
+		if (space == start || space == end) {
+			this.problem("expected an image location, a space and then text");
+			return;
+		} // if
+
+		String imageLoc = this.decode(buffer, start, space);
+		String text = this.decode(buffer, space + 1, end);
+		if (depth > this.path.size()) {
+			this.problem((depth == 1) ? "item appears before any category"
+					: "item is nested more deeply than the line before it");
+			return;
+		} // if
+		AACCategory category = null;
+		if (depth == 0) {
+			category = this.mappings.register("", imageLoc, text);
+			this.add("", imageLoc, text);
+		} else {
+			this.open(depth - 1);
+			this.add(this.path.get(depth - 1), imageLoc, text);
+		} // if/else
+		this.path.subList(depth, this.path.size()).clear();
+		this.texts.subList(depth, this.texts.size()).clear();
+		this.nodes.subList(depth, this.nodes.size()).clear();
+		this.path.add(imageLoc);
+		this.texts.add(text);
+		this.nodes.add(category);
+	} // line(ByteBuffer, int, int)
+
+	/**
+	 * Gets the category opened by the most recent line at a depth, making
+	 * that line a category if it is not one yet.
+	 *
+	 * @param depth
+	 * 		The depth, which must be less than that of the last line read.
+	 * @return
+	 * 		The category.
+	 */
+	private AACCategory open(int depth) {
+		AACCategory category = this.nodes.get(depth);
+		if (category == null) {
+			String parentLoc = this.path.get(depth - 1);
+			category = this.mappings.register(parentLoc, this.path.get(depth),
+					this.texts.get(depth));
+			this.nodes.set(depth, category);
+		} // if
+		return category;
+	} // open(int)
+
+	/**
+	 * Collects an image to be added to a category by flush.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category ("" for the default category).
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param text
+	 * 		The text of the image.
+	 */
+	private void add(String categoryLoc, String imageLoc, String text) {
+		Pending images = this.pending.get(categoryLoc);
+		if (images == null) {
+			images = new Pending();
+			this.pending.put(categoryLoc, images);
+		} // if
+		images.imageLocs.add(imageLoc);
+		images.texts.add(text);
+	} // add(String, String, String)
+
+	/**
+	 * Adds the images collected for each category to it, all at once.
+	 */
+	private void flush() {
+		for (Map.Entry<String, Pending> entry : this.pending.entrySet()) {
+			Pending images = entry.getValue();
+			this.mappings.addItems(entry.getKey(), images.imageLocs.toArray(new String[0]),
+					images.texts.toArray(new String[0]));
+		} // for
+		this.pending.clear();
+	} // flush()
+
+	/**
+	 * Decodes a range of UTF-8 bytes as a string.
+	 *
+	 * @param buffer
+	 * 		The bytes to decode.
+	 * @param start
+	 * 		The index of the first byte.
+	 * @param end
+	 * 		The index just past the last byte.
+	 * @return
+	 * 		The decoded string.
+	 */
+	private String decode(ByteBuffer buffer, int start, int end) {
+		int length = end - start;
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + start, length,
+					StandardCharsets.UTF_8);
+		} // if
+		if (this.scratch.length < length) {
+			this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+		} // if
+		buffer.get(start, this.scratch, 0, length);
+		return new String(this.scratch, 0, length, StandardCharsets.UTF_8);
+	} // decode(ByteBuffer, int, int)
+
+	/**
+	 * Records a problem with the current line.
+	 *
+	 * @param reason
+	 * 		What is wrong with the line.
+	 */
+	private void problem(String reason) {
+		this.problems.add(this.source + ":" + this.lineNumber + ": " + reason);
+	} // problem(String)
+} // class MappingsParser
@@ -0,0 +1,309 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+
+import edu.grinnell.csc207.util.AssociativeArray;
+
+/**
+ * Saves and restores AACMappings in a compact binary snapshot format.
+ * Every string is stored once in a string table, and categories and
+ * items refer to strings by number, so a snapshot loads with a handful
+ * of bulk reads instead of line-by-line parsing.
+ *
+ * A snapshot is a sequence of big-endian ints and bytes:
+ *
+ *   MAGIC VERSION
+ *   stringCount blobLength ends[stringCount] blob[blobLength]
+ *   categoryCount (loc name parent itemCount)[categoryCount]
+ *   itemCount (loc text)[itemCount]
+ *
+ * where ends[i] is the offset just past string i in the UTF-8 blob,
+ * parent is the image of the category a category is nested in ("" for
+ * the default category), each category comes after its parent, and the
+ * items of each category follow those of the category before it.
+ * Version 1 snapshots, which could not nest categories, have no parent.
+ *
+ * @author Sara Jaljaa
+ */
+class MappingsSnapshot {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The first four bytes of every snapshot ("AACS").
+	 */
+	static final int MAGIC = 0x41414353;
+
+	/**
+	 * The version of the format written by save.
+	 */
+	static final int VERSION = 2;
+
+	/**
+	 * The number of ints for each category in a version 2 snapshot.
+	 */
+	static final int CATEGORY_WIDTH = 4;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The number of each string added to the table so far.
+	 */
+	private HashMap<String, Integer> numbers;
+
+	/**
+	 * The encoded strings, one after another.
+	 */
+	private byte[] blob;
+
+	/**
+	 * The number of bytes of blob in use.
+	 */
+	private int blobLength;
+
+	/**
+	 * The offset just past each string in blob.
+	 */
+	private int[] ends;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates an empty string table.
+	 */
+	private MappingsSnapshot() {
+		this.numbers = new HashMap<String, Integer>();
+		this.blob = new byte[4096];
+		this.blobLength = 0;
+		this.ends = new int[64];
+	} // MappingsSnapshot()
+
+  // +----------------+----------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+	/**
+	 * Writes a snapshot of captured mappings to a file.
+	 *
+	 * @param mappings
+	 * 		The mappings to save, as captured by AACMappings.capture.
+	 * @param filename
+	 * 		The name of the file to write.
+	 *
+	 * @throws IOException
+	 * 		If the file cannot be written, or the mappings are too large to
+	 * 		fit in a snapshot.
+	 */
+	static void save(MappingsCapture mappings, String filename) throws IOException {
+		MappingsSnapshot table = new MappingsSnapshot();
+		int categoryCount = mappings.locs.length;
+
+		long itemCount = 0;
+		for (int i = 0; i < categoryCount; i++) {
+			itemCount += mappings.items[i].size();
+		} // for
+		if ((long) categoryCount * CATEGORY_WIDTH + itemCount * 2 > Integer.MAX_VALUE / 4) {
+			throw new IOException("Too many items for a snapshot: " + itemCount);
+		} // if
+		int[] categoryTable = new int[categoryCount * CATEGORY_WIDTH];
+		int[] itemTable = new int[(int) itemCount * 2];
+
+		int item = 0;
+		for (int i = 0; i < categoryCount; i++) {
+			AssociativeArray<String, String> items = mappings.items[i];
+			categoryTable[i * CATEGORY_WIDTH] = table.number(mappings.locs[i]);
+			categoryTable[i * CATEGORY_WIDTH + 1] = table.number(mappings.names[i]);
+			categoryTable[i * CATEGORY_WIDTH + 2] = table.number(mappings.parents[i]);
+			categoryTable[i * CATEGORY_WIDTH + 3] = items.size();
+			for (int j = 0; j < items.size(); j++) {
+				itemTable[item++] = table.number(items.pairs[j].key);
+				itemTable[item++] = table.number(items.pairs[j].val);
+			} // for (items)
+		} // for (categories)
+
+		int stringCount = table.numbers.size();
+		long size = 4L * (6L + stringCount + categoryTable.length + itemTable.length)
+				+ table.blobLength;
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Mappings too large for a snapshot: " + size + " bytes");
+		} // if
+		ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(stringCount);
+		buffer.putInt(table.blobLength);
+		putInts(buffer, table.ends, stringCount);
+		buffer.put(table.blob, 0, table.blobLength);
+		buffer.putInt(categoryCount);
+		putInts(buffer, categoryTable, categoryTable.length);
+		buffer.putInt((int) itemCount);
+		putInts(buffer, itemTable, itemTable.length);
+		buffer.flip();
+
+		try (FileChannel channel = FileChannel.open(Paths.get(filename),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			} // while
+			channel.force(true);
+		} // try
+	} // save(MappingsCapture, String)
+
+	/**
+	 * Reads mappings from a snapshot file.
+	 *
+	 * @param filename
+	 * 		The name of the file to read.
+	 * @return
+	 * 		The mappings stored in the file.
+	 *
+	 * @throws IOException
+	 * 		If the file cannot be read or is not a valid snapshot.
+	 */
+	static AACMappings load(String filename) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(filename)));
+		try {
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException(filename + " is not an AAC snapshot");
+			} // if
+			int version = buffer.getInt();
+			if (version != 1 && version != VERSION) {
+				throw new IOException(filename + " has unsupported snapshot version "
+						+ version);
+			} // if
+
+			int stringCount = buffer.getInt();
+			int blobLength = buffer.getInt();
+			int[] ends = getInts(buffer, stringCount);
+			int blobStart = buffer.position();
+			buffer.position(blobStart + blobLength);
+			String[] strings = new String[ends.length];
+			int start = 0;
+			for (int i = 0; i < ends.length; i++) {
+				if (ends[i] < start || ends[i] > blobLength) {
+					throw new IOException(filename + " has a corrupt string table");
+				} // if
+				strings[i] = new String(buffer.array(), blobStart + start,
+						ends[i] - start, StandardCharsets.UTF_8);
+				start = ends[i];
+			} // for
+
+			int width = (version == 1) ? 3 : CATEGORY_WIDTH;
+			int[] categoryTable = getInts(buffer, (long) buffer.getInt() * width);
+			int[] itemTable = getInts(buffer, (long) buffer.getInt() * 2);
+
+			AACMappings mappings = new AACMappings();
+			int item = 0;
+			for (int i = 0; i < categoryTable.length; i += width) {
+				String parentLoc = (version == 1) ? "" : strings[categoryTable[i + 2]];
+				AACCategory category = mappings.addCategory(parentLoc,
+						strings[categoryTable[i]], strings[categoryTable[i + 1]]);
+				String[] imageLocs = new String[categoryTable[i + width - 1]];
+				String[] texts = new String[imageLocs.length];
+				for (int j = 0; j < imageLocs.length; j++) {
+					imageLocs[j] = strings[itemTable[item]];
+					texts[j] = strings[itemTable[item + 1]];
+					item += 2;
+				} // for (items)
+				category.addItems(imageLocs, texts);
+			} // for (categories)
+			return mappings;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException
+				| IllegalArgumentException | NegativeArraySizeException
+				| NoSuchElementException e) {
+			throw new IOException(filename + " is truncated or corrupt", e);
+		} // try/catch
+	} // load(String)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Gets the number of a string in the table, adding it if necessary.
+	 *
+	 * @param str
+	 * 		The string to look up.
+	 * @return
+	 * 		The number of that string.
+	 */
+	private int number(String str) {
+		Integer number = this.numbers.get(str);
+		if (number != null) {
+			return number;
+		} // if
+
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		if (this.blobLength + bytes.length > this.blob.length) {
+			this.blob = Arrays.copyOf(this.blob,
+					Math.max(this.blobLength + bytes.length, this.blob.length * 2));
+		} // if
+		System.arraycopy(bytes, 0, this.blob, this.blobLength, bytes.length);
+		this.blobLength += bytes.length;
+
+		int next = this.numbers.size();
+		if (next == this.ends.length) {
+			this.ends = Arrays.copyOf(this.ends, this.ends.length * 2);
+		} // if
+		this.ends[next] = this.blobLength;
+		this.numbers.put(str, next);
+		return next;
+	} // number(String)
+
+	/**
+	 * Writes the first count values of an array to a buffer in one bulk put.
+	 *
+	 * @param buffer
+	 * 		The buffer to write to.
+	 * @param values
+	 * 		The values to write.
+	 * @param count
+	 * 		How many values to write.
+	 */
+	private static void putInts(ByteBuffer buffer, int[] values, int count) {
+		buffer.asIntBuffer().put(values, 0, count);
+		buffer.position(buffer.position() + 4 * count);
+	} // putInts(ByteBuffer, int[], int)
+
+	/**
+	 * Reads count ints from a buffer in one bulk get.
+	 *
+	 * @param buffer
+	 * 		The buffer to read from.
+	 * @param count
+	 * 		How many values to read.
+	 * @return
+	 * 		The values read.
+	 *
+	 * @throws IOException
+	 * 		If the buffer does not hold count more ints, so that a corrupt
+	 * 		count cannot make us allocate more than the file holds. The
+	 * 		count is a long so that multiplying a corrupt count by a width
+	 * 		cannot wrap around to a small one.
+	 */
+	private static int[] getInts(ByteBuffer buffer, long count) throws IOException {
+		if (count < 0 || count > buffer.remaining() / 4) {
+			throw new IOException("Snapshot is truncated: " + count + " values wanted, "
+					+ (buffer.remaining() / 4) + " left");
+		} // if
+		int[] values = new int[(int) count];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + 4 * values.length);
+		return values;
+	} // getInts(ByteBuffer, long)
+} // class MappingsSnapshot
@@ -0,0 +1,140 @@
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A page of the symbols most likely to be chosen next, as predicted
+ * from the ones chosen before it. The page is not stored anywhere: each
+ * time it is shown it asks a predictor, so it changes with every tap.
+ * Choosing a symbol from it speaks the symbol and teaches the predictor,
+ * just as choosing it from its own category does.
+ *
+ * @author Sara Jaljaa
+ */
+public class PredictionPage implements AACPage {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The predictor.
+	 */
+	private Predictor predictor;
+
+	/**
+	 * The number of symbols on the page.
+	 */
+	private int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates a page of predictions.
+	 *
+	 * @param predictor
+	 * 		Where the predictions come from, such as the one of a set of
+	 * 		mappings.
+	 * @param size
+	 * 		The most symbols to show.
+	 */
+	public PredictionPage(Predictor predictor, int size) {
+		this.predictor = predictor;
+		this.size = size;
+	} // PredictionPage(Predictor, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Does nothing but report that predictions cannot be edited.
+	 *
+	 * @param imageLoc
+	 * 		The location of the image.
+	 * @param text
+	 * 		The text that image should speak.
+	 *
+	 * @throws UnsupportedOperationException
+	 * 		Always.
+	 */
+	public void addItem(String imageLoc, String text) {
+		throw new UnsupportedOperationException("Predictions cannot be edited.");
+	} // addItem(String, String)
+
+	/**
+	 * Returns the images of the symbols most likely to be chosen next,
+	 * most likely first.
+	 *
+	 * @return
+	 * 		The images; empty if nothing has been learned.
+	 */
+	public String[] getImageLocs() {
+		List<SymbolIndex.Hit> hits = this.predictor.predict(this.size);
+		String[] images = new String[hits.size()];
+		for (int i = 0; i < images.length; i++) {
+			images[i] = hits.get(i).getImageLoc();
+		} // for
+		return images;
+	} // getImageLocs()
+
+	/**
+	 * Returns the name of the page.
+	 *
+	 * @return
+	 * 		"Predictions".
+	 */
+	public String getCategory() {
+		return "Predictions";
+	} // getCategory()
+
+	/**
+	 * Speaks a predicted symbol, and learns that it was chosen.
+	 *
+	 * @param imageLoc
+	 * 		The image of the symbol.
+	 * @return
+	 * 		The text of the symbol.
+	 *
+	 * @throws NoSuchElementException
+	 * 		If the symbol is not one of the predictions.
+	 */
+	public String select(String imageLoc) {
+		SymbolIndex.Hit hit = this.find(imageLoc);
+		if (hit == null) {
+			throw new NoSuchElementException("Image is not predicted: " + imageLoc);
+		} // if
+		this.predictor.record(hit.getCategoryLoc(), hit.getImageLoc(), hit.getText());
+		return hit.getText();
+	} // select(String)
+
+	/**
+	 * Determines if a symbol is one of the predictions.
+	 *
+	 * @param imageLoc
+	 * 		The image of the symbol.
+	 * @return
+	 * 		True if it is predicted, false otherwise.
+	 */
+	public boolean hasImage(String imageLoc) {
+		return this.find(imageLoc) != null;
+	} // hasImage(String)
+
+	/**
+	 * Finds a prediction by its image.
+	 *
+	 * @param imageLoc
+	 * 		The image.
+	 * @return
+	 * 		The prediction, or null if the image is not predicted.
+	 */
+	private SymbolIndex.Hit find(String imageLoc) {
+		for (SymbolIndex.Hit hit : this.predictor.predict(this.size)) {
+			if (hit.getImageLoc().equals(imageLoc)) {
+				return hit;
+			} // if
+		} // for
+		return null;
+	} // find(String)
+} // class PredictionPage
@@ -0,0 +1,465 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Predicts which symbol will be chosen next from the ones chosen before,
+ * with an n-gram model: counts of which symbol followed each symbol, and
+ * each pair of symbols, learned as they are chosen. A prediction uses
+ * the last two symbols if they have been seen together before, backing
+ * off to the last one and then to how often each symbol is chosen at
+ * all ("stupid backoff", with each step down worth BACKOFF as much).
+ *
+ * Symbols are numbered as they are first seen, and counts are kept in
+ * tables keyed by those numbers packed into longs, so there are no
+ * boxed keys. The symbols that followed each context are kept in order
+ * of count, so the best few are at the front and a prediction never has
+ * to look far, however many symbols there are. A predictor may be used
+ * from many threads.
+ *
+ * @author Sara Jaljaa
+ */
+public class Predictor {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * How much a count from a shorter context is worth, compared with one
+	 * from the next longer context.
+	 */
+	static final double BACKOFF = 0.4;
+
+	/**
+	 * The bits used for each symbol number in a key.
+	 */
+	static final int BITS = 21;
+
+	/**
+	 * The most symbols that can be learned; any others are ignored.
+	 */
+	static final int MAX_SYMBOLS = (1 << BITS) - 2;
+
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+	/**
+	 * A hash table from longs to ints, with open addressing, so neither
+	 * keys nor values are boxed. Keys must not be negative.
+	 */
+	private static class LongIntTable {
+		/** The keys, or EMPTY. */
+		long[] keys;
+
+		/** The value of each key. */
+		int[] values;
+
+		/** The number of keys. */
+		int size;
+
+		/** Marks an empty slot. */
+		static final long EMPTY = -1;
+
+		/**
+		 * Creates an empty table.
+		 */
+		LongIntTable() {
+			this.keys = new long[16];
+			this.values = new int[16];
+			this.size = 0;
+			Arrays.fill(this.keys, EMPTY);
+		} // LongIntTable()
+
+		/**
+		 * Finds the slot for a key: where it is, or where it would go.
+		 *
+		 * @param key
+		 * 		The key.
+		 * @return
+		 * 		The slot.
+		 */
+		int slot(long key) {
+			int mask = this.keys.length - 1;
+			int i = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+			while (this.keys[i] != EMPTY && this.keys[i] != key) {
+				i = (i + 1) & mask;
+			} // while
+			return i;
+		} // slot(long)
+
+		/**
+		 * Gets the value of a key.
+		 *
+		 * @param key
+		 * 		The key.
+		 * @return
+		 * 		The value, or -1 if there is none.
+		 */
+		int get(long key) {
+			int i = this.slot(key);
+			return (this.keys[i] == EMPTY) ? -1 : this.values[i];
+		} // get(long)
+
+		/**
+		 * Sets the value of a key.
+		 *
+		 * @param key
+		 * 		The key.
+		 * @param value
+		 * 		The value.
+		 */
+		void put(long key, int value) {
+			int i = this.slot(key);
+			if (this.keys[i] == EMPTY) {
+				if (2 * (this.size + 1) > this.keys.length) {
+					this.grow();
+					i = this.slot(key);
+				} // if
+				this.keys[i] = key;
+				this.size++;
+			} // if
+			this.values[i] = value;
+		} // put(long, int)
+
+		/**
+		 * Doubles the number of slots.
+		 */
+		void grow() {
+			long[] oldKeys = this.keys;
+			int[] oldValues = this.values;
+			this.keys = new long[oldKeys.length * 2];
+			this.values = new int[oldKeys.length * 2];
+			Arrays.fill(this.keys, EMPTY);
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != EMPTY) {
+					int j = this.slot(oldKeys[i]);
+					this.keys[j] = oldKeys[i];
+					this.values[j] = oldValues[i];
+				} // if
+			} // for
+		} // grow()
+	} // class LongIntTable
+
+	/**
+	 * The symbols that have followed one context, most often first.
+	 */
+	private static class Followers {
+		/** The symbols. */
+		int[] symbols = new int[4];
+
+		/** How often each symbol followed. */
+		int[] counts = new int[4];
+
+		/** The number of symbols. */
+		int size = 0;
+
+		/** The sum of the counts. */
+		long total = 0;
+	} // class Followers
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The number of each symbol, by its category and image.
+	 */
+	private HashMap<String, Integer> numbers;
+
+	/**
+	 * The image of the category of each symbol, by number.
+	 */
+	private ArrayList<String> categoryLocs;
+
+	/**
+	 * The image of each symbol, by number.
+	 */
+	private ArrayList<String> imageLocs;
+
+	/**
+	 * The label of each symbol, by number, or null once it is forgotten.
+	 */
+	private ArrayList<String> texts;
+
+	/**
+	 * The index in contexts of the followers of each context, by key.
+	 */
+	private LongIntTable contextIndex;
+
+	/**
+	 * The followers of every context seen.
+	 */
+	private ArrayList<Followers> contexts;
+
+	/**
+	 * Where each symbol is in the followers of each context, by the key
+	 * of both.
+	 */
+	private LongIntTable positions;
+
+	/**
+	 * The symbol chosen before the last one, or -1.
+	 */
+	private int previous;
+
+	/**
+	 * The last symbol chosen, or -1.
+	 */
+	private int last;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates a predictor that has learned nothing.
+	 */
+	public Predictor() {
+		this.numbers = new HashMap<String, Integer>();
+		this.categoryLocs = new ArrayList<String>();
+		this.imageLocs = new ArrayList<String>();
+		this.texts = new ArrayList<String>();
+		this.contextIndex = new LongIntTable();
+		this.contexts = new ArrayList<Followers>();
+		this.positions = new LongIntTable();
+		this.previous = -1;
+		this.last = -1;
+	} // Predictor()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Learns that a symbol was chosen after the ones chosen before it.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category the symbol is in ("" for home).
+	 * @param imageLoc
+	 * 		The image of the symbol.
+	 * @param text
+	 * 		The label of the symbol.
+	 */
+	public synchronized void record(String categoryLoc, String imageLoc, String text) {
+		String name = categoryLoc + '\n' + imageLoc;
+		Integer number = this.numbers.get(name);
+		if (number == null) {
+			if (this.texts.size() >= MAX_SYMBOLS) {
+				return;
+			} // if
+			number = this.texts.size();
+			this.numbers.put(name, number);
+			this.categoryLocs.add(categoryLoc);
+			this.imageLocs.add(imageLoc);
+			this.texts.add(text);
+		} else {
+			this.texts.set(number, text);
+		} // if/else
+
+		this.count(0, number);
+		if (this.last >= 0) {
+			this.count(this.last + 1, number);
+			if (this.previous >= 0) {
+				this.count(((long) (this.previous + 1) << BITS) | (this.last + 1), number);
+			} // if
+		} // if
+		this.previous = this.last;
+		this.last = number;
+	} // record(String, String, String)
+
+	/**
+	 * Forgets the symbols chosen so far, so the next prediction does not
+	 * depend on them, as at the start of a new sentence. Keeps everything
+	 * learned.
+	 */
+	public synchronized void startOver() {
+		this.previous = -1;
+		this.last = -1;
+	} // startOver()
+
+	/**
+	 * Changes the label of a symbol, if it has been learned.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category the symbol is in.
+	 * @param imageLoc
+	 * 		The image of the symbol.
+	 * @param text
+	 * 		The new label.
+	 */
+	public synchronized void relabel(String categoryLoc, String imageLoc, String text) {
+		Integer number = this.numbers.get(categoryLoc + '\n' + imageLoc);
+		if (number != null) {
+			this.texts.set(number, text);
+		} // if
+	} // relabel(String, String, String)
+
+	/**
+	 * Stops predicting a symbol, such as one removed from the board. It is
+	 * learned again, from scratch, if it is chosen again.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category the symbol is in.
+	 * @param imageLoc
+	 * 		The image of the symbol.
+	 */
+	public synchronized void forget(String categoryLoc, String imageLoc) {
+		Integer number = this.numbers.remove(categoryLoc + '\n' + imageLoc);
+		if (number != null) {
+			this.texts.set(number, null);
+		} // if
+	} // forget(String, String)
+
+	/**
+	 * Predicts the symbols most likely to be chosen next.
+	 *
+	 * @param limit
+	 * 		The most predictions wanted.
+	 * @return
+	 * 		The predictions, most likely first. The score of each is how
+	 * 		often it followed the context it was predicted from.
+	 */
+	public synchronized List<SymbolIndex.Hit> predict(int limit) {
+		long[] keys = {-1, -1, 0};
+		if (this.last >= 0) {
+			keys[1] = this.last + 1;
+			if (this.previous >= 0) {
+				keys[0] = ((long) (this.previous + 1) << BITS) | (this.last + 1);
+			} // if
+		} // if
+
+		/* The best few from each context not already counted in a longer one. */
+		List<Integer> chosen = new ArrayList<Integer>();
+		List<Double> scores = new ArrayList<Double>();
+		List<Integer> counts = new ArrayList<Integer>();
+		double weight = 1;
+		for (int k = 0; k < keys.length; k++) {
+			Followers followers = this.followers(keys[k]);
+			if (followers == null) {
+				continue;
+			} // if
+			int taken = 0;
+			for (int i = 0; i < followers.size && taken < limit; i++) {
+				int symbol = followers.symbols[i];
+				if (this.texts.get(symbol) == null || this.longer(keys, k, symbol)) {
+					continue;
+				} // if
+				chosen.add(symbol);
+				scores.add(weight * followers.counts[i] / followers.total);
+				counts.add(followers.counts[i]);
+				taken++;
+			} // for (i)
+			weight *= BACKOFF;
+		} // for (k)
+
+		Integer[] order = new Integer[chosen.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		} // for
+		Arrays.sort(order, (a, b) -> Double.compare(scores.get(b), scores.get(a)));
+		List<SymbolIndex.Hit> hits = new ArrayList<SymbolIndex.Hit>();
+		for (int i = 0; i < order.length && hits.size() < limit; i++) {
+			int symbol = chosen.get(order[i]);
+			hits.add(new SymbolIndex.Hit(this.categoryLocs.get(symbol), this.imageLocs.get(symbol),
+					this.texts.get(symbol), counts.get(order[i])));
+		} // for
+		return hits;
+	} // predict(int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Gets the followers of a context.
+	 *
+	 * @param context
+	 * 		The context's key, or -1 for none.
+	 * @return
+	 * 		The followers, or null if the context has not been seen.
+	 */
+	private Followers followers(long context) {
+		int i = (context < 0) ? -1 : this.contextIndex.get(context);
+		return (i < 0) ? null : this.contexts.get(i);
+	} // followers(long)
+
+	/**
+	 * Determines whether a symbol has followed a longer context than the
+	 * one at some index, so its prediction comes from there instead.
+	 *
+	 * @param keys
+	 * 		The keys of the contexts, longest first.
+	 * @param k
+	 * 		The index of the context.
+	 * @param symbol
+	 * 		The symbol.
+	 * @return
+	 * 		True if it has followed a longer context.
+	 */
+	private boolean longer(long[] keys, int k, int symbol) {
+		for (int j = 0; j < k; j++) {
+			if (keys[j] >= 0 && this.positions.get((keys[j] << BITS) | (symbol + 1)) >= 0) {
+				return true;
+			} // if
+		} // for
+		return false;
+	} // longer(long[], int, int)
+
+	/**
+	 * Counts one more of a symbol following a context, keeping the
+	 * followers in order of count.
+	 *
+	 * @param context
+	 * 		The context's key.
+	 * @param symbol
+	 * 		The symbol.
+	 */
+	private void count(long context, int symbol) {
+		Followers followers = this.followers(context);
+		if (followers == null) {
+			followers = new Followers();
+			this.contextIndex.put(context, this.contexts.size());
+			this.contexts.add(followers);
+		} // if
+		followers.total++;
+
+		long key = (context << BITS) | (symbol + 1);
+		int i = this.positions.get(key);
+		if (i < 0) {
+			if (followers.size == followers.symbols.length) {
+				followers.symbols = Arrays.copyOf(followers.symbols, followers.size * 2);
+				followers.counts = Arrays.copyOf(followers.counts, followers.size * 2);
+			} // if
+			i = followers.size++;
+			followers.symbols[i] = symbol;
+			followers.counts[i] = 0;
+			this.positions.put(key, i);
+		} // if
+
+		/* Swap it with the first symbol that has its old count. */
+		int count = followers.counts[i];
+		int lo = 0;
+		int hi = i;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (followers.counts[mid] > count) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			} // if/else
+		} // while
+		if (lo < i) {
+			int other = followers.symbols[lo];
+			followers.symbols[lo] = symbol;
+			followers.symbols[i] = other;
+			followers.counts[i] = count;
+			this.positions.put(key, lo);
+			this.positions.put((context << BITS) | (other + 1), i);
+			i = lo;
+		} // if
+		followers.counts[i] = count + 1;
+	} // count(long, int)
+} // class Predictor
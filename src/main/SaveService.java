@@ -0,0 +1,325 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Saves AACMappings to a file on a background thread. Each save captures
+ * the mappings on the calling thread, which only copies a reference per
+ * category, then renders the capture on the save thread, writes it to
+ * a temporary file, forces it to the disk, renames it over the target
+ * and forces the directory, so that the target always holds either the
+ * old or the new mappings in full.
+ * How often each image has been used is then written the same way to
+ * the uses file next to the target, but only if the mappings were
+ * written.
+ *
+ * Saves requested while an earlier one is still waiting to be written
+ * are coalesced: only the most recent snapshot is written.
+ *
+ * @author Sara Jaljaa
+ */
+public class SaveService {
+
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+	/**
+	 * The contents of the files to write for one save: either bytes, or
+	 * mappings to render into bytes on the save thread.
+	 */
+	private static class Snapshot {
+		/** The complete new contents of the target, or null to render them. */
+		final byte[] contents;
+
+		/** The complete new contents of the uses file, or null to leave it. */
+		final byte[] uses;
+
+		/** The mappings to render, or null if contents are given. */
+		final MappingsCapture mappings;
+
+		/**
+		 * Creates a snapshot.
+		 *
+		 * @param contents
+		 * 		The complete new contents of the target, or null.
+		 * @param uses
+		 * 		The complete new contents of the uses file, or null.
+		 * @param mappings
+		 * 		The mappings to render, or null.
+		 */
+		Snapshot(byte[] contents, byte[] uses, MappingsCapture mappings) {
+			this.contents = contents;
+			this.uses = uses;
+			this.mappings = mappings;
+		} // Snapshot(byte[], byte[], MappingsCapture)
+	} // class Snapshot
+
+  // +------------+--------------------------------------------------
+  // | Interfaces |
+  // +------------+
+
+	/**
+	 * Something to tell when a save finishes.
+	 */
+	public interface Listener {
+		/**
+		 * Called on the save thread after each write.
+		 *
+		 * @param target
+		 * 		The file that was written.
+		 * @param error
+		 * 		The reason the write failed, or null if it succeeded.
+		 */
+		void saved(Path target, IOException error);
+	} // interface Listener
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The file to save to.
+	 */
+	private Path target;
+
+	/**
+	 * The file to save how often each image has been used to.
+	 */
+	private Path usesTarget;
+
+	/**
+	 * Who to tell when a save finishes.
+	 */
+	private Listener listener;
+
+	/**
+	 * The single thread that writes files.
+	 */
+	private ExecutorService writer;
+
+	/**
+	 * The most recent snapshot not yet being written, or null if there is
+	 * none.
+	 */
+	private AtomicReference<Snapshot> pending;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates a service that saves to the given file.
+	 *
+	 * @param filename
+	 * 		The name of the file to save to.
+	 * @param listener
+	 * 		Who to tell when each save finishes.
+	 */
+	public SaveService(String filename, Listener listener) {
+		this.target = Paths.get(filename).toAbsolutePath();
+		this.usesTarget = Paths.get(AACMappings.usesFile(this.target.toString()));
+		this.listener = listener;
+		this.pending = new AtomicReference<Snapshot>();
+		this.writer = Executors.newSingleThreadExecutor((task) -> {
+			Thread thread = new Thread(task, "AAC save");
+			thread.setDaemon(true);
+			return thread;
+		});
+	} // SaveService(String, Listener)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Captures mappings and schedules them, and how often each image has
+	 * been used, to be written. Must be called on the thread that edits
+	 * the mappings; it takes time proportional to the number of
+	 * categories, not items.
+	 *
+	 * @param mappings
+	 * 		The mappings to save.
+	 */
+	public void save(AACMappings mappings) {
+		this.schedule(new Snapshot(null, null, mappings.capture()));
+	} // save(AACMappings)
+
+	/**
+	 * Schedules contents to be written, replacing any snapshot that is
+	 * still waiting to be written. Leaves the uses file as it is.
+	 *
+	 * @param contents
+	 * 		The complete new contents of the file.
+	 */
+	public void save(byte[] contents) {
+		this.save(contents, null);
+	} // save(byte[])
+
+	/**
+	 * Schedules contents to be written, and then the uses, replacing any
+	 * snapshot that is still waiting to be written.
+	 *
+	 * @param contents
+	 * 		The complete new contents of the file.
+	 * @param uses
+	 * 		The complete new contents of the uses file, or null to leave it
+	 * 		as it is.
+	 */
+	public void save(byte[] contents, byte[] uses) {
+		this.schedule(new Snapshot(contents, uses, null));
+	} // save(byte[], byte[])
+
+	/**
+	 * Waits for any scheduled save to finish and stops the save thread.
+	 */
+	public void close() {
+		this.writer.shutdown();
+		try {
+			this.writer.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} // try/catch
+	} // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Schedules a snapshot to be written, replacing any that is still
+	 * waiting to be written.
+	 *
+	 * @param snapshot
+	 * 		The snapshot.
+	 */
+	private void schedule(Snapshot snapshot) {
+		if (this.pending.getAndSet(snapshot) == null) {
+			this.writer.execute(this::flush);
+		} // if
+	} // schedule(Snapshot)
+
+	/**
+	 * Renders one kind of contents of a capture into bytes.
+	 *
+	 * @param mappings
+	 * 		The capture.
+	 * @param uses
+	 * 		True to render how often each image has been used, false to
+	 * 		render the mappings.
+	 * @return
+	 * 		The bytes, in UTF-8.
+	 *
+	 * @throws IOException
+	 * 		If the capture cannot be rendered (which should not happen).
+	 */
+	private static byte[] render(MappingsCapture mappings, boolean uses) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (Writer pen = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+			if (uses) {
+				mappings.writeUses(pen);
+			} else {
+				mappings.write(pen);
+			} // if/else
+		} // try
+		return bytes.toByteArray();
+	} // render(MappingsCapture, boolean)
+
+	/**
+	 * Writes the pending snapshot, if there still is one, and tells the
+	 * listener how it went.
+	 */
+	private void flush() {
+		Snapshot snapshot = this.pending.getAndSet(null);
+		if (snapshot == null) {
+			return;
+		} // if
+		IOException error = null;
+		try {
+			if (snapshot.mappings != null) {
+				write(this.target, render(snapshot.mappings, false));
+				write(this.usesTarget, render(snapshot.mappings, true));
+			} else {
+				write(this.target, snapshot.contents);
+				if (snapshot.uses != null) {
+					write(this.usesTarget, snapshot.uses);
+				} // if
+			} // if/else
+		} catch (IOException e) {
+			error = e;
+		} // try/catch
+		if (this.listener != null) {
+			this.listener.saved(this.target, error);
+		} // if
+	} // flush()
+
+	/**
+	 * Writes contents to a temporary file next to the target, forces it
+	 * to the disk and renames it over the target with replace.
+	 *
+	 * @param target
+	 * 		The file to write.
+	 * @param contents
+	 * 		The bytes to write.
+	 *
+	 * @throws IOException
+	 * 		If any step fails; the target is then left as it was.
+	 */
+	static void write(Path target, byte[] contents) throws IOException {
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.wrap(contents);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			} // while
+			channel.force(true);
+		} // try
+		replace(temp, target);
+	} // write(Path, byte[])
+
+	/**
+	 * Renames a file over another in one step, if the file system allows,
+	 * then forces the directory to the disk so that the rename is not
+	 * lost if the power fails.
+	 *
+	 * @param temp
+	 * 		The file to rename.
+	 * @param target
+	 * 		The file to replace.
+	 *
+	 * @throws IOException
+	 * 		If the file cannot be renamed.
+	 */
+	static void replace(Path temp, Path target) throws IOException {
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		} // try/catch
+		Path directory = target.toAbsolutePath().getParent();
+		if (directory != null) {
+			try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+				channel.force(true);
+			} catch (IOException e) {
+				/* Some systems, such as Windows, cannot open a directory. */
+			} // try/catch
+		} // if
+	} // replace(Path, Path)
+} // class SaveService
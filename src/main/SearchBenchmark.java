@@ -0,0 +1,179 @@
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+
+/**
+ * Measures how long searches take on a large, made-up board: type-ahead
+ * searches for the start of a word, and fuzzy searches for words with
+ * one or two typing mistakes. Labels are one to three words drawn from
+ * a vocabulary of made-up words, so the board behaves like a real one
+ * with many labels sharing words.
+ *
+ *   java SearchBenchmark [labels] [queries]
+ *
+ * @author Sara Jaljaa
+ */
+public class SearchBenchmark {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The number of labels in each category.
+	 */
+	static final int CATEGORY_SIZE = 100;
+
+	/**
+	 * The number of words in the vocabulary.
+	 */
+	static final int VOCABULARY = 20000;
+
+	/**
+	 * The syllables that words are made of.
+	 */
+	static final String[] SYLLABLES = {"ba", "be", "bo", "ca", "ci", "da", "de", "do",
+			"fa", "fi", "ga", "go", "ha", "he", "ka", "ki", "la", "li", "lo", "ma", "me",
+			"mi", "na", "ne", "no", "pa", "pe", "po", "ra", "re", "ri", "sa", "se", "so",
+			"ta", "te", "to", "va", "vi", "wa", "ya", "za"};
+
+  // +----------------+----------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+	/**
+	 * Makes a vocabulary of distinct made-up words.
+	 *
+	 * @param random
+	 * 		Where the words come from.
+	 * @return
+	 * 		The words.
+	 */
+	static String[] vocabulary(Random random) {
+		LinkedHashSet<String> words = new LinkedHashSet<String>();
+		while (words.size() < VOCABULARY) {
+			StringBuilder word = new StringBuilder();
+			for (int s = 2 + random.nextInt(3); s > 0; s--) {
+				word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+			} // for
+			words.add(word.toString());
+		} // while
+		return words.toArray(new String[words.size()]);
+	} // vocabulary(Random)
+
+	/**
+	 * Makes an index of made-up labels.
+	 *
+	 * @param labels
+	 * 		The number of labels.
+	 * @param words
+	 * 		The words to make them from.
+	 * @param random
+	 * 		Where the labels come from.
+	 * @return
+	 * 		The index.
+	 */
+	static SymbolIndex board(int labels, String[] words, Random random) {
+		SymbolIndex index = new SymbolIndex();
+		for (int i = 0; i < labels; i++) {
+			StringBuilder label = new StringBuilder(words[random.nextInt(words.length)]);
+			for (int w = random.nextInt(3); w > 0; w--) {
+				label.append(' ').append(words[random.nextInt(words.length)]);
+			} // for
+			index.add("img/category" + (i / CATEGORY_SIZE) + ".png", "img/symbol" + i + ".png",
+					label.toString());
+		} // for
+		return index;
+	} // board(int, String[], Random)
+
+	/**
+	 * Makes typing mistakes in a word: each one drops, doubles or changes
+	 * a letter.
+	 *
+	 * @param word
+	 * 		The word.
+	 * @param mistakes
+	 * 		The number of mistakes.
+	 * @param random
+	 * 		Where the mistakes come from.
+	 * @return
+	 * 		The misspelled word.
+	 */
+	static String misspell(String word, int mistakes, Random random) {
+		StringBuilder typed = new StringBuilder(word);
+		for (int m = 0; m < mistakes; m++) {
+			int at = random.nextInt(typed.length());
+			switch (random.nextInt(3)) {
+				case 0:
+					typed.deleteCharAt(at);
+					break;
+				case 1:
+					typed.insert(at, typed.charAt(at));
+					break;
+				default:
+					typed.setCharAt(at, (char) ('a' + random.nextInt(26)));
+			} // switch
+		} // for
+		return typed.toString();
+	} // misspell(String, int, Random)
+
+	/**
+	 * Summarizes how long some searches took.
+	 *
+	 * @param name
+	 * 		The kind of search.
+	 * @param nanos
+	 * 		How long each took, in nanoseconds.
+	 * @param hits
+	 * 		The number of hits found in all.
+	 * @return
+	 * 		A string of the form "NAME: N queries, H hits, latency p50 A us,
+	 * 		p99 B us, max C us".
+	 */
+	static String summary(String name, long[] nanos, long hits) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		return String.format("%s: %d queries, %d hits, latency p50 %.1f us, p99 %.1f us,"
+				+ " max %.1f us", name, sorted.length, hits, sorted[sorted.length / 2] / 1000.0,
+				sorted[sorted.length * 99 / 100] / 1000.0, sorted[sorted.length - 1] / 1000.0);
+	} // summary(String, long[], long)
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 * 		The number of labels and the number of queries of each kind,
+	 * 		each optional.
+	 */
+	public static void main(String[] args) {
+		int labels = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		int queries = (args.length > 1) ? Integer.parseInt(args[1]) : 2000;
+		Random random = new Random(207);
+		String[] words = vocabulary(random);
+		long began = System.nanoTime();
+		SymbolIndex index = board(labels, words, random);
+		System.out.println(String.format("Indexed %d labels in %.0f ms", index.size(),
+				(System.nanoTime() - began) / 1e6));
+
+		String[] kinds = {"prefix", "fuzzy, 1 mistake", "fuzzy, 2 mistakes"};
+		for (int kind = 0; kind < kinds.length; kind++) {
+			long[] nanos = new long[queries];
+			long hits = 0;
+			/* The first pass warms up the JIT compiler; only the second counts. */
+			for (int pass = 0; pass < 2; pass++) {
+				hits = 0;
+				for (int q = 0; q < queries; q++) {
+					String word = words[random.nextInt(words.length)];
+					long start = System.nanoTime();
+					if (kind == 0) {
+						hits += index.search(word.substring(0, 3), 9).size();
+					} else {
+						hits += index.fuzzySearch(misspell(word, kind, random), kind, 9).size();
+					} // if/else
+					nanos[q] = System.nanoTime() - start;
+				} // for
+			} // for
+			System.out.println(summary(kinds[kind], nanos, hits));
+		} // for
+	} // main(String[])
+} // class SearchBenchmark
@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+
+/**
+ * A sentence being composed one symbol at a time, as on the strip above
+ * an AAC grid. Symbols are added to the end and taken off the end with
+ * undo; finishing the sentence hands back all of its words at once, so
+ * that they can be spoken in a single call to the synthesizer, and
+ * keeps them for replay. A strip may be used from many threads.
+ *
+ * @author Sara Jaljaa
+ */
+public class SentenceStrip {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The images of the symbols, in order.
+	 */
+	private ArrayList<String> imageLocs;
+
+	/**
+	 * The words of the symbols, in order.
+	 */
+	private ArrayList<String> words;
+
+	/**
+	 * The last sentence finished, or "" if there is none.
+	 */
+	private String last;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates an empty strip.
+	 */
+	public SentenceStrip() {
+		this.imageLocs = new ArrayList<String>();
+		this.words = new ArrayList<String>();
+		this.last = "";
+	} // SentenceStrip()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Adds a symbol to the end of the sentence.
+	 *
+	 * @param imageLoc
+	 * 		The image of the symbol.
+	 * @param text
+	 * 		Its words.
+	 */
+	public synchronized void append(String imageLoc, String text) {
+		this.imageLocs.add(imageLoc);
+		this.words.add(text);
+	} // append(String, String)
+
+	/**
+	 * Takes the last symbol off the sentence.
+	 *
+	 * @return
+	 * 		Its words, or null if the sentence is empty.
+	 */
+	public synchronized String undo() {
+		if (this.words.isEmpty()) {
+			return null;
+		} // if
+		this.imageLocs.remove(this.imageLocs.size() - 1);
+		return this.words.remove(this.words.size() - 1);
+	} // undo()
+
+	/**
+	 * Takes every symbol off the sentence.
+	 */
+	public synchronized void clear() {
+		this.imageLocs.clear();
+		this.words.clear();
+	} // clear()
+
+	/**
+	 * Ends the sentence: empties the strip and keeps the sentence for
+	 * replay.
+	 *
+	 * @return
+	 * 		The words of the sentence, separated by spaces, or "" if it is
+	 * 		empty (in which case the last sentence is kept for replay).
+	 */
+	public synchronized String finish() {
+		String sentence = this.getText();
+		if (!sentence.isEmpty()) {
+			this.last = sentence;
+			this.clear();
+		} // if
+		return sentence;
+	} // finish()
+
+	/**
+	 * Gets the last sentence finished, to say again.
+	 *
+	 * @return
+	 * 		The sentence, or "" if none has been finished.
+	 */
+	public synchronized String replay() {
+		return this.last;
+	} // replay()
+
+	/**
+	 * Gets the words of the sentence so far.
+	 *
+	 * @return
+	 * 		The words, separated by spaces.
+	 */
+	public synchronized String getText() {
+		return String.join(" ", this.words);
+	} // getText()
+
+	/**
+	 * Gets the images of the symbols in the sentence so far.
+	 *
+	 * @return
+	 * 		The images, in order.
+	 */
+	public synchronized String[] getImageLocs() {
+		return this.imageLocs.toArray(new String[this.imageLocs.size()]);
+	} // getImageLocs()
+
+	/**
+	 * Gets the number of symbols in the sentence so far.
+	 *
+	 * @return
+	 * 		The number of symbols.
+	 */
+	public synchronized int size() {
+		return this.words.size();
+	} // size()
+} // class SentenceStrip
@@ -0,0 +1,81 @@
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * The current version of a board that many sessions share. Readers
+ * take whatever version is current, without locking; editors make a
+ * new version and swap it in atomically, so every reader sees either
+ * the whole edit or none of it.
+ *
+ * @author Sara Jaljaa
+ */
+public class SharedBoard {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The current version.
+	 */
+	private AtomicReference<Board> current;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Shares a board.
+	 *
+	 * @param board
+	 * 		The first version.
+	 */
+	public SharedBoard(Board board) {
+		this.current = new AtomicReference<Board>(board);
+	} // SharedBoard(Board)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Gets the current version.
+	 *
+	 * @return
+	 * 		The board.
+	 */
+	public Board get() {
+		return this.current.get();
+	} // get()
+
+	/**
+	 * Replaces the current version outright.
+	 *
+	 * @param board
+	 * 		The new version.
+	 */
+	public void publish(Board board) {
+		this.current.set(board);
+	} // publish(Board)
+
+	/**
+	 * Edits the current version and publishes the result. If another
+	 * edit is published first, the edit is made again on top of it, so no
+	 * edit is lost.
+	 *
+	 * @param edit
+	 * 		Makes the new version from the current one. It may be called
+	 * 		more than once, so it should do nothing but make the board.
+	 * @return
+	 * 		The version published.
+	 */
+	public Board update(UnaryOperator<Board> edit) {
+		while (true) {
+			Board old = this.current.get();
+			Board edited = edit.apply(old);
+			if (this.current.compareAndSet(old, edited)) {
+				return edited;
+			} // if
+		} // while
+	} // update(UnaryOperator)
+} // class SharedBoard
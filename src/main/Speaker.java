@@ -0,0 +1,40 @@
+/**
+ * Something that can speak text aloud, such as a speech synthesizer.
+ *
+ * @author Sara Jaljaa
+ */
+public interface Speaker {
+
+	/**
+	 * What to say, silently, when warming up.
+	 */
+	public static final String WARM_UP = "Hello, how are you?";
+
+	/**
+	 * Speaks text aloud, returning once it has been spoken (or stopped).
+	 *
+	 * @param text
+	 * 		The text to speak.
+	 *
+	 * @throws Exception
+	 * 		If the text cannot be spoken.
+	 */
+	public void speak(String text) throws Exception;
+
+	/**
+	 * Stops whatever is being spoken, so that a call to speak that is in
+	 * progress on another thread returns early.
+	 */
+	public void stop();
+
+	/**
+	 * Gets ready to speak, without making a sound, so that the first real
+	 * utterance does not pay for loading lexicons and compiling code. Does
+	 * nothing unless overridden.
+	 *
+	 * @throws Exception
+	 * 		If the speaker cannot get ready.
+	 */
+	public default void warmUp() throws Exception {
+	} // warmUp()
+} // interface Speaker
@@ -0,0 +1,324 @@
+import java.util.ArrayDeque;
+
+/**
+ * Speaks text on its own thread, so that whoever asks for speech (such
+ * as the Swing event thread) never waits for it. Requests wait in a
+ * bounded queue. Each request says what to do about speech that is
+ * already playing or waiting:
+ *
+ *   QUEUE      wait behind everything else (if the queue is full, the
+ *              oldest waiting request is dropped to make room);
+ *   REPLACE    drop everything waiting, but let the current utterance
+ *              finish;
+ *   INTERRUPT  drop everything waiting and stop the current utterance.
+ *
+ * An optional callback hears how each request ended.
+ *
+ * @author Sara Jaljaa
+ */
+public class SpeechDispatcher {
+
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+	/**
+	 * What to do about speech already playing or waiting.
+	 */
+	public enum Policy {
+		/** Wait behind everything else. */
+		QUEUE,
+		/** Drop everything waiting. */
+		REPLACE,
+		/** Drop everything waiting and stop the current utterance. */
+		INTERRUPT
+	} // enum Policy
+
+	/**
+	 * How a request ended.
+	 */
+	public enum Outcome {
+		/** The text was spoken in full. */
+		SPOKEN,
+		/** The text was stopped part way through by a later request. */
+		INTERRUPTED,
+		/** The text was dropped before it was spoken. */
+		DROPPED,
+		/** The speaker failed. */
+		FAILED
+	} // enum Outcome
+
+	/**
+	 * Something to tell when a request ends.
+	 */
+	public interface Callback {
+		/**
+		 * Called on the speech thread when a request ends.
+		 *
+		 * @param text
+		 * 		The text of the request.
+		 * @param outcome
+		 * 		How it ended.
+		 */
+		void done(String text, Outcome outcome);
+	} // interface Callback
+
+	/**
+	 * A request to speak.
+	 */
+	private static class Request {
+		/** The text to speak. */
+		String text;
+
+		/** Who to tell when it ends (may be null). */
+		Callback callback;
+
+		/**
+		 * Creates a request.
+		 *
+		 * @param text
+		 * 		The text to speak.
+		 * @param callback
+		 * 		Who to tell when it ends.
+		 */
+		Request(String text, Callback callback) {
+			this.text = text;
+			this.callback = callback;
+		} // Request(String, Callback)
+
+		/**
+		 * Tells the callback, if any, how the request ended.
+		 *
+		 * @param outcome
+		 * 		How it ended.
+		 */
+		void finish(Outcome outcome) {
+			if (this.callback != null) {
+				this.callback.done(this.text, outcome);
+			} // if
+		} // finish(Outcome)
+	} // class Request
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The default number of requests that may wait.
+	 */
+	public static final int DEFAULT_CAPACITY = 16;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * What does the speaking.
+	 */
+	private Speaker speaker;
+
+	/**
+	 * The requests waiting to be spoken. Guarded by this.
+	 */
+	private ArrayDeque<Request> waiting;
+
+	/**
+	 * The most requests that may wait.
+	 */
+	private int capacity;
+
+	/**
+	 * The request being spoken, or null. Guarded by this.
+	 */
+	private Request current;
+
+	/**
+	 * Whether the current request has been interrupted. Guarded by this.
+	 */
+	private boolean interrupted;
+
+	/**
+	 * Whether the dispatcher has been closed. Guarded by this.
+	 */
+	private boolean closed;
+
+	/**
+	 * The thread that speaks.
+	 */
+	private Thread thread;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates a dispatcher and starts its thread.
+	 *
+	 * @param speaker
+	 * 		What does the speaking.
+	 * @param capacity
+	 * 		The most requests that may wait.
+	 */
+	public SpeechDispatcher(Speaker speaker, int capacity) {
+		this.speaker = speaker;
+		this.capacity = capacity;
+		this.waiting = new ArrayDeque<Request>(capacity);
+		this.current = null;
+		this.interrupted = false;
+		this.closed = false;
+		this.thread = new Thread(this::run, "AAC speech");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	} // SpeechDispatcher(Speaker, int)
+
+	/**
+	 * Creates a dispatcher with the default capacity and starts its thread.
+	 *
+	 * @param speaker
+	 * 		What does the speaking.
+	 */
+	public SpeechDispatcher(Speaker speaker) {
+		this(speaker, DEFAULT_CAPACITY);
+	} // SpeechDispatcher(Speaker)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Asks for text to be spoken. Returns at once.
+	 *
+	 * @param text
+	 * 		The text to speak.
+	 * @param policy
+	 * 		What to do about speech already playing or waiting.
+	 * @param callback
+	 * 		Who to tell when the request ends, or null.
+	 */
+	public void speak(String text, Policy policy, Callback callback) {
+		Request request = new Request(text, callback);
+		Request overflow = null;
+		ArrayDeque<Request> dropped = new ArrayDeque<Request>();
+		synchronized (this) {
+			if (this.closed) {
+				dropped.add(request);
+			} else {
+				if (policy != Policy.QUEUE) {
+					dropped.addAll(this.waiting);
+					this.waiting.clear();
+				} // if
+				if (policy == Policy.INTERRUPT && this.current != null) {
+					this.interrupted = true;
+					this.speaker.stop();
+				} // if
+				if (this.waiting.size() >= this.capacity) {
+					overflow = this.waiting.poll();
+				} // if
+				this.waiting.add(request);
+				this.notifyAll();
+			} // if/else
+		} // synchronized
+		if (overflow != null) {
+			dropped.add(overflow);
+		} // if
+		for (Request r : dropped) {
+			r.finish(Outcome.DROPPED);
+		} // for
+	} // speak(String, Policy, Callback)
+
+	/**
+	 * Asks for text to be spoken after everything else.
+	 *
+	 * @param text
+	 * 		The text to speak.
+	 */
+	public void speak(String text) {
+		this.speak(text, Policy.QUEUE, null);
+	} // speak(String)
+
+	/**
+	 * Drops everything waiting and stops the current utterance.
+	 */
+	public void stop() {
+		ArrayDeque<Request> dropped;
+		synchronized (this) {
+			dropped = new ArrayDeque<Request>(this.waiting);
+			this.waiting.clear();
+			if (this.current != null) {
+				this.interrupted = true;
+				this.speaker.stop();
+			} // if
+		} // synchronized
+		for (Request r : dropped) {
+			r.finish(Outcome.DROPPED);
+		} // for
+	} // stop()
+
+	/**
+	 * Gets the number of requests waiting to be spoken.
+	 *
+	 * @return
+	 * 		The number of waiting requests.
+	 */
+	public synchronized int waiting() {
+		return this.waiting.size();
+	} // waiting()
+
+	/**
+	 * Stops speaking, drops everything waiting and ends the thread.
+	 */
+	public void close() {
+		synchronized (this) {
+			this.closed = true;
+		} // synchronized
+		this.stop();
+		synchronized (this) {
+			this.notifyAll();
+		} // synchronized
+	} // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Speaks requests, one at a time, until closed.
+	 */
+	private void run() {
+		while (true) {
+			Request request;
+			synchronized (this) {
+				while (this.waiting.isEmpty() && !this.closed) {
+					try {
+						this.wait();
+					} catch (InterruptedException e) {
+						return;
+					} // try/catch
+				} // while
+				if (this.closed) {
+					return;
+				} // if
+				request = this.waiting.poll();
+				this.current = request;
+				this.interrupted = false;
+			} // synchronized
+
+			Outcome outcome;
+			try {
+				this.speaker.speak(request.text);
+				outcome = Outcome.SPOKEN;
+			} catch (Exception e) {
+				outcome = Outcome.FAILED;
+				e.printStackTrace();
+			} // try/catch
+
+			synchronized (this) {
+				if (this.interrupted) {
+					outcome = Outcome.INTERRUPTED;
+				} // if
+				this.current = null;
+			} // synchronized
+			request.finish(outcome);
+		} // while
+	} // run()
+} // class SpeechDispatcher
@@ -0,0 +1,706 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+import edu.grinnell.csc207.util.AssociativeArray;
+
+/**
+ * Finds symbols by the words in their labels, as someone types. Each
+ * label is split into lowercase words (runs of letters and digits). An
+ * inverted index maps each word to the symbols whose labels contain it,
+ * and a trie over the words finds every word that starts with what has
+ * been typed so far, so the last word of a query need not be finished.
+ *
+ * For misspellings, a BK-tree over the same words finds every word
+ * within a few edits of each word of a query (see fuzzySearch).
+ *
+ * Symbols are added, relabeled and removed one at a time, so the index
+ * can follow edits to a board without being rebuilt. An index may be
+ * used from many threads.
+ *
+ * @author Sara Jaljaa
+ */
+public class SymbolIndex {
+
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+	/**
+	 * A symbol that matches a query. Hits do not change.
+	 */
+	public static class Hit {
+		/** The image of the category the symbol is in ("" for home). */
+		private final String categoryLoc;
+
+		/** The image of the symbol. */
+		private final String imageLoc;
+
+		/** The label of the symbol. */
+		private final String text;
+
+		/** How well the symbol matches; higher is better. */
+		private final int score;
+
+		/**
+		 * Creates a hit.
+		 *
+		 * @param categoryLoc
+		 * 		The image of the category the symbol is in.
+		 * @param imageLoc
+		 * 		The image of the symbol.
+		 * @param text
+		 * 		The label of the symbol.
+		 * @param score
+		 * 		How well the symbol matches.
+		 */
+		Hit(String categoryLoc, String imageLoc, String text, int score) {
+			this.categoryLoc = categoryLoc;
+			this.imageLoc = imageLoc;
+			this.text = text;
+			this.score = score;
+		} // Hit(String, String, String, int)
+
+		/**
+		 * Gets the image of the category the symbol is in.
+		 *
+		 * @return
+		 * 		The image, or "" for the home page.
+		 */
+		public String getCategoryLoc() {
+			return this.categoryLoc;
+		} // getCategoryLoc()
+
+		/**
+		 * Gets the image of the symbol.
+		 *
+		 * @return
+		 * 		The image.
+		 */
+		public String getImageLoc() {
+			return this.imageLoc;
+		} // getImageLoc()
+
+		/**
+		 * Gets the label of the symbol.
+		 *
+		 * @return
+		 * 		The label.
+		 */
+		public String getText() {
+			return this.text;
+		} // getText()
+
+		/**
+		 * Gets how well the symbol matches the query.
+		 *
+		 * @return
+		 * 		The score; higher is better.
+		 */
+		public int getScore() {
+			return this.score;
+		} // getScore()
+
+		/**
+		 * Describes the hit.
+		 *
+		 * @return
+		 * 		The label, image and category.
+		 */
+		public String toString() {
+			return this.text + " (" + this.imageLoc + " in " + this.categoryLoc + ")";
+		} // toString()
+	} // class Hit
+
+	/**
+	 * A symbol in the index.
+	 */
+	private static class Entry {
+		/** The image of the category the symbol is in. */
+		final String categoryLoc;
+
+		/** The image of the symbol. */
+		final String imageLoc;
+
+		/** The label of the symbol. */
+		final String text;
+
+		/** The label, in lowercase. */
+		final String folded;
+
+		/** The words of the label. */
+		final String[] words;
+
+		/** The last search that looked at the entry, so it looks only once. */
+		long seen;
+
+		/**
+		 * Creates an entry.
+		 *
+		 * @param categoryLoc
+		 * 		The image of the category the symbol is in.
+		 * @param imageLoc
+		 * 		The image of the symbol.
+		 * @param text
+		 * 		The label of the symbol.
+		 */
+		Entry(String categoryLoc, String imageLoc, String text) {
+			this.categoryLoc = categoryLoc;
+			this.imageLoc = imageLoc;
+			this.text = text;
+			this.folded = text.toLowerCase(Locale.ROOT);
+			this.words = words(text);
+		} // Entry(String, String, String)
+	} // class Entry
+
+	/**
+	 * A node of the trie of words.
+	 */
+	private static class Node {
+		/** The nodes for each next character. */
+		final HashMap<Character, Node> children = new HashMap<Character, Node>();
+
+		/** The word that ends here, or null if none does (now). */
+		String word;
+	} // class Node
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The score for a query word that is a whole word of a label.
+	 */
+	static final int WHOLE_WORD = 3;
+
+	/**
+	 * The score for a query word that only starts a word of a label.
+	 */
+	static final int PREFIX = 1;
+
+	/**
+	 * The extra score for a label that starts with the whole query.
+	 */
+	static final int LEADING = 2;
+
+	/**
+	 * The order of entries in a posting: the order in which equally good
+	 * hits are ranked, then by where they are, so that no two differ.
+	 */
+	private static final Comparator<Entry> ORDER = (a, b) -> {
+		int order = (a.text.length() != b.text.length())
+				? a.text.length() - b.text.length() : a.text.compareTo(b.text);
+		if (order == 0) {
+			order = a.categoryLoc.compareTo(b.categoryLoc);
+		} // if
+		return (order != 0) ? order : a.imageLoc.compareTo(b.imageLoc);
+	};
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * Every symbol, by category and image (see key). Guarded by this.
+	 */
+	private HashMap<String, Entry> entries;
+
+	/**
+	 * The symbols whose labels contain each word, shortest label first
+	 * (see ORDER). Guarded by this.
+	 */
+	private HashMap<String, TreeSet<Entry>> postings;
+
+	/**
+	 * The root of the trie of words. Guarded by this.
+	 */
+	private Node trie;
+
+	/**
+	 * Every word ever indexed, for fuzzy search; words no longer in
+	 * postings are ignored. Guarded by this.
+	 */
+	private BKTree vocabulary;
+
+	/**
+	 * The number of searches so far. Guarded by this.
+	 */
+	private long searches;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates an empty index.
+	 */
+	public SymbolIndex() {
+		this.entries = new HashMap<String, Entry>();
+		this.postings = new HashMap<String, TreeSet<Entry>>();
+		this.trie = new Node();
+		this.vocabulary = new BKTree();
+	} // SymbolIndex()
+
+	/**
+	 * Creates an index of every symbol in a set of mappings, in every
+	 * category, including the categories themselves.
+	 *
+	 * @param mappings
+	 * 		The mappings.
+	 * @return
+	 * 		The index.
+	 */
+	public static SymbolIndex of(AACMappings mappings) {
+		SymbolIndex index = new SymbolIndex();
+		AssociativeArray<String, AACCategory> categories = mappings.categories;
+		for (int i = 0; i < categories.size(); i++) {
+			String categoryLoc = categories.pairs[i].key;
+			index.add(mappings.parents.getOrDefault(categoryLoc, ""), categoryLoc,
+					categories.pairs[i].val.getCategory());
+			AssociativeArray<String, String> items = categories.pairs[i].val.items.snapshot();
+			for (int j = 0; j < items.size(); j++) {
+				index.add(categoryLoc, items.pairs[j].key, items.pairs[j].val);
+			} // for (items)
+		} // for (categories)
+		return index;
+	} // of(AACMappings)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Adds a symbol, or changes its label if it is already there.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category the symbol is in ("" for home).
+	 * @param imageLoc
+	 * 		The image of the symbol.
+	 * @param text
+	 * 		The label of the symbol.
+	 */
+	public synchronized void add(String categoryLoc, String imageLoc, String text) {
+		if (imageLoc == null || text == null) {
+			return;
+		} // if
+		String key = key(categoryLoc, imageLoc);
+		Entry old = this.entries.get(key);
+		if (old != null && old.text.equals(text)) {
+			return;
+		} // if
+		this.unindex(old);
+		Entry entry = new Entry(categoryLoc, imageLoc, text);
+		this.entries.put(key, entry);
+		for (String word : entry.words) {
+			TreeSet<Entry> posting = this.postings.get(word);
+			if (posting == null) {
+				posting = new TreeSet<Entry>(ORDER);
+				this.postings.put(word, posting);
+				this.node(word, true).word = word;
+				this.vocabulary.add(word);
+			} // if
+			posting.add(entry);
+		} // for
+	} // add(String, String, String)
+
+	/**
+	 * Removes a symbol. Does nothing if it is not there.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category the symbol is in.
+	 * @param imageLoc
+	 * 		The image of the symbol.
+	 */
+	public synchronized void remove(String categoryLoc, String imageLoc) {
+		this.unindex(this.entries.remove(key(categoryLoc, imageLoc)));
+	} // remove(String, String)
+
+	/**
+	 * Gets the number of symbols in the index.
+	 *
+	 * @return
+	 * 		The number of symbols.
+	 */
+	public synchronized int size() {
+		return this.entries.size();
+	} // size()
+
+	/**
+	 * Finds the symbols whose labels best match a query. Every word of
+	 * the query must start a word of the label; whole words score more
+	 * than parts of words, and a label that starts with the query scores
+	 * more still. Ties go to shorter labels, then in alphabetical order.
+	 *
+	 * @param query
+	 * 		What has been typed so far.
+	 * @param limit
+	 * 		The most hits wanted.
+	 * @return
+	 * 		The hits, best first.
+	 */
+	public synchronized List<Hit> search(String query, int limit) {
+		String[] words = words(query);
+		List<Hit> hits = new ArrayList<Hit>();
+		if (words.length == 0 || limit <= 0) {
+			return hits;
+		} // if
+
+		/* Start from the query word with the fewest candidates. */
+		List<List<String>> matches = new ArrayList<List<String>>();
+		int rarest = 0;
+		int fewest = Integer.MAX_VALUE;
+		for (int i = 0; i < words.length; i++) {
+			List<String> completions = this.complete(words[i]);
+			int count = 0;
+			for (String completion : completions) {
+				count += this.postings.get(completion).size();
+			} // for
+			if (count == 0) {
+				return hits;
+			} // if
+			if (count < fewest) {
+				fewest = count;
+				rarest = i;
+			} // if
+			matches.add(completions);
+		} // for
+
+		String folded = String.join(" ", words);
+		PriorityQueue<Hit> best = new PriorityQueue<Hit>(limit + 1,
+				(a, b) -> compare(b, a));
+		long search = ++this.searches;
+		for (String completion : matches.get(rarest)) {
+			/* The best any entry with this word could score; once the worst of
+			the best so far beats that, later (longer) entries cannot do better. */
+			int bound = (completion.equals(words[rarest]) ? WHOLE_WORD : PREFIX)
+					+ WHOLE_WORD * (words.length - 1) + LEADING;
+			for (Entry entry : this.postings.get(completion)) {
+				if (best.size() == limit && compare(bound, entry.text, best.peek()) >= 0) {
+					break;
+				} // if
+				if (entry.seen == search) {
+					continue;
+				} // if
+				entry.seen = search;
+				int score = score(entry, words);
+				if (score < 0) {
+					continue;
+				} // if
+				if (entry.folded.startsWith(folded)) {
+					score += LEADING;
+				} // if
+				if (best.size() == limit && compare(score, entry.text, best.peek()) >= 0) {
+					continue;
+				} // if
+				best.add(new Hit(entry.categoryLoc, entry.imageLoc, entry.text, score));
+				if (best.size() > limit) {
+					best.poll();
+				} // if
+			} // for (entries)
+		} // for (completions)
+
+		while (!best.isEmpty()) {
+			hits.add(best.poll());
+		} // while
+		Collections.reverse(hits);
+		return hits;
+	} // search(String, int)
+
+	/**
+	 * Finds the symbols whose labels best match a query that may be
+	 * misspelled. Every word of the query must be within maxDistance
+	 * edits of some word of the label; labels needing fewer edits in all
+	 * come first, then shorter labels, then in alphabetical order. The
+	 * score of each hit is minus the number of edits.
+	 *
+	 * @param query
+	 * 		The query, in whole words.
+	 * @param maxDistance
+	 * 		The most edits allowed for each word.
+	 * @param limit
+	 * 		The most hits wanted.
+	 * @return
+	 * 		The hits, best first.
+	 */
+	public synchronized List<Hit> fuzzySearch(String query, int maxDistance, int limit) {
+		String[] words = words(query);
+		List<Hit> hits = new ArrayList<Hit>();
+		if (words.length == 0 || limit <= 0 || maxDistance < 0) {
+			return hits;
+		} // if
+
+		/* Start from the query word with the fewest candidates. */
+		List<List<String>> matches = new ArrayList<List<String>>();
+		int rarest = 0;
+		int fewest = Integer.MAX_VALUE;
+		for (int i = 0; i < words.length; i++) {
+			List<String> near = new ArrayList<String>();
+			int count = 0;
+			for (String word : this.vocabulary.within(words[i], maxDistance)) {
+				TreeSet<Entry> posting = this.postings.get(word);
+				if (posting != null) {
+					near.add(word);
+					count += posting.size();
+				} // if
+			} // for
+			if (count == 0) {
+				return hits;
+			} // if
+			if (count < fewest) {
+				fewest = count;
+				rarest = i;
+			} // if
+			matches.add(near);
+		} // for
+
+		PriorityQueue<Hit> best = new PriorityQueue<Hit>(limit + 1,
+				(a, b) -> compare(b, a));
+		long search = ++this.searches;
+		for (String near : matches.get(rarest)) {
+			/* No entry with this word can need fewer edits than the word does. */
+			int bound = -BKTree.distance(words[rarest], near, maxDistance);
+			for (Entry entry : this.postings.get(near)) {
+				if (best.size() == limit && compare(bound, entry.text, best.peek()) >= 0) {
+					break;
+				} // if
+				if (entry.seen == search) {
+					continue;
+				} // if
+				entry.seen = search;
+				int edits = edits(entry, words, maxDistance);
+				if (edits < 0) {
+					continue;
+				} // if
+				if (best.size() == limit && compare(-edits, entry.text, best.peek()) >= 0) {
+					continue;
+				} // if
+				best.add(new Hit(entry.categoryLoc, entry.imageLoc, entry.text, -edits));
+				if (best.size() > limit) {
+					best.poll();
+				} // if
+			} // for (entries)
+		} // for (words)
+
+		while (!best.isEmpty()) {
+			hits.add(best.poll());
+		} // while
+		Collections.reverse(hits);
+		return hits;
+	} // fuzzySearch(String, int, int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Removes an entry from the postings, and its words from the trie if
+	 * no other entry has them.
+	 *
+	 * @param entry
+	 * 		The entry, or null to do nothing.
+	 */
+	private void unindex(Entry entry) {
+		if (entry == null) {
+			return;
+		} // if
+		for (String word : entry.words) {
+			TreeSet<Entry> posting = this.postings.get(word);
+			if (posting != null && posting.remove(entry) && posting.isEmpty()) {
+				this.postings.remove(word);
+				this.node(word, false).word = null;
+			} // if
+		} // for
+	} // unindex(Entry)
+
+	/**
+	 * Finds the trie node for a string.
+	 *
+	 * @param str
+	 * 		The string.
+	 * @param create
+	 * 		Whether to add nodes that are missing.
+	 * @return
+	 * 		The node, or null if it is missing and create is false.
+	 */
+	private Node node(String str, boolean create) {
+		Node node = this.trie;
+		for (int i = 0; i < str.length() && node != null; i++) {
+			Node child = node.children.get(str.charAt(i));
+			if (child == null && create) {
+				child = new Node();
+				node.children.put(str.charAt(i), child);
+			} // if
+			node = child;
+		} // for
+		return node;
+	} // node(String, boolean)
+
+	/**
+	 * Finds every indexed word that starts with a prefix.
+	 *
+	 * @param prefix
+	 * 		The prefix.
+	 * @return
+	 * 		The words.
+	 */
+	private List<String> complete(String prefix) {
+		List<String> words = new ArrayList<String>();
+		Node start = this.node(prefix, false);
+		if (start == null) {
+			return words;
+		} // if
+		ArrayDeque<Node> pending = new ArrayDeque<Node>();
+		pending.push(start);
+		while (!pending.isEmpty()) {
+			Node node = pending.pop();
+			if (node.word != null) {
+				words.add(node.word);
+			} // if
+			for (Node child : node.children.values()) {
+				pending.push(child);
+			} // for
+		} // while
+		return words;
+	} // complete(String)
+
+	/**
+	 * Scores an entry against the words of a query.
+	 *
+	 * @param entry
+	 * 		The entry.
+	 * @param words
+	 * 		The words of the query.
+	 * @return
+	 * 		The score, or -1 if some query word starts no word of the label.
+	 */
+	private static int score(Entry entry, String[] words) {
+		int score = 0;
+		for (String word : words) {
+			int best = -1;
+			for (String label : entry.words) {
+				if (label.equals(word)) {
+					best = WHOLE_WORD;
+					break;
+				} else if (label.startsWith(word)) {
+					best = PREFIX;
+				} // if/else
+			} // for
+			if (best < 0) {
+				return -1;
+			} // if
+			score += best;
+		} // for
+		return score;
+	} // score(Entry, String[])
+
+	/**
+	 * Counts the edits needed to make each word of a query into some word
+	 * of an entry's label.
+	 *
+	 * @param entry
+	 * 		The entry.
+	 * @param words
+	 * 		The words of the query.
+	 * @param max
+	 * 		The most edits allowed for each word.
+	 * @return
+	 * 		The total number of edits, or -1 if some query word needs more
+	 * 		than max.
+	 */
+	private static int edits(Entry entry, String[] words, int max) {
+		int edits = 0;
+		for (String word : words) {
+			int fewest = max + 1;
+			for (String label : entry.words) {
+				fewest = Math.min(fewest, BKTree.distance(word, label, max));
+			} // for
+			if (fewest > max) {
+				return -1;
+			} // if
+			edits += fewest;
+		} // for
+		return edits;
+	} // edits(Entry, String[], int)
+
+	/**
+	 * Compares two hits, better first.
+	 *
+	 * @param a
+	 * 		One hit.
+	 * @param b
+	 * 		The other.
+	 * @return
+	 * 		Negative if a is better, positive if b is, zero if neither is.
+	 */
+	private static int compare(Hit a, Hit b) {
+		return compare(a.score, a.text, b);
+	} // compare(Hit, Hit)
+
+	/**
+	 * Compares a possible hit with a hit, better first.
+	 *
+	 * @param score
+	 * 		The score of the possible hit.
+	 * @param text
+	 * 		The label of the possible hit.
+	 * @param b
+	 * 		The hit.
+	 * @return
+	 * 		Negative if the possible hit is better, positive if b is, zero if
+	 * 		neither is.
+	 */
+	private static int compare(int score, String text, Hit b) {
+		if (score != b.score) {
+			return b.score - score;
+		} // if
+		if (text.length() != b.text.length()) {
+			return text.length() - b.text.length();
+		} // if
+		return text.compareTo(b.text);
+	} // compare(int, String, Hit)
+
+	/**
+	 * Splits text into lowercase words: runs of letters and digits.
+	 *
+	 * @param text
+	 * 		The text.
+	 * @return
+	 * 		The words, in order, without repeats.
+	 */
+	static String[] words(String text) {
+		LinkedHashSet<String> words = new LinkedHashSet<String>();
+		String folded = text.toLowerCase(Locale.ROOT);
+		int start = -1;
+		for (int i = 0; i <= folded.length(); i++) {
+			boolean inWord = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+			if (inWord && start < 0) {
+				start = i;
+			} else if (!inWord && start >= 0) {
+				words.add(folded.substring(start, i));
+				start = -1;
+			} // if/else
+		} // for
+		return words.toArray(new String[words.size()]);
+	} // words(String)
+
+	/**
+	 * Makes the key of a symbol in entries.
+	 *
+	 * @param categoryLoc
+	 * 		The image of the category the symbol is in.
+	 * @param imageLoc
+	 * 		The image of the symbol.
+	 * @return
+	 * 		The key.
+	 */
+	private static String key(String categoryLoc, String imageLoc) {
+		return categoryLoc + '\n' + imageLoc;
+	} // key(String, String)
+} // class SymbolIndex
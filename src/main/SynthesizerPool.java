@@ -0,0 +1,547 @@
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.speech.Central;
+import javax.speech.synthesis.Synthesizer;
+import javax.speech.synthesis.SynthesizerModeDesc;
+import javax.speech.synthesis.Voice;
+
+/**
+ * A bounded pool of allocated speakers, such as FreeTTS synthesizers,
+ * shared by many AAC sessions. Each voice has its own pool of at most a
+ * fixed number of speakers, created the first time they are needed. A
+ * session checks a speaker out, speaks with it and returns it; while it
+ * holds the speaker, no other session can use it, but other sessions
+ * carry on with the other speakers. A session that finds every speaker
+ * of its voice in use waits, for up to a timeout, for one to be
+ * returned.
+ *
+ * Each voice keeps track of how busy its speakers are and how long
+ * sessions waited for them.
+ *
+ * @author Sara Jaljaa
+ */
+public class SynthesizerPool {
+
+  // +-------+-------------------------------------------------------
+  // | Types |
+  // +-------+
+
+	/**
+	 * Makes speakers for a voice.
+	 */
+	public interface Factory {
+		/**
+		 * Creates and allocates a speaker.
+		 *
+		 * @param voice
+		 * 		The name of the voice.
+		 * @return
+		 * 		A speaker, ready to speak.
+		 *
+		 * @throws Exception
+		 * 		If the speaker cannot be created.
+		 */
+		Speaker create(String voice) throws Exception;
+	} // interface Factory
+
+	/**
+	 * A speaker checked out of the pool. Closing the lease returns the
+	 * speaker, so leases are best used in try-with-resources.
+	 */
+	public static class Lease implements AutoCloseable {
+		/** The pool of the voice the speaker came from. */
+		private VoicePool pool;
+
+		/** The speaker, or null once returned. */
+		private Speaker speaker;
+
+		/**
+		 * Creates a lease.
+		 *
+		 * @param pool
+		 * 		The pool the speaker came from.
+		 * @param speaker
+		 * 		The speaker.
+		 */
+		Lease(VoicePool pool, Speaker speaker) {
+			this.pool = pool;
+			this.speaker = speaker;
+		} // Lease(VoicePool, Speaker)
+
+		/**
+		 * Gets the speaker.
+		 *
+		 * @return
+		 * 		The speaker.
+		 *
+		 * @throws IllegalStateException
+		 * 		If it has been returned.
+		 */
+		public synchronized Speaker speaker() {
+			if (this.speaker == null) {
+				throw new IllegalStateException("Speaker already returned");
+			} // if
+			return this.speaker;
+		} // speaker()
+
+		/**
+		 * Stops the speaker, if it has not been returned. Once returned, the
+		 * speaker may belong to another lease, so it is left alone.
+		 */
+		public synchronized void stop() {
+			if (this.speaker != null) {
+				this.speaker.stop();
+			} // if
+		} // stop()
+
+		/**
+		 * Returns the speaker to the pool. Does nothing if it has already
+		 * been returned.
+		 */
+		public void close() {
+			Speaker returned;
+			synchronized (this) {
+				returned = this.speaker;
+				this.speaker = null;
+			} // synchronized
+			if (returned != null) {
+				this.pool.checkin(returned);
+			} // if
+		} // close()
+	} // class Lease
+
+	/**
+	 * A speaker for one session that borrows a speaker from the pool for
+	 * each utterance.
+	 */
+	private class PooledSpeaker implements Speaker {
+		/** The name of the voice. */
+		private String voice;
+
+		/** The longest to wait for a speaker, in milliseconds. */
+		private long timeout;
+
+		/** The lease being spoken with, if any. */
+		private volatile Lease current;
+
+		/**
+		 * Creates a speaker.
+		 *
+		 * @param voice
+		 * 		The name of the voice.
+		 * @param timeout
+		 * 		The longest to wait for a speaker, in milliseconds.
+		 */
+		PooledSpeaker(String voice, long timeout) {
+			this.voice = voice;
+			this.timeout = timeout;
+		} // PooledSpeaker(String, long)
+
+		public void speak(String text) throws Exception {
+			try (Lease lease = checkout(this.voice, this.timeout, TimeUnit.MILLISECONDS)) {
+				this.current = lease;
+				try {
+					lease.speaker().speak(text);
+				} finally {
+					this.current = null;
+				} // try/finally
+			} // try
+		} // speak(String)
+
+		public void warmUp() throws Exception {
+			try (Lease lease = checkout(this.voice, this.timeout, TimeUnit.MILLISECONDS)) {
+				lease.speaker().warmUp();
+			} // try
+		} // warmUp()
+
+		public void stop() {
+			Lease lease = this.current;
+			if (lease != null) {
+				lease.stop();
+			} // if
+		} // stop()
+	} // class PooledSpeaker
+
+	/**
+	 * The speakers of one voice. Guarded by itself.
+	 */
+	static class VoicePool {
+		/** The name of the voice. */
+		String voice;
+
+		/** The speakers not checked out. */
+		ArrayDeque<Speaker> idle = new ArrayDeque<Speaker>();
+
+		/** The speakers created, or being created. */
+		int created;
+
+		/** The speakers checked out. */
+		int busy;
+
+		/** The number of checkouts. */
+		long checkouts;
+
+		/** The number of checkouts that timed out. */
+		long timeouts;
+
+		/** The total nanoseconds spent waiting for a speaker. */
+		long waited;
+
+		/** The most nanoseconds spent waiting for a speaker. */
+		long longest;
+
+		/** The total nanoseconds speakers have been checked out for. */
+		long held;
+
+		/** When the number of busy speakers last changed, in nanoseconds. */
+		long changed = System.nanoTime();
+
+		/** When the pool was created, in nanoseconds. */
+		long start = changed;
+
+		/**
+		 * Creates an empty pool.
+		 *
+		 * @param voice
+		 * 		The name of the voice.
+		 */
+		VoicePool(String voice) {
+			this.voice = voice;
+		} // VoicePool(String)
+
+		/**
+		 * Notes that the number of busy speakers is about to change.
+		 * Guarded by this.
+		 */
+		void tally() {
+			long now = System.nanoTime();
+			this.held += this.busy * (now - this.changed);
+			this.changed = now;
+		} // tally()
+
+		/**
+		 * Returns a speaker and wakes a session waiting for one.
+		 *
+		 * @param speaker
+		 * 		The speaker.
+		 */
+		synchronized void checkin(Speaker speaker) {
+			this.tally();
+			this.busy--;
+			this.idle.push(speaker);
+			this.notify();
+		} // checkin(Speaker)
+	} // class VoicePool
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+	/**
+	 * The default number of speakers for each voice.
+	 */
+	public static final int DEFAULT_SIZE = 4;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * What makes speakers.
+	 */
+	private Factory factory;
+
+	/**
+	 * The most speakers of each voice.
+	 */
+	private int size;
+
+	/**
+	 * The speakers of each voice, by name.
+	 */
+	private ConcurrentHashMap<String, VoicePool> voices;
+
+	/**
+	 * Whether the FreeTTS engine has been registered with JSAPI. Guarded
+	 * by the class.
+	 */
+	private static boolean registered = false;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates an empty pool.
+	 *
+	 * @param factory
+	 * 		What makes speakers.
+	 * @param size
+	 * 		The most speakers of each voice.
+	 */
+	public SynthesizerPool(Factory factory, int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Pool size must be positive: " + size);
+		} // if
+		this.factory = factory;
+		this.size = size;
+		this.voices = new ConcurrentHashMap<String, VoicePool>();
+	} // SynthesizerPool(Factory, int)
+
+	/**
+	 * Creates an empty pool of FreeTTS synthesizers, of the default size.
+	 */
+	public SynthesizerPool() {
+		this(SynthesizerPool::allocate, DEFAULT_SIZE);
+	} // SynthesizerPool()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Checks out a speaker of a voice, creating one if the voice has room
+	 * for more, or else waiting for one to be returned.
+	 *
+	 * @param voice
+	 * 		The name of the voice.
+	 * @param timeout
+	 * 		The longest to wait.
+	 * @param unit
+	 * 		The unit of timeout.
+	 * @return
+	 * 		A lease on the speaker, which must be closed to return it.
+	 *
+	 * @throws TimeoutException
+	 * 		If no speaker was returned in time.
+	 * @throws InterruptedException
+	 * 		If the thread was interrupted while waiting.
+	 * @throws Exception
+	 * 		If a new speaker could not be created.
+	 */
+	public Lease checkout(String voice, long timeout, TimeUnit unit) throws Exception {
+		VoicePool pool = this.voices.computeIfAbsent(voice, VoicePool::new);
+		long began = System.nanoTime();
+		long deadline = began + unit.toNanos(timeout);
+		Speaker speaker;
+		synchronized (pool) {
+			while (pool.idle.isEmpty() && pool.created >= this.size) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					pool.timeouts++;
+					throw new TimeoutException("No " + voice + " speaker free after "
+							+ timeout + " " + unit.toString().toLowerCase());
+				} // if
+				TimeUnit.NANOSECONDS.timedWait(pool, remaining);
+			} // while
+			long waited = System.nanoTime() - began;
+			pool.waited += waited;
+			pool.longest = Math.max(pool.longest, waited);
+			pool.checkouts++;
+			pool.tally();
+			pool.busy++;
+			speaker = pool.idle.poll();
+			if (speaker == null) {
+				pool.created++;
+			} // if
+		} // synchronized
+
+		// Allocating can take seconds, so do it without holding up the voice
+		if (speaker == null) {
+			try {
+				speaker = this.factory.create(voice);
+			} catch (Exception e) {
+				synchronized (pool) {
+					pool.tally();
+					pool.busy--;
+					pool.created--;
+					pool.notify();
+				} // synchronized
+				throw e;
+			} // try/catch
+		} // if
+		return new Lease(pool, speaker);
+	} // checkout(String, long, TimeUnit)
+
+	/**
+	 * Checks out a speaker of a voice, speaks text with it and returns it.
+	 *
+	 * @param voice
+	 * 		The name of the voice.
+	 * @param text
+	 * 		The text to speak.
+	 * @param timeout
+	 * 		The longest to wait for a speaker.
+	 * @param unit
+	 * 		The unit of timeout.
+	 *
+	 * @throws TimeoutException
+	 * 		If no speaker was free in time.
+	 * @throws Exception
+	 * 		If the text cannot be spoken.
+	 */
+	public void speak(String voice, String text, long timeout, TimeUnit unit)
+			throws Exception {
+		try (Lease lease = this.checkout(voice, timeout, unit)) {
+			lease.speaker().speak(text);
+		} // try
+	} // speak(String, String, long, TimeUnit)
+
+	/**
+	 * Gets a speaker for one session, which borrows a speaker of a voice
+	 * from the pool each time it speaks. Give each session its own, so
+	 * that stopping one session's speech does not stop another's.
+	 *
+	 * @param voice
+	 * 		The name of the voice.
+	 * @param timeout
+	 * 		The longest to wait for a speaker each time.
+	 * @param unit
+	 * 		The unit of timeout.
+	 * @return
+	 * 		The speaker.
+	 */
+	public Speaker speaker(String voice, long timeout, TimeUnit unit) {
+		return new PooledSpeaker(voice, unit.toMillis(timeout));
+	} // speaker(String, long, TimeUnit)
+
+	/**
+	 * Gets the fraction of the time since a voice was first used that its
+	 * speakers, on average, have been checked out.
+	 *
+	 * @param voice
+	 * 		The name of the voice.
+	 * @return
+	 * 		A number from 0 to 1.
+	 */
+	public double getUtilization(String voice) {
+		VoicePool pool = this.voices.get(voice);
+		if (pool == null) {
+			return 0;
+		} // if
+		synchronized (pool) {
+			pool.tally();
+			long elapsed = pool.changed - pool.start;
+			return (elapsed == 0) ? 0 : (double) pool.held / (elapsed * this.size);
+		} // synchronized
+	} // getUtilization(String)
+
+	/**
+	 * Gets the average time sessions waited for a speaker of a voice.
+	 *
+	 * @param voice
+	 * 		The name of the voice.
+	 * @return
+	 * 		The average wait, in milliseconds.
+	 */
+	public double getAverageWait(String voice) {
+		VoicePool pool = this.voices.get(voice);
+		if (pool == null) {
+			return 0;
+		} // if
+		synchronized (pool) {
+			return (pool.checkouts == 0) ? 0 : pool.waited / 1e6 / pool.checkouts;
+		} // synchronized
+	} // getAverageWait(String)
+
+	/**
+	 * Gets the number of checkouts of a voice that timed out.
+	 *
+	 * @param voice
+	 * 		The name of the voice.
+	 * @return
+	 * 		The number of timeouts.
+	 */
+	public long getTimeouts(String voice) {
+		VoicePool pool = this.voices.get(voice);
+		if (pool == null) {
+			return 0;
+		} // if
+		synchronized (pool) {
+			return pool.timeouts;
+		} // synchronized
+	} // getTimeouts(String)
+
+	/**
+	 * Gets the number of speakers of a voice created so far.
+	 *
+	 * @param voice
+	 * 		The name of the voice.
+	 * @return
+	 * 		The number of speakers.
+	 */
+	public int getCreated(String voice) {
+		VoicePool pool = this.voices.get(voice);
+		if (pool == null) {
+			return 0;
+		} // if
+		synchronized (pool) {
+			return pool.created;
+		} // synchronized
+	} // getCreated(String)
+
+	/**
+	 * Summarizes the pool of each voice.
+	 *
+	 * @return
+	 * 		A string of the form "SynthesizerPool[kevin16: busy=B/S,
+	 * 		checkouts=N, timeouts=T, wait=W ms avg/L ms max, utilization=U%]".
+	 */
+	public String toString() {
+		StringBuilder summary = new StringBuilder("SynthesizerPool[");
+		String separator = "";
+		for (VoicePool pool : this.voices.values()) {
+			double utilization = this.getUtilization(pool.voice);
+			double average = this.getAverageWait(pool.voice);
+			synchronized (pool) {
+				summary.append(separator).append(pool.voice)
+						.append(": busy=").append(pool.busy).append('/').append(this.size)
+						.append(", checkouts=").append(pool.checkouts)
+						.append(", timeouts=").append(pool.timeouts)
+						.append(String.format(", wait=%.1f ms avg/%.1f ms max",
+								average, pool.longest / 1e6))
+						.append(String.format(", utilization=%.0f%%", utilization * 100));
+			} // synchronized
+			separator = "; ";
+		} // for
+		return summary.append(']').toString();
+	} // toString()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+	/**
+	 * Creates, allocates and resumes a FreeTTS synthesizer for a voice.
+	 *
+	 * @param voice
+	 * 		The name of the voice.
+	 * @return
+	 * 		A speaker for the synthesizer.
+	 *
+	 * @throws Exception
+	 * 		If there is no synthesizer for the voice.
+	 */
+	static Speaker allocate(String voice) throws Exception {
+		synchronized (SynthesizerPool.class) {
+			if (!registered) {
+				Central.registerEngineCentral(
+						"com.sun.speech.freetts" + ".jsapi.FreeTTSEngineCentral");
+				registered = true;
+			} // if
+		} // synchronized
+		SynthesizerModeDesc desc = new SynthesizerModeDesc(null, null, Locale.US,
+				null, new Voice[] {new Voice(voice, Voice.GENDER_DONT_CARE,
+						Voice.AGE_DONT_CARE, null)});
+		Synthesizer synthesizer = Central.createSynthesizer(desc);
+		if (synthesizer == null) {
+			throw new IllegalArgumentException("No synthesizer for voice " + voice);
+		} // if
+		synthesizer.allocate();
+		synthesizer.resume();
+		return new SynthesizerSpeaker(synthesizer);
+	} // allocate(String)
+} // class SynthesizerPool
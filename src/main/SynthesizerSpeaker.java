@@ -0,0 +1,86 @@
+import javax.speech.synthesis.Synthesizer;
+import javax.speech.synthesis.SynthesizerProperties;
+
+/**
+ * Speaks text through a JSAPI synthesizer, such as FreeTTS.
+ *
+ * @author Sara Jaljaa
+ */
+public class SynthesizerSpeaker implements Speaker {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+	/**
+	 * The synthesizer that does the speaking.
+	 */
+	private Synthesizer synthesizer;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+	/**
+	 * Creates a speaker for an allocated, resumed synthesizer.
+	 *
+	 * @param synthesizer
+	 * 		The synthesizer that does the speaking.
+	 */
+	public SynthesizerSpeaker(Synthesizer synthesizer) {
+		this.synthesizer = synthesizer;
+	} // SynthesizerSpeaker(Synthesizer)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+	/**
+	 * Speaks text and waits until the synthesizer's queue is empty.
+	 *
+	 * @param text
+	 * 		The text to speak.
+	 *
+	 * @throws Exception
+	 * 		If the synthesizer fails or the wait is interrupted.
+	 */
+	public void speak(String text) throws Exception {
+		this.synthesizer.speakPlainText(text, null);
+		this.synthesizer.waitEngineState(Synthesizer.QUEUE_EMPTY);
+	} // speak(String)
+
+	/**
+	 * Cancels everything the synthesizer has queued.
+	 */
+	public void stop() {
+		this.synthesizer.cancelAll();
+	} // stop()
+
+	/**
+	 * Speaks a short utterance with the volume turned all the way down,
+	 * then restores the volume.
+	 *
+	 * @throws Exception
+	 * 		If the synthesizer fails or the wait is interrupted.
+	 */
+	public void warmUp() throws Exception {
+		SynthesizerProperties properties = this.synthesizer.getSynthesizerProperties();
+		float volume = properties.getVolume();
+		properties.setVolume(0.0f);
+		try {
+			this.speak(WARM_UP);
+		} finally {
+			properties.setVolume(volume);
+		} // try/finally
+	} // warmUp()
+
+	/**
+	 * Gets the synthesizer that does the speaking.
+	 *
+	 * @return
+	 * 		The synthesizer.
+	 */
+	public Synthesizer getSynthesizer() {
+		return this.synthesizer;
+	} // getSynthesizer()
+} // class SynthesizerSpeaker
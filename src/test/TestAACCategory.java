@@ -2,11 +2,14 @@ import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 /**
  * Tests of AACCategory.
  *
@@ -155,4 +158,136 @@ public class TestAACCategory {
     assertTrue(containsString(abc, "imageC"), "imageLocs contains imageC");
   } // testImageLocs()
 
+  /**
+   * Test of getImageLocs with an offset and a limit.
+   */
+  @Test
+  void testPagedImageLocs() {
+    AACCategory category = new AACCategory("testPagedImageLocs");
+    assertArrayEquals(new String[] {}, category.getImageLocs(0, 9),
+        "Empty category should have no page of images");
+    for (int i = 0; i < 20; i++) {
+      category.addItem("image" + i, "text" + i);
+    } // for
+    assertEquals(20, category.getImageCount(), "Twenty images");
+    assertArrayEquals(new String[] {"image0", "image1", "image2"},
+        category.getImageLocs(0, 3), "First page");
+    assertArrayEquals(new String[] {"image18", "image19"},
+        category.getImageLocs(18, 9), "Short last page");
+    assertArrayEquals(new String[] {}, category.getImageLocs(25, 9),
+        "Past the end");
+    assertArrayEquals(category.getImageLocs(), category.getImageLocs(0, 20),
+        "Whole category");
+    assertThrows(IllegalArgumentException.class,
+        () -> category.getImageLocs(-1, 9));
+  } // testPagedImageLocs()
+
+  /**
+   * Are uses counted, with older ones counting for less, and do the most
+   * used images come first when asked?
+   */
+  @Test
+  void testUses() {
+    AACCategory category = new AACCategory("testUses");
+    for (int i = 0; i < 5; i++) {
+      category.addItem("image" + i, "text" + i);
+    } // for
+    assertEquals(0, category.getUses("image3"), 0, "unused");
+    category.select("image3");
+    category.select("image3");
+    category.select("image1");
+    assertArrayEquals(new String[] {"image0", "image1", "image2", "image3", "image4"},
+        category.getImageLocs(), "order added, by default");
+    category.setOrderByUse(true);
+    assertArrayEquals(new String[] {"image3", "image1", "image0", "image2", "image4"},
+        category.getImageLocs(), "most used first, then order added");
+    assertArrayEquals(new String[] {"image3", "image1"}, category.getImageLocs(0, 2),
+        "first page");
+    category.select("image4");
+    category.select("image4");
+    category.select("image4");
+    assertArrayEquals(new String[] {"image4", "image3", "image1"}, category.getImageLocs(0, 3),
+        "reranked");
+    category.removeItem("image4");
+    category.addItem("image5", "text5");
+    assertArrayEquals(new String[] {"image3", "image1", "image0", "image2", "image5"},
+        category.getImageLocs(), "edits followed");
+
+    /* After HALF_LIFE more uses of others, image3's two count as one. */
+    double before = category.getUses("image3");
+    for (int i = 0; i < AACCategory.HALF_LIFE; i++) {
+      category.use("image2");
+    } // for
+    assertEquals(before / 2, category.getUses("image3"), 1e-9, "decayed");
+    category.setUses("image0", 1000);
+    assertEquals(1000, category.getUses("image0"), 1e-6, "set");
+    assertArrayEquals(new String[] {"image0", "image2"}, category.getImageLocs(0, 2),
+        "set uses ranked");
+  } // testUses()
+
+  /**
+   * Are no uses lost when many threads use images at once?
+   */
+  @Test
+  void testConcurrentUses() throws Exception {
+    AACCategory category = new AACCategory("testConcurrentUses");
+    category.addItem("image", "text");
+    category.setOrderByUse(true);
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 1000; i++) {
+          category.select("image");
+          category.getImageLocs(0, 9);
+        } // for
+      });
+      threads[t].start();
+    } // for
+    for (Thread thread : threads) {
+      thread.join();
+    } // for
+
+    /* A use t uses ago counts 2^(-t / HALF_LIFE). */
+    double expected = 0;
+    for (int t = 0; t < 4000; t++) {
+      expected += Math.pow(2, -t / AACCategory.HALF_LIFE);
+    } // for
+    assertEquals(expected, category.getUses("image"), 1e-6, "every use counted");
+  } // testConcurrentUses()
+
+  /**
+   * Does the ranking stay in order while many threads use images at
+   * once?
+   */
+  @Test
+  void testConcurrentRanking() throws Exception {
+    AACCategory category = new AACCategory("testConcurrentRanking");
+    for (int i = 0; i < 20; i++) {
+      category.addItem("image" + i, "text" + i);
+    } // for
+    category.setOrderByUse(true);
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      int seed = t;
+      threads[t] = new Thread(() -> {
+        Random random = new Random(seed);
+        for (int i = 0; i < 1000; i++) {
+          category.select("image" + (int) Math.pow(20, random.nextDouble()));
+          category.getImageLocs(0, 9);
+        } // for
+      });
+      threads[t].start();
+    } // for
+    for (Thread thread : threads) {
+      thread.join();
+    } // for
+
+    String[] ranked = category.getImageLocs();
+    assertEquals(20, ranked.length, "every image ranked");
+    for (int i = 1; i < ranked.length; i++) {
+      assertTrue(category.getUses(ranked[i - 1]) >= category.getUses(ranked[i]),
+          ranked[i - 1] + " before " + ranked[i]);
+    } // for
+  } // testConcurrentRanking()
+
 } // class TestAACCategory
@@ -1,5 +1,6 @@
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -7,9 +8,15 @@ import static org.junit.jupiter.api.Assertions.fail;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeAll;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.File;
 import java.io.FileWriter;
@@ -78,6 +85,33 @@ public class TestAACMappings {
     return false;
   } // containsString(String[], String)
 
+  /**
+   * Check that two sets of mappings hold the same categories and items,
+   * in the same order. Leaves both at the top level.
+   */
+  static void assertSameBoard(AACMappings expected, AACMappings actual) {
+    expected.reset();
+    actual.reset();
+    assertArrayEquals(expected.getImageLocs(), actual.getImageLocs(),
+        "same categories");
+    for (String category : expected.getImageLocs()) {
+      expected.reset();
+      actual.reset();
+      expected.select(category);
+      actual.select(category);
+      assertEquals(expected.getCategory(), actual.getCategory(),
+          "same name for " + category);
+      assertArrayEquals(expected.getImageLocs(), actual.getImageLocs(),
+          "same images in " + category);
+      for (String image : expected.getImageLocs()) {
+        assertEquals(expected.select(image), actual.select(image),
+            "same text for " + image);
+      } // for (images)
+    } // for (categories)
+    expected.reset();
+    actual.reset();
+  } // assertSameBoard(AACMappings, AACMappings)
+
   /**
    * Set up a new temporary config file.
    *
@@ -463,4 +497,437 @@ public class TestAACMappings {
     assertEquals(4, mappings.getImageLocs().length, "4 toppings");
     assertEquals("pepperoni", mappings.select("p"), "selecting topping p");
   } // testAdd()
+
+  /**
+   * Are malformed lines skipped and reported with their line numbers,
+   * while the rest of the file still loads?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testMalformedLines() throws IOException {
+    String contents = ">x orphan\none fruit\r\n>a apple\nnospace\n\n>b banana\n>\n";
+    AACMappings mappings = new AACMappings();
+    MappingsParser parser = new MappingsParser(mappings, "test");
+    parser.parse(Channels.newChannel(
+        new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8))));
+
+    List<String> problems = parser.getProblems();
+    assertEquals(3, problems.size(), "three malformed lines");
+    assertTrue(problems.get(0).startsWith("test:1:"), "orphan item on line 1");
+    assertTrue(problems.get(1).startsWith("test:4:"), "missing text on line 4");
+    assertTrue(problems.get(2).startsWith("test:7:"), "lone marker on line 7");
+
+    assertArrayEquals(new String[] {"one"}, mappings.getImageLocs(),
+        "the one good category");
+    assertEquals("", mappings.select("one"), "selecting one");
+    assertEquals("fruit", mappings.getCategory(), "carriage return dropped");
+    assertEquals("apple", mappings.select("a"), "a is for apple");
+    assertEquals("banana", mappings.select("b"), "b is for banana");
+  } // testMalformedLines()
+
+  /**
+   * Do lines longer than the parser's buffer, and non-ASCII text, load
+   * intact?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testLongLines() throws IOException {
+    String longText = "na".repeat(MappingsParser.BUFFER_SIZE) + " batman";
+    Path file = Files.createTempFile(tempDir, "", "");
+    file.toFile().deleteOnExit();
+    Files.writeString(file,
+        "one caf\u00e9\n>a " + longText + "\n>b cr\u00e8me br\u00fbl\u00e9e");
+    AACMappings mappings = new AACMappings(file.toString());
+    assertEquals("", mappings.select("one"), "selecting one");
+    assertEquals("caf\u00e9", mappings.getCategory(), "accented category");
+    assertEquals(longText, mappings.select("a"), "very long text");
+    assertEquals("cr\u00e8me br\u00fbl\u00e9e", mappings.select("b"),
+        "accented text without a final newline");
+  } // testLongLines()
+
+  /**
+   * Does a memory-mapped load match an ordinary load?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testMapFile() throws IOException {
+    String fName = configFile(TEST_CONFIG);
+    AACMappings read = new AACMappings(fName);
+    AACMappings mapped = AACMappings.mapFile(fName);
+
+    assertSameBoard(read, mapped);
+  } // testMapFile()
+
+  /**
+   * Does a category of 200,000 items load in time linear in its size,
+   * both read and mapped?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testLargeLoad() throws IOException {
+    StringBuilder contents = new StringBuilder("big.png big\n>sub.png sub\n");
+    for (int i = 0; i < 200000; i++) {
+      contents.append(">item").append(i).append(".png item ").append(i).append('\n');
+      if (i % 50000 == 0) {
+        contents.append(">>deep").append(i).append(".png deep ").append(i).append('\n');
+      } // if
+    } // for
+    contents.append(">sub.png renamed\n");
+    String fName = configFile(contents.toString());
+
+    long began = System.nanoTime();
+    AACMappings read = new AACMappings(fName);
+    long readMillis = (System.nanoTime() - began) / 1000000;
+    began = System.nanoTime();
+    AACMappings mapped = AACMappings.mapFile(fName);
+    long mappedMillis = (System.nanoTime() - began) / 1000000;
+    assertTrue(readMillis < 3000, "read in " + readMillis + " ms");
+    assertTrue(mappedMillis < 3000, "mapped in " + mappedMillis + " ms");
+
+    read.select("big.png");
+    assertEquals(200001, read.getImageCount(), "every item, and sub once");
+    assertArrayEquals(new String[] {"sub.png", "item0.png", "item1.png"},
+        read.getImageLocs(0, 3), "in file order");
+    assertEquals("", read.select("item0.png"), "item0 became a category");
+    assertArrayEquals(new String[] {"deep0.png"}, read.getImageLocs(), "holding deep0");
+    read.reset();
+    read.select("big.png");
+    mapped.select("big.png");
+    assertArrayEquals(read.getImageLocs(), mapped.getImageLocs(), "mapped the same");
+    assertEquals("renamed", mapped.select("sub.png"), "later line wins");
+  } // testLargeLoad()
+
+  /**
+   * Do the text and snapshot formats round-trip through each other?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testSnapshotRoundTrip() throws IOException {
+    AACMappings text = new AACMappings(configFile(TEST_CONFIG));
+    text.addItem("four", "caf\u00e9");
+
+    String snapshot = configFile("");
+    text.saveSnapshot(snapshot);
+    AACMappings restored = AACMappings.loadSnapshot(snapshot);
+    assertSameBoard(text, restored);
+
+    String first = configFile("");
+    String second = configFile("");
+    text.writeToFile(first);
+    restored.writeToFile(second);
+    assertArrayEquals(Files.readAllBytes(Path.of(first)),
+        Files.readAllBytes(Path.of(second)), "same text file");
+    assertSameBoard(text, new AACMappings(second));
+  } // testSnapshotRoundTrip()
+
+  /**
+   * Is a file that is not a snapshot rejected?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testSnapshotRejectsText() throws IOException {
+    String fName = configFile(TEST_CONFIG);
+    try {
+      AACMappings.loadSnapshot(fName);
+      fail("loaded a text file as a snapshot");
+    } catch (IOException e) {
+      // We expected an exception
+    } // try/catch
+  } // testSnapshotRejectsText()
+
+  /**
+   * Is a snapshot that claims more strings than it holds rejected
+   * without allocating room for them all?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testSnapshotRejectsHugeCount() throws IOException {
+    Path file = Files.createTempFile(tempDir, "", "");
+    ByteBuffer header = ByteBuffer.allocate(16);
+    header.putInt(MappingsSnapshot.MAGIC).putInt(MappingsSnapshot.VERSION);
+    header.putInt(Integer.MAX_VALUE).putInt(0);
+    Files.write(file, header.array());
+    try {
+      AACMappings.loadSnapshot(file.toString());
+      fail("loaded a snapshot with a corrupt count");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("truncated"), "reported as truncated");
+    } // try/catch
+  } // testSnapshotRejectsHugeCount()
+
+  /**
+   * Is a snapshot whose category count overflows an int when multiplied
+   * by the table width rejected as truncated?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testSnapshotRejectsOverflowingCount() throws IOException {
+    Path file = Files.createTempFile(tempDir, "", "");
+    ByteBuffer header = ByteBuffer.allocate(40);
+    header.putInt(MappingsSnapshot.MAGIC).putInt(MappingsSnapshot.VERSION);
+    header.putInt(0).putInt(0);
+    /* 0x40000001 categories of 4 ints each would wrap around to 4 ints. */
+    header.putInt(0x40000001).putInt(0).putInt(0).putInt(0).putInt(0);
+    header.putInt(0);
+    Files.write(file, header.array());
+    try {
+      AACMappings.loadSnapshot(file.toString());
+      fail("loaded a snapshot with an overflowing count");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("values wanted"), "count checked in full");
+    } // try/catch
+  } // testSnapshotRejectsOverflowingCount()
+
+  /**
+   * Are journaled edits replayed when the journal is reopened, including
+   * after a torn final record?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testJournalReplay() throws IOException {
+    String snapshot = tempDir.resolve("replay.snapshot").toString();
+    String journal = tempDir.resolve("replay.journal").toString();
+    AACMappings mappings = MappingsJournal.open(snapshot, journal);
+    mappings.addItem("one", "fruit");
+    mappings.addItem("two", "clothes");
+    mappings.select("one");
+    mappings.addItem("a", "apple");
+    mappings.addItem("b", "banana");
+    mappings.addItem("a", "avocado");
+    mappings.removeItem("b");
+    mappings.reset();
+    mappings.removeItem("two");
+    mappings.select("one");
+    mappings.addItem("a", null);
+    assertEquals("avocado", mappings.select("a"), "null text rejected");
+    mappings.reset();
+
+    AACMappings expected = new AACMappings(configFile("one fruit\n>a avocado\n"));
+    assertSameBoard(expected, MappingsJournal.open(snapshot + ".copy", journal));
+
+    // A record cut short by a crash is ignored.
+    Files.write(Path.of(journal), new byte[] {1, 0, 5, 't'},
+        StandardOpenOption.APPEND);
+    AACMappings reopened = MappingsJournal.open(snapshot, journal);
+    assertSameBoard(expected, reopened);
+    reopened.addItem("three", "misc");
+    assertEquals(2, MappingsJournal.open(snapshot, journal).getImageLocs().length,
+        "edits after a torn record are kept");
+  } // testJournalReplay()
+
+  /**
+   * Are strings too long for writeUTF journaled and replayed?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testJournalLongText() throws IOException {
+    String snapshot = tempDir.resolve("long.snapshot").toString();
+    String journal = tempDir.resolve("long.journal").toString();
+    String text = "\u00e9".repeat(70000);
+    AACMappings mappings = MappingsJournal.open(snapshot, journal);
+    mappings.addItem("one", "fruit");
+    mappings.select("one");
+    mappings.addItem("long", text);
+    mappings.addItem("short", "after");
+    mappings.getJournal().close();
+
+    AACMappings reopened = MappingsJournal.open(snapshot, journal);
+    reopened.select("one");
+    assertEquals(text, reopened.select("long"), "long text kept");
+    assertEquals("after", reopened.select("short"), "later edit kept");
+  } // testJournalLongText()
+
+  /**
+   * Does compaction fold the journal into the snapshot?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testJournalCompaction() throws IOException {
+    String snapshot = tempDir.resolve("compact.snapshot").toString();
+    String journal = tempDir.resolve("compact.journal").toString();
+    AACMappings mappings = MappingsJournal.open(snapshot, journal, 64);
+    mappings.addItem("one", "fruit");
+    mappings.select("one");
+    for (int i = 0; i < 100; i++) {
+      mappings.addItem("img" + i, "item " + i);
+    } // for
+    /* Compaction runs in the background; close waits for it. */
+    mappings.getJournal().close();
+    assertTrue(Files.exists(Path.of(snapshot)), "snapshot was written");
+
+    AACMappings reopened = MappingsJournal.open(snapshot, journal, 64);
+    assertEquals("", reopened.select("one"), "selecting one");
+    assertEquals(100, reopened.getImageLocs().length, "all items kept");
+    assertEquals("item 99", reopened.select("img99"), "last item kept");
+    reopened.getJournal().compact();
+    assertEquals(0, reopened.getJournal().size(), "journal emptied");
+    reopened.getJournal().close();
+
+    AACMappings compacted = MappingsJournal.open(snapshot, journal);
+    compacted.select("one");
+    assertEquals(100, compacted.getImageLocs().length, "all items in the snapshot");
+  } // testJournalCompaction()
+
+  /**
+   * Does a journal kept beside a text file start from the text file and
+   * keep edits made after that?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testJournalBeside() throws IOException {
+    String file = configFile(TEST_CONFIG);
+    AACMappings mappings = MappingsJournal.openBeside(file);
+    assertSameBoard(new AACMappings(file), mappings);
+    mappings.select("two");
+    mappings.addItem("j", "jacket");
+    mappings.select("j");
+    mappings.saveUses();
+
+    AACMappings reopened = MappingsJournal.openBeside(file);
+    reopened.select("two");
+    assertEquals(5, reopened.getImageLocs().length, "one item added");
+    reopened.setOrderByUse(true);
+    assertEquals("j", reopened.getImageLocs()[0], "uses kept");
+    assertEquals("jacket", reopened.select("j"), "edit kept");
+  } // testJournalBeside()
+
+  /**
+   * Do nested categories load, navigate, go back and save?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testNestedCategories() throws IOException {
+    String nested = "one fruit\n>a apple\n>t tropical\n>>m mango\n>>s sour\n"
+        + ">>>l lemon\n>b banana\ntwo clothes\n>d dress\n>one shirt\n";
+    AACMappings mappings = new AACMappings(configFile(nested));
+    assertArrayEquals(new String[] {"one", "two"}, mappings.getImageLocs(),
+        "top-level categories only");
+    assertEquals("", mappings.select("one"), "selecting one");
+    assertArrayEquals(new String[] {"a", "t", "b"}, mappings.getImageLocs(),
+        "items and a nested category");
+    assertEquals("", mappings.select("t"), "selecting t");
+    assertEquals("tropical", mappings.getCategory(), "in tropical");
+    assertEquals("mango", mappings.select("m"), "m is for mango");
+    assertEquals("", mappings.select("s"), "selecting s");
+    assertEquals("lemon", mappings.select("l"), "three levels down");
+    mappings.back();
+    assertEquals("tropical", mappings.getCategory(), "back one level");
+    mappings.back();
+    assertEquals("fruit", mappings.getCategory(), "back two levels");
+    mappings.back();
+    assertEquals("", mappings.getCategory(), "back home");
+
+    mappings.select("two");
+    assertEquals("shirt", mappings.select("one"),
+        "a category's image elsewhere is just an item");
+
+    String first = configFile("");
+    mappings.writeToFile(first);
+    assertEquals(nested, Files.readString(Path.of(first)), "same text file");
+    String snapshot = configFile("");
+    mappings.saveSnapshot(snapshot);
+    String second = configFile("");
+    AACMappings.loadSnapshot(snapshot).writeToFile(second);
+    assertEquals(nested, Files.readString(Path.of(second)), "same after snapshot");
+
+    mappings.reset();
+    mappings.select("one");
+    mappings.removeItem("t");
+    assertArrayEquals(new String[] {"a", "b"}, mappings.getImageLocs(),
+        "nested category removed");
+    mappings.writeToFile(first);
+    assertEquals("one fruit\n>a apple\n>b banana\ntwo clothes\n>d dress\n>one shirt\n",
+        Files.readString(Path.of(first)), "along with everything in it");
+  } // testNestedCategories()
+
+  /**
+   * Are lines nested too deeply reported?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testNestedTooDeeply() throws IOException {
+    String contents = "one fruit\n>>x orphan\n>a apple\n>>>y orphan\n>>m mango\n";
+    AACMappings mappings = new AACMappings();
+    MappingsParser parser = new MappingsParser(mappings, "test");
+    parser.parse(Channels.newChannel(
+        new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8))));
+    List<String> problems = parser.getProblems();
+    assertEquals(2, problems.size(), "two orphans");
+    assertTrue(problems.get(0).startsWith("test:2:"), "orphan on line 2");
+    assertTrue(problems.get(1).startsWith("test:4:"), "orphan on line 4");
+    mappings.select("one");
+    assertEquals("", mappings.select("a"), "a became a category");
+    assertEquals("mango", mappings.select("m"), "holding mango");
+  } // testNestedTooDeeply()
+
+  /**
+   * Are uses saved next to the mappings, and the most used listed first
+   * when asked?
+   *
+   * @throws IOException
+   *   If an IO operation fails.
+   */
+  @Test
+  public void testUses() throws IOException {
+    AACMappings mappings = new AACMappings(configFile(TEST_CONFIG));
+    mappings.select("two");
+    mappings.select("g");
+    mappings.select("g");
+    mappings.select("e");
+    mappings.reset();
+    assertArrayEquals(new String[] {"one", "two", "three"}, mappings.getImageLocs(),
+        "order added");
+    mappings.setOrderByUse(true);
+    assertArrayEquals(new String[] {"two", "one", "three"}, mappings.getImageLocs(),
+        "used category first");
+    mappings.select("two");
+    assertArrayEquals(new String[] {"g", "e", "d", "f"}, mappings.getImageLocs(),
+        "most used first");
+
+    String file = configFile("");
+    mappings.writeToFile(file);
+    new File(AACMappings.usesFile(file)).deleteOnExit();
+    assertTrue(Files.readString(Path.of(file)).startsWith("one fruit\n"),
+        "written in the order added");
+    AACMappings reloaded = new AACMappings(file);
+    reloaded.select("two");
+    assertArrayEquals(new String[] {"d", "e", "f", "g"}, reloaded.getImageLocs(),
+        "order added unless asked");
+    reloaded.setOrderByUse(true);
+    assertArrayEquals(new String[] {"g", "e", "d", "f"}, reloaded.getImageLocs(),
+        "uses reloaded");
+
+    /* A directory cannot be written as mappings, so no uses are written. */
+    String directory = Files.createDirectory(tempDir.resolve("uses")).toString();
+    mappings.writeToFile(directory);
+    assertFalse(new File(AACMappings.usesFile(directory)).exists(), "no uses without mappings");
+  } // testUses()
 } // class TestAACCategory
@@ -0,0 +1,188 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Tests of AACServer and AACLoad, over a local port.
+ *
+ * @author Sara Jaljaa
+ */
+public class TestAACServer {
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /** The server under test. */
+  AACServer server;
+
+  /** An icon on the board. */
+  Path icon;
+
+  /** Makes requests. */
+  HttpClient client = HttpClient.newHttpClient();
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  /**
+   * Start a server for a small board whose one icon is a real file.
+   */
+  @BeforeEach
+  void start() throws Exception {
+    icon = Files.createTempFile("TestAACServer", ".png");
+    Files.write(icon, new byte[] {(byte) 0x89, 'P', 'N', 'G'});
+    AACMappings board = new AACMappings();
+    board.addItem("img/food.png", "food");
+    board.addItem(icon.toString(), "clothes");
+    board.select("img/food.png");
+    board.addItem("img/food/apple.png", "apple");
+    board.addItem("img/food/\"pie\".png", "pie \"hot\"");
+    board.reset();
+    board.select(icon.toString());
+    board.addItem("img/clothes/hat.png", "hat");
+    board.reset();
+    server = new AACServer(new SharedBoard(Board.of(board)), null, 0, 100);
+    server.start();
+  } // start()
+
+  /**
+   * Stop the server.
+   */
+  @AfterEach
+  void stop() throws Exception {
+    server.stop();
+    Files.deleteIfExists(icon);
+  } // stop()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Make a request.
+   */
+  HttpResponse<String> request(String method, String path, String etag) throws Exception {
+    HttpRequest.Builder request = HttpRequest.newBuilder(
+        URI.create("http://localhost:" + server.getPort() + path))
+        .method(method, HttpRequest.BodyPublishers.noBody());
+    if (etag != null) {
+      request.header("If-None-Match", etag);
+    } // if
+    return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+  } // request(String, String, String)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Can a session be driven over HTTP?
+   */
+  @Test
+  void testSession() throws Exception {
+    HttpResponse<String> created = request("POST", "/sessions", null);
+    assertEquals(201, created.statusCode(), "created");
+    String id = created.body().replaceAll(".*\"session\":\"([^\"]*)\".*", "$1");
+    String path = "/sessions/" + id;
+    String food = request("POST", path + "/select?image=img%2Ffood.png", null).body();
+    assertTrue(food.contains("\"category\":\"food\""), food);
+    assertTrue(food.contains("\"img/food/\\\"pie\\\".png\""), "quotes escaped: " + food);
+    String apple = request("POST", path + "/select?image=img/food/apple.png", null).body();
+    assertTrue(apple.contains("\"text\":\"apple\""), apple);
+    assertEquals(404, request("POST", path + "/select?image=nothing", null).statusCode(),
+        "missing image");
+    assertTrue(request("POST", path + "/home", null).body().contains("\"category\":\"\""),
+        "home");
+    assertEquals(1, server.getSessions(), "one session");
+    assertEquals(200, request("DELETE", path, null).statusCode(), "ended");
+    assertEquals(404, request("GET", path, null).statusCode(), "gone");
+    assertEquals(503, request("GET", "/speech?text=apple", null).statusCode(), "no voice");
+  } // testSession()
+
+  /**
+   * Are icons served once and then answered from the browser's cache?
+   */
+  @Test
+  void testIcons() throws Exception {
+    String path = "/icons?image=" + icon.toString().replace("/", "%2F");
+    HttpResponse<String> first = request("GET", path, null);
+    assertEquals(200, first.statusCode(), "served");
+    String etag = first.headers().firstValue("ETag").orElse(null);
+    assertTrue(etag != null, "tagged");
+    assertTrue(first.headers().firstValue("Cache-Control").orElse("").contains("max-age"),
+        "cacheable");
+    assertEquals(304, request("GET", path, etag).statusCode(), "not modified");
+    assertEquals(404, request("GET", "/icons?image=%2Fetc%2Fpasswd", null).statusCode(),
+        "only images on the board");
+  } // testIcons()
+
+  /**
+   * Are no more sessions opened than allowed, even when many are asked
+   * for at once?
+   */
+  @Test
+  void testMaxSessions() throws Exception {
+    AACServer small = new AACServer(new SharedBoard(Board.EMPTY), null, 0, 5);
+    small.start();
+    try {
+      URI sessions = URI.create("http://localhost:" + small.getPort() + "/sessions");
+      List<CompletableFuture<HttpResponse<String>>> responses =
+          new ArrayList<CompletableFuture<HttpResponse<String>>>();
+      for (int i = 0; i < 50; i++) {
+        responses.add(client.sendAsync(HttpRequest.newBuilder(sessions)
+            .POST(HttpRequest.BodyPublishers.noBody()).build(),
+            HttpResponse.BodyHandlers.ofString()));
+      } // for
+      String id = null;
+      int opened = 0;
+      for (CompletableFuture<HttpResponse<String>> response : responses) {
+        if (response.get().statusCode() == 201) {
+          opened++;
+          id = response.get().body().replaceAll(".*\"session\":\"([^\"]*)\".*", "$1");
+        } else {
+          assertEquals(503, response.get().statusCode(), "refused");
+        } // if/else
+      } // for
+      assertEquals(5, opened, "only five opened");
+      assertEquals(5, small.getSessions(), "five open");
+
+      HttpResponse<String> ended = client.send(HttpRequest.newBuilder(
+          URI.create(sessions + "/" + id)).DELETE().build(), HttpResponse.BodyHandlers.ofString());
+      assertEquals(200, ended.statusCode(), "ended");
+      HttpResponse<String> again = client.send(HttpRequest.newBuilder(sessions)
+          .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+      assertEquals(201, again.statusCode(), "room for one more");
+    } finally {
+      small.stop();
+    } // try/finally
+  } // testMaxSessions()
+
+  /**
+   * Does the load generator run many sessions without failures?
+   */
+  @Test
+  void testLoad() throws Exception {
+    ExecutorService threads = AACServer.threads();
+    AACLoad load = new AACLoad("http://localhost:" + server.getPort(), threads);
+    load.run(50, 3);
+    threads.shutdown();
+    assertEquals(0, load.getFailures(), load.toString());
+    assertEquals(50 * (2 + 3 * 5), load.getRequests(), "every request made");
+    assertEquals(0, server.getSessions(), "every session ended");
+  } // testLoad()
+} // class TestAACServer
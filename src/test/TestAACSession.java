@@ -0,0 +1,204 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests of AACSession, driven without any windows.
+ *
+ * @author Sara Jaljaa
+ */
+public class TestAACSession {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Build a board with a food category of twelve items and a clothes
+   * category of two.
+   */
+  static AACMappings board() {
+    AACMappings mappings = new AACMappings();
+    mappings.addItem("img/food.png", "food");
+    mappings.addItem("img/clothes.png", "clothes");
+    mappings.select("img/food.png");
+    for (int i = 0; i < 12; i++) {
+      mappings.addItem("img/food/" + i + ".png", "food " + i);
+    } // for
+    mappings.reset();
+    mappings.select("img/clothes.png");
+    mappings.addItem("img/clothes/hat.png", "hat");
+    mappings.addItem("img/clothes/scarf.png", "scarf");
+    mappings.reset();
+    return mappings;
+  } // board()
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Can we move between categories and pages?
+   */
+  @Test
+  void testNavigate() {
+    AACSession session = new AACSession(board(), 5, null);
+    AACSession.View home = session.view();
+    assertEquals("", home.getCategory(), "starts at home");
+    assertArrayEquals(new String[] {"img/food.png", "img/clothes.png"},
+        home.getImageLocs(), "categories shown");
+    assertEquals("", session.select("img/food.png"), "category says nothing");
+
+    AACSession.View food = session.view();
+    assertEquals("food", food.getCategory(), "in food");
+    assertEquals(3, food.getPages(), "twelve items, five at a time");
+    assertFalse(food.hasPrevious(), "first page");
+    assertEquals("img/food/5.png", food.getUpcoming()[0], "next page ahead");
+    assertEquals(1, session.next().getPage(), "second page");
+    assertEquals(2, session.next().getPage(), "third page");
+    AACSession.View last = session.next();
+    assertEquals(2, last.getPage(), "stays on the last page");
+    assertArrayEquals(new String[] {"img/food/10.png", "img/food/11.png"},
+        last.getImageLocs(), "last page holds the rest");
+    assertEquals(0, last.getUpcoming().length, "nothing ahead");
+    assertEquals("food 11", session.select("img/food/11.png"), "item spoken");
+    assertEquals(1, session.previous().getPage(), "back a page");
+
+    AACSession.View back = session.home();
+    assertEquals("", back.getCategory(), "home again");
+    assertTrue(back.getPages() == 1 && !back.hasNext(), "one page of categories");
+  } // testNavigate()
+
+  /**
+   * Does entering a category go to its first page even when it has the
+   * same name as the one it is in?
+   */
+  @Test
+  void testSameName() {
+    AACMappings mappings = new AACMappings();
+    mappings.addCategory("img/more.png", "more");
+    mappings.select("img/more.png");
+    for (int i = 0; i < 6; i++) {
+      mappings.addItem("img/more/" + i + ".png", "more " + i);
+    } // for
+    mappings.addCategory("img/more.png", "img/more/more.png", "more");
+    mappings.select("img/more/more.png");
+    mappings.addItem("img/more/more/0.png", "more more");
+    mappings.reset();
+
+    AACSession session = new AACSession(mappings, 5, null);
+    session.select("img/more.png");
+    assertEquals(1, session.next().getPage(), "second page");
+    assertEquals("", session.select("img/more/more.png"), "category says nothing");
+    AACSession.View inner = session.view();
+    assertEquals("more", inner.getCategory(), "same name");
+    assertEquals(0, inner.getPage(), "first page");
+    assertArrayEquals(new String[] {"img/more/more/0.png"}, inner.getImageLocs(),
+        "inner items shown");
+  } // testSameName()
+
+  /**
+   * Does selecting something not shown fail without moving?
+   */
+  @Test
+  void testMissing() {
+    AACSession session = new AACSession(board());
+    assertThrows(NoSuchElementException.class, () -> session.select("img/nothing.png"));
+    session.select("img/clothes.png");
+    assertThrows(NoSuchElementException.class, () -> session.select("img/food/1.png"));
+    assertEquals("clothes", session.view().getCategory(), "still in clothes");
+  } // testMissing()
+
+  /**
+   * Does adding an item show it?
+   */
+  @Test
+  void testAddItem() {
+    AACSession session = new AACSession(board(), 5, null);
+    session.select("img/clothes.png");
+    session.addItem("img/clothes/boots.png", "boots");
+    assertEquals(3, session.view().getImageLocs().length, "three clothes");
+    assertEquals("boots", session.select("img/clothes/boots.png"), "new item spoken");
+  } // testAddItem()
+
+  /**
+   * Are symbols collected into a sentence, and the whole sentence spoken
+   * in one piece?
+   */
+  @Test
+  void testSentence() throws Exception {
+    AACMappings mappings = board();
+    mappings.setComposing(true);
+    TestSpeechDispatcher.GatedSpeaker speaker = new TestSpeechDispatcher.GatedSpeaker();
+    speaker.gate.release(2);
+    SpeechDispatcher speech = new SpeechDispatcher(speaker);
+    AACSession session = new AACSession(mappings, 5, speech);
+    session.select("img/clothes.png");
+    assertEquals("hat", session.select("img/clothes/hat.png"), "added");
+    session.select("img/clothes/scarf.png");
+    session.say("img/food/3.png", "food 3");
+    assertEquals("hat scarf food 3", mappings.getSentence().getText(), "composed");
+    assertEquals("food 3", session.undo(), "undone");
+    assertArrayEquals(new String[] {"img/clothes/hat.png", "img/clothes/scarf.png"},
+        mappings.getSentence().getImageLocs(), "images kept");
+    assertEquals("hat scarf", session.speakSentence(), "spoken");
+    assertEquals(0, mappings.getSentence().size(), "started over");
+    assertEquals("", session.speakSentence(), "nothing more to speak");
+    session.select("img/clothes/hat.png");
+    session.clearSentence();
+    assertNull(session.undo(), "cleared");
+    assertEquals("hat scarf", session.replay(), "replayed");
+    for (int i = 0; i < 500 && speaker.spoken.size() < 2; i++) {
+      Thread.sleep(10);
+    } // for
+    assertEquals(List.of("hat scarf", "hat scarf"), speaker.spoken,
+        "one call to the speaker per sentence");
+    speech.close();
+
+    mappings.setComposing(false);
+    assertNull(mappings.getSentence(), "not composing");
+    assertEquals("hat", session.select("img/clothes/hat.png"), "spoken at once");
+  } // testSentence()
+
+  /**
+   * Can thousands of sessions run at once, each keeping its own place?
+   */
+  @Test
+  void testManySessions() throws Exception {
+    int count = 2000;
+    List<AACSession> sessions = new ArrayList<AACSession>();
+    for (int i = 0; i < count; i++) {
+      sessions.add(new AACSession(board(), 5, null));
+    } // for
+    ExecutorService threads = Executors.newFixedThreadPool(8);
+    List<Future<String>> said = new ArrayList<Future<String>>();
+    for (int i = 0; i < count; i++) {
+      AACSession session = sessions.get(i);
+      int item = i % 12;
+      said.add(threads.submit(() -> {
+        session.select("img/food.png");
+        for (int p = 0; p < item / 5; p++) {
+          session.next();
+        } // for
+        String text = session.select("img/food/" + item + ".png");
+        session.home();
+        return text;
+      }));
+    } // for
+    for (int i = 0; i < count; i++) {
+      assertEquals("food " + (i % 12), said.get(i).get(), "session " + i);
+    } // for
+    threads.shutdown();
+  } // testManySessions()
+} // class TestAACSession
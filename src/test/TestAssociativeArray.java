@@ -0,0 +1,189 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.grinnell.csc207.util.AssociativeArray;
+import edu.grinnell.csc207.util.KeyNotFoundException;
+import edu.grinnell.csc207.util.NullKeyException;
+
+/**
+ * Tests of AssociativeArray. Most of these compare the hash-indexed
+ * array against a simple linear list of pairs, which is how the
+ * associative array used to work.
+ *
+ * @author Sara Jaljaa
+ */
+public class TestAssociativeArray {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * A deliberately simple linear associative array to compare against.
+   */
+  static class Linear {
+    /** The keys, in insertion order. */
+    List<String> keys = new ArrayList<String>();
+
+    /** The values, parallel to keys. */
+    List<Integer> vals = new ArrayList<Integer>();
+
+    /** Set key to val, appending if key is new. */
+    void set(String key, Integer val) {
+      int i = keys.indexOf(key);
+      if (i >= 0) {
+        vals.set(i, val);
+      } else {
+        keys.add(key);
+        vals.add(val);
+      } // if/else
+    } // set(String, Integer)
+
+    /** Remove key, if present. */
+    void remove(String key) {
+      int i = keys.indexOf(key);
+      if (i >= 0) {
+        keys.remove(i);
+        vals.remove(i);
+      } // if
+    } // remove(String)
+  } // class Linear
+
+  /**
+   * Check that an associative array matches the linear version.
+   */
+  static void assertMatches(Linear expected, AssociativeArray<String, Integer> actual)
+      throws KeyNotFoundException {
+    assertEquals(expected.keys.size(), actual.size(), "sizes match");
+    assertArrayEquals(expected.keys.toArray(), actual.keys(),
+        "keys match, in insertion order");
+    for (int i = 0; i < expected.keys.size(); i++) {
+      assertEquals(expected.vals.get(i), actual.get(expected.keys.get(i)),
+          "value of " + expected.keys.get(i));
+    } // for
+  } // assertMatches(Linear, AssociativeArray)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Does a random mix of sets and removes behave like the linear version?
+   */
+  @Test
+  void testRandomOperations() throws Exception {
+    Random rand = new Random(207);
+    Linear expected = new Linear();
+    AssociativeArray<String, Integer> actual = new AssociativeArray<String, Integer>();
+    for (int op = 0; op < 5000; op++) {
+      String key = "k" + rand.nextInt(300);
+      if (rand.nextInt(4) == 0) {
+        expected.remove(key);
+        actual.remove(key);
+      } else {
+        expected.set(key, op);
+        actual.set(key, op);
+      } // if/else
+      assertEquals(expected.keys.contains(key), actual.hasKey(key),
+          "hasKey(" + key + ") after operation " + op);
+    } // for
+    assertMatches(expected, actual);
+  } // testRandomOperations()
+
+  /**
+   * Can we store many more pairs than the default capacity?
+   */
+  @Test
+  void testMany() throws Exception {
+    AssociativeArray<String, Integer> aa = new AssociativeArray<String, Integer>();
+    for (int i = 0; i < 20000; i++) {
+      aa.set("img/" + i + ".png", i);
+    } // for
+    assertEquals(20000, aa.size(), "all pairs stored");
+    for (int i = 0; i < 20000; i++) {
+      assertEquals(i, aa.get("img/" + i + ".png"), "value " + i);
+    } // for
+    Object[] keys = aa.keys();
+    assertEquals("img/0.png", keys[0], "first key first");
+    assertEquals("img/19999.png", keys[19999], "last key last");
+  } // testMany()
+
+  /**
+   * Do keys with identical hash codes coexist?
+   */
+  @Test
+  void testCollisions() throws Exception {
+    // "Aa" and "BB" have the same hash code, as do their concatenations.
+    String[] keys = {"AaAa", "AaBB", "BBAa", "BBBB"};
+    AssociativeArray<String, Integer> aa = new AssociativeArray<String, Integer>();
+    for (int i = 0; i < keys.length; i++) {
+      aa.set(keys[i], i);
+    } // for
+    aa.remove("AaBB");
+    assertFalse(aa.hasKey("AaBB"), "removed colliding key");
+    assertEquals(0, aa.get("AaAa"), "earlier colliding key");
+    assertEquals(2, aa.get("BBAa"), "later colliding key");
+    assertEquals(3, aa.get("BBBB"), "last colliding key");
+  } // testCollisions()
+
+  /**
+   * Are missing and null keys handled as before?
+   */
+  @Test
+  void testMissing() throws Exception {
+    AssociativeArray<String, Integer> aa = new AssociativeArray<String, Integer>();
+    assertThrows(NullKeyException.class, () -> aa.set(null, 1));
+    assertThrows(KeyNotFoundException.class, () -> aa.get("a"));
+    assertThrows(KeyNotFoundException.class, () -> aa.get(null));
+    assertFalse(aa.hasKey(null), "null is never a key");
+    aa.set("a", 1);
+    aa.remove("b");
+    assertEquals(1, aa.size(), "removing a missing key does nothing");
+    assertEquals("{a:1}", aa.toString(), "toString of one pair");
+  } // testMissing()
+
+  /**
+   * Do the exception-free lookups agree with get and hasKey?
+   */
+  @Test
+  void testSentinelLookups() throws Exception {
+    AssociativeArray<String, Integer> aa = new AssociativeArray<String, Integer>();
+    aa.set("a", 1);
+    aa.set("b", 2);
+    assertEquals(0, aa.indexOf("a"), "first key at index 0");
+    assertEquals(1, aa.indexOf("b"), "second key at index 1");
+    assertEquals(-1, aa.indexOf("c"), "missing key");
+    assertEquals(-1, aa.indexOf(null), "null key");
+    assertEquals(2, aa.getOrDefault("b", 0), "present key");
+    assertEquals(0, aa.getOrDefault("c", 0), "missing key gets default");
+    assertEquals(0, aa.getOrDefault(null, 0), "null key gets default");
+    aa.remove("a");
+    assertEquals(0, aa.indexOf("b"), "index shifts after remove");
+  } // testSentinelLookups()
+
+  /**
+   * Is a clone independent of the original?
+   */
+  @Test
+  void testClone() throws Exception {
+    AssociativeArray<String, Integer> aa = new AssociativeArray<String, Integer>();
+    aa.set("a", 1);
+    aa.set("b", 2);
+    AssociativeArray<String, Integer> copy = aa.clone();
+    copy.set("a", 10);
+    copy.set("c", 3);
+    aa.remove("b");
+    assertEquals(1, aa.get("a"), "original unchanged by clone's set");
+    assertFalse(aa.hasKey("c"), "original unchanged by clone's new key");
+    assertTrue(copy.hasKey("b"), "clone unchanged by original's remove");
+    assertEquals(10, copy.get("a"), "clone updated");
+  } // testClone()
+} // class TestAssociativeArray
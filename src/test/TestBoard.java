@@ -0,0 +1,175 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Tests of Board, SharedBoard and BoardCursor.
+ *
+ * @author Sara Jaljaa
+ */
+public class TestBoard {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Build a board with a food category and a clothes category.
+   */
+  static Board board() {
+    return Board.EMPTY
+        .with("", "img/food.png", "food")
+        .with("", "img/clothes.png", "clothes")
+        .with("img/food.png", "img/food/apple.png", "apple")
+        .with("img/food.png", "img/food/pie.png", "pie")
+        .with("img/clothes.png", "img/clothes/hat.png", "hat");
+  } // board()
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Does editing make a new board and leave the old one alone?
+   */
+  @Test
+  void testWith() {
+    Board before = board();
+    Board after = before.with("img/food.png", "img/food/pie.png", "apple pie")
+        .with("img/food.png", "img/food/pear.png", "pear")
+        .with("", "img/clothes.png", "clothing");
+    assertEquals(5L, before.getVersion(), "five edits");
+    assertEquals(8L, after.getVersion(), "three more");
+    assertEquals("pie", before.getText("img/food.png", "img/food/pie.png"), "old text");
+    assertEquals("apple pie", after.getText("img/food.png", "img/food/pie.png"), "new text");
+    assertArrayEquals(new String[] {"img/food/apple.png", "img/food/pie.png"},
+        before.getImageLocs("img/food.png"), "old items");
+    assertEquals(3, after.getImageLocs("img/food.png").length, "new item");
+    assertEquals("clothing", after.getName("img/clothes.png"), "renamed");
+    assertEquals("clothes", before.getName("img/clothes.png"), "old name");
+    assertTrue(after.hasLabel("pear") && !before.hasLabel("pear"), "labels");
+    assertEquals(null, before.getText("img/food.png", "img/food/pear.png"),
+        "old index unchanged");
+    Board added = after.with("", "img/toys.png", "toys")
+        .with("img/toys.png", "img/ball.png", "ball");
+    assertEquals("ball", added.getText("img/toys.png", "img/ball.png"), "new category");
+    assertEquals("img/toys.png", added.getImageLocs("")[2], "on the home page");
+    assertTrue(added.hasImage("img/ball.png") && !after.hasImage("img/ball.png"), "images");
+    assertFalse(after.hasCategory("img/toys.png"), "old categories unchanged");
+    assertThrows(NoSuchElementException.class,
+        () -> before.with("img/nothing.png", "img/x.png", "x"));
+  } // testWith()
+
+  /**
+   * Does a board match the mappings it was made from?
+   */
+  @Test
+  void testOf() {
+    Board board = Board.of(TestAACSession.board());
+    assertArrayEquals(new String[] {"img/food.png", "img/clothes.png"},
+        board.getImageLocs(""), "categories");
+    assertEquals(12, board.getImageLocs("img/food.png").length, "food");
+    assertEquals("food 7", board.getText("img/food.png", "img/food/7.png"), "text");
+    assertEquals(null, board.getText("img/clothes.png", "img/food/7.png"), "wrong category");
+    assertTrue(board.hasImage("img/clothes/hat.png"), "item image");
+    assertArrayEquals(new String[] {"img/food/10.png", "img/food/11.png"},
+        board.getImageLocs("img/food.png", 10, 9), "last page of food");
+    assertEquals(12, board.getImageCount("img/food.png"), "food count");
+  } // testOf()
+
+  /**
+   * Do cursors on one board keep their own places?
+   */
+  @Test
+  void testCursors() {
+    SharedBoard shared = new SharedBoard(board());
+    BoardCursor first = new BoardCursor(shared);
+    BoardCursor second = new BoardCursor(shared);
+    assertEquals("", first.select("img/food.png"), "category");
+    assertEquals("food", first.getCategory(), "first in food");
+    assertEquals("", second.getCategory(), "second at home");
+    assertEquals("apple", first.select("img/food/apple.png"), "item");
+    assertThrows(NoSuchElementException.class, () -> first.select("img/clothes/hat.png"));
+    assertFalse(first.hasImage("img/clothes/hat.png"), "not in food");
+    first.reset();
+    assertEquals("", first.getCategory(), "home again");
+  } // testCursors()
+
+  /**
+   * Do cursors see published edits, and go home if their category goes?
+   */
+  @Test
+  void testPublish() {
+    SharedBoard shared = new SharedBoard(board());
+    BoardCursor reader = new BoardCursor(shared);
+    BoardCursor editor = new BoardCursor(shared);
+    reader.select("img/food.png");
+    editor.select("img/food.png");
+    editor.addItem("img/food/pear.png", "pear");
+    assertEquals("pear", reader.select("img/food/pear.png"), "edit seen");
+    shared.publish(Board.EMPTY.with("", "img/toys.png", "toys"));
+    assertEquals("", reader.getCategory(), "category gone, so home");
+    assertArrayEquals(new String[] {"img/toys.png"}, reader.getImageLocs(), "new board");
+  } // testPublish()
+
+  /**
+   * Are concurrent edits all kept?
+   */
+  @Test
+  void testConcurrentUpdates() throws Exception {
+    SharedBoard shared = new SharedBoard(board());
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 8; t++) {
+      int id = t;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 100; i++) {
+          String loc = "img/food/" + id + "-" + i + ".png";
+          shared.update((board) -> board.with("img/food.png", loc, "x"));
+        } // for
+      }));
+    } // for
+    for (Thread thread : threads) {
+      thread.start();
+    } // for
+    for (Thread thread : threads) {
+      thread.join();
+    } // for
+    assertEquals(2 + 800, shared.get().getImageLocs("img/food.png").length, "no lost edits");
+    assertEquals(5L + 800, shared.get().getVersion(), "one version per edit");
+  } // testConcurrentUpdates()
+
+  /**
+   * Do cursors go into nested categories and back out again?
+   */
+  @Test
+  void testNested() {
+    AACMappings mappings = TestAACSession.board();
+    mappings.addCategory("img/food.png", "img/food/fruit.png", "fruit");
+    mappings.addCategory("img/food/fruit.png", "img/food/citrus.png", "citrus");
+    mappings.reset();
+    SharedBoard shared = new SharedBoard(Board.of(mappings));
+    assertArrayEquals(new String[] {"img/food.png", "img/clothes.png"},
+        shared.get().getImageLocs(""), "nested categories are not at home");
+    BoardCursor cursor = new BoardCursor(shared);
+    assertThrows(NoSuchElementException.class, () -> cursor.select("img/food/fruit.png"));
+    cursor.select("img/food.png");
+    assertEquals("", cursor.select("img/food/fruit.png"), "into fruit");
+    assertEquals("", cursor.select("img/food/citrus.png"), "into citrus");
+    assertEquals("citrus", cursor.getCategory(), "two levels down");
+    cursor.back();
+    assertEquals("fruit", cursor.getCategory(), "back one level");
+    shared.update((board) -> board.with("img/food.png", "img/food/fruit.png", "fruits"));
+    assertEquals("fruits", cursor.getCategory(), "renamed through its parent");
+    cursor.back();
+    assertEquals("food", cursor.getCategory(), "back two levels");
+    cursor.back();
+    assertEquals("", cursor.getCategory(), "back home");
+  } // testNested()
+} // class TestBoard
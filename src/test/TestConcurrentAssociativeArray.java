@@ -0,0 +1,139 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import edu.grinnell.csc207.util.AssociativeArray;
+import edu.grinnell.csc207.util.ConcurrentAssociativeArray;
+import edu.grinnell.csc207.util.KeyNotFoundException;
+import edu.grinnell.csc207.util.NullKeyException;
+
+/**
+ * Tests of ConcurrentAssociativeArray.
+ *
+ * @author Sara Jaljaa
+ */
+public class TestConcurrentAssociativeArray {
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Does it behave like an associative array, and leave old snapshots
+   * alone?
+   */
+  @Test
+  void testSnapshots() throws Exception {
+    ConcurrentAssociativeArray<String, Integer> array =
+        new ConcurrentAssociativeArray<String, Integer>();
+    array.set("a", 1);
+    array.set("b", 2);
+    AssociativeArray<String, Integer> before = array.snapshot();
+    array.set("a", 10);
+    array.set("c", 3);
+    array.remove("b");
+    array.remove("nothing");
+    assertEquals(10, array.get("a"), "updated");
+    assertEquals(2, array.size(), "one added, one removed");
+    assertFalse(array.hasKey("b"), "removed");
+    assertThrows(KeyNotFoundException.class, () -> array.get("b"));
+    assertThrows(NullKeyException.class, () -> array.set(null, 0));
+    assertArrayEquals(new Object[] {"a", "c"}, array.snapshot().keys(), "order kept");
+    assertEquals(1, before.get("a"), "old value");
+    assertEquals(2, before.get("b"), "old key");
+    assertEquals(2, before.size(), "old size");
+    array.setAll(new String[] {"c", "d"}, new Integer[] {30, 4});
+    assertEquals("{a:10, c:30, d:4}", array.toString(), "set all");
+    assertThrows(NullKeyException.class,
+        () -> array.setAll(new String[] {"e", null}, new Integer[] {5, 6}));
+    assertFalse(array.hasKey("e"), "nothing set");
+  } // testSnapshots()
+
+  /**
+   * Do readers always see a whole, consistent version while several
+   * threads write?
+   */
+  @Test
+  void testStress() throws Exception {
+    ConcurrentAssociativeArray<String, Integer> array =
+        new ConcurrentAssociativeArray<String, Integer>();
+    int writers = 4;
+    int keys = 500;
+    AtomicBoolean done = new AtomicBoolean(false);
+    AtomicReference<String> problem = new AtomicReference<String>();
+
+    /* Each writer adds its keys in order, then removes its even keys. */
+    List<Thread> writing = new ArrayList<Thread>();
+    for (int w = 0; w < writers; w++) {
+      int id = w;
+      writing.add(new Thread(() -> {
+        try {
+          for (int i = 0; i < keys; i++) {
+            array.set(id + "-" + i, i);
+          } // for
+          for (int i = 0; i < keys; i += 2) {
+            array.remove(id + "-" + i);
+          } // for
+        } catch (NullKeyException e) {
+          problem.compareAndSet(null, e.toString());
+        } // try/catch
+      }));
+    } // for
+
+    /* Readers check that each version is one the writers could have made. */
+    List<Thread> reading = new ArrayList<Thread>();
+    for (int r = 0; r < 4; r++) {
+      reading.add(new Thread(() -> {
+        while (!done.get()) {
+          AssociativeArray<String, Integer> snapshot = array.snapshot();
+          for (int j = 0; j < snapshot.size(); j++) {
+            String key = snapshot.pairs[j].key;
+            if (snapshot.indexOf(key) != j
+                || !snapshot.pairs[j].val.equals(Integer.valueOf(key.split("-")[1]))) {
+              problem.compareAndSet(null, "inconsistent pair " + key);
+            } // if
+          } // for
+          for (int w = 0; w < writers; w++) {
+            /* If a writer's last key is absent, it has not removed anything. */
+            if (!snapshot.hasKey(w + "-" + (keys - 1))) {
+              for (int i = 1; i < keys - 1; i++) {
+                if (snapshot.hasKey(w + "-" + i) && !snapshot.hasKey(w + "-" + (i - 1))) {
+                  problem.compareAndSet(null, "key " + w + "-" + i + " without its predecessor");
+                } // if
+              } // for
+            } // if
+          } // for
+        } // while
+      }));
+    } // for
+
+    for (Thread thread : reading) {
+      thread.start();
+    } // for
+    for (Thread thread : writing) {
+      thread.start();
+    } // for
+    for (Thread thread : writing) {
+      thread.join();
+    } // for
+    done.set(true);
+    for (Thread thread : reading) {
+      thread.join();
+    } // for
+
+    assertEquals(null, problem.get(), "no inconsistent versions");
+    assertEquals(writers * keys / 2, array.size(), "odd keys remain");
+    for (int w = 0; w < writers; w++) {
+      assertTrue(array.hasKey(w + "-1"), "odd key kept");
+      assertFalse(array.hasKey(w + "-0"), "even key removed");
+    } // for
+  } // testStress()
+} // class TestConcurrentAssociativeArray
@@ -0,0 +1,99 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import javax.swing.ImageIcon;
+
+/**
+ * Tests of IconCache, using icons made in memory rather than read from
+ * files.
+ *
+ * @author Sara Jaljaa
+ */
+public class TestIconCache {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Make an icon of the given size.
+   */
+  static ImageIcon icon(int width, int height) {
+    return new ImageIcon(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+  } // icon(int, int)
+
+  /**
+   * The bytes charged for an icon of the given size.
+   */
+  static long bytes(int width, int height) {
+    return width * height * 4L + IconCache.OVERHEAD;
+  } // bytes(int, int)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Are the least recently used icons evicted first?
+   */
+  @Test
+  void testEvictionOrder() {
+    IconCache cache = new IconCache(3 * bytes(10, 10));
+    cache.put("a", icon(10, 10));
+    cache.put("b", icon(10, 10));
+    cache.put("c", icon(10, 10));
+    assertNotNull(cache.getIfPresent("a"), "a used again");
+    cache.put("d", icon(10, 10));
+    assertNull(cache.peek("b"), "b least recently used");
+    assertNotNull(cache.peek("a"), "a kept");
+    cache.put("e", icon(10, 10));
+    assertNull(cache.peek("c"), "then c");
+    assertNotNull(cache.peek("d"), "d kept");
+    assertNotNull(cache.peek("e"), "e kept");
+    assertEquals(2, cache.getEvictions(), "two evicted");
+  } // testEvictionOrder()
+
+  /**
+   * Are the bytes used kept up to date as icons are added, replaced and
+   * evicted?
+   */
+  @Test
+  void testBytes() {
+    IconCache cache = new IconCache(bytes(20, 20) + bytes(10, 10));
+    cache.put("a", icon(10, 10));
+    assertEquals(bytes(10, 10), cache.getUsed(), "one icon");
+    cache.put("b", icon(5, 8));
+    assertEquals(bytes(10, 10) + bytes(5, 8), cache.getUsed(), "two icons");
+    cache.put("b", icon(20, 20));
+    assertEquals(bytes(10, 10) + bytes(20, 20), cache.getUsed(), "replaced, not added");
+    cache.put("c", icon(10, 10));
+    assertEquals(bytes(20, 20) + bytes(10, 10), cache.getUsed(), "a evicted");
+    assertNull(cache.peek("a"), "a gone");
+
+    /* An icon too big for the cache is kept on its own. */
+    cache.put("d", icon(40, 40));
+    assertEquals(bytes(40, 40), cache.getUsed(), "only the big icon");
+    assertEquals(3, cache.getEvictions(), "a, b and c evicted");
+  } // testBytes()
+
+  /**
+   * Are only lookups for display counted as hits and misses?
+   */
+  @Test
+  void testStats() {
+    IconCache cache = new IconCache();
+    ImageIcon icon = icon(4, 4);
+    cache.put("a", icon);
+    assertSame(icon, cache.peek("a"), "peeked");
+    assertNull(cache.peek("b"), "not cached");
+    assertEquals(0, cache.getHits() + cache.getMisses(), "peeks not counted");
+    assertSame(icon, cache.getIfPresent("a"), "shown");
+    assertNull(cache.getIfPresent("b"), "not cached");
+    assertEquals(1, cache.getHits(), "one hit");
+    assertEquals(1, cache.getMisses(), "one miss");
+  } // testStats()
+} // class TestIconCache
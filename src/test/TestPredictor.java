@@ -0,0 +1,122 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Tests of Predictor and PredictionPage.
+ *
+ * @author Sara Jaljaa
+ */
+public class TestPredictor {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Teach a predictor a sequence of words, each its own symbol.
+   */
+  static void say(Predictor predictor, String words) {
+    for (String word : words.split(" ")) {
+      predictor.record("words", word, word);
+    } // for
+  } // say(Predictor, String)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Do longer contexts win, with shorter ones filling in?
+   */
+  @Test
+  void testPredict() {
+    Predictor predictor = new Predictor();
+    assertEquals("", TestSymbolIndex.images(predictor.predict(3)), "nothing learned");
+    say(predictor, "i want juice . i want juice . you want milk . i want juice");
+    predictor.startOver();
+    assertEquals("want", TestSymbolIndex.images(predictor.predict(1)), "most often");
+    say(predictor, "you want");
+    assertEquals("milk juice", TestSymbolIndex.images(predictor.predict(2)),
+        "after the last two words");
+    say(predictor, "milk .");
+    assertEquals("i you", TestSymbolIndex.images(predictor.predict(2)), "after one word");
+    assertEquals(1, predictor.predict(1).get(0).getScore(), "how often it followed both");
+
+    predictor.forget("words", "i");
+    assertEquals("you", TestSymbolIndex.images(predictor.predict(1)), "forgotten");
+    predictor.relabel("words", "you", "You");
+    assertEquals("You", predictor.predict(1).get(0).getText(), "relabeled");
+  } // testPredict()
+
+  /**
+   * Does a prediction page speak and learn?
+   */
+  @Test
+  void testPage() {
+    Predictor predictor = new Predictor();
+    say(predictor, "hello there hello friend hello there");
+    PredictionPage page = new PredictionPage(predictor, 2);
+    assertEquals("hello there", String.join(" ", page.getImageLocs()), "after there");
+    assertEquals("hello", page.select("hello"), "spoken");
+    assertEquals("friend there", String.join(" ", page.getImageLocs()),
+        "after there hello");
+    assertTrue(page.hasImage("friend"), "predicted");
+    assertFalse(page.hasImage("goodbye"), "not predicted");
+    assertThrows(NoSuchElementException.class, () -> page.select("goodbye"));
+    assertThrows(UnsupportedOperationException.class, () -> page.addItem("a", "b"));
+  } // testPage()
+
+  /**
+   * Do the mappings learn from what is spoken, and forget what is
+   * removed?
+   */
+  @Test
+  void testMappings() {
+    AACMappings mappings = TestAACSession.board();
+    mappings.select("img/clothes.png");
+    mappings.select("img/clothes/hat.png");
+    mappings.select("img/clothes/scarf.png");
+    mappings.select("img/clothes/hat.png");
+    mappings.reset();
+    mappings.select("img/food.png");
+    mappings.select("img/food/3.png");
+    mappings.reset();
+    mappings.select("img/clothes.png");
+    mappings.select("img/clothes/hat.png");
+    assertEquals("img/clothes/scarf.png img/food/3.png",
+        TestSymbolIndex.images(mappings.predict(2)), "categories not counted");
+    assertEquals("img/clothes.png", mappings.predict(1).get(0).getCategoryLoc(), "where");
+    mappings.removeItem("img/clothes/scarf.png");
+    assertEquals("img/food/3.png img/clothes/hat.png",
+        TestSymbolIndex.images(mappings.predict(2)), "removed");
+  } // testMappings()
+
+  /**
+   * Is a prediction quick after learning a large vocabulary?
+   */
+  @Test
+  void testLarge() {
+    Predictor predictor = new Predictor();
+    Random random = new Random(207);
+    for (int i = 0; i < 200000; i++) {
+      /* Zipf-like: low numbers are chosen far more often. */
+      int word = (int) Math.pow(50000, random.nextDouble());
+      predictor.record("c" + (word % 100), "img" + word, "word " + word);
+    } // for
+    long began = System.nanoTime();
+    int found = 0;
+    for (int i = 0; i < 1000; i++) {
+      say(predictor, "img" + (i % 10));
+      found += predictor.predict(9).size();
+    } // for
+    long micros = (System.nanoTime() - began) / 1000 / 1000;
+    assertEquals(9000, found, "nine each");
+    assertTrue(micros < 1000, "under 1 ms a tap, took " + micros + " us");
+  } // testLarge()
+} // class TestPredictor
@@ -0,0 +1,149 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests of SaveService, writing to a temporary directory.
+ *
+ * @author Sara Jaljaa
+ */
+public class TestSaveService {
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  /**
+   * Where the files go.
+   */
+  static Path tempDir;
+
+  /**
+   * Set up our temporary directory.
+   */
+  @BeforeAll
+  static void setup() throws IOException {
+    tempDir = Files.createTempDirectory("TestSaveService");
+  } // setup()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * The bytes of a string.
+   */
+  static byte[] bytes(String contents) {
+    return contents.getBytes(StandardCharsets.UTF_8);
+  } // bytes(String)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Is the target replaced in full, leaving no temporary file behind?
+   */
+  @Test
+  void testWrite() throws Exception {
+    Path target = tempDir.resolve("write.txt");
+    Files.write(target, bytes("old contents that are longer"));
+    List<Path> paths = new CopyOnWriteArrayList<Path>();
+    List<IOException> errors = new CopyOnWriteArrayList<IOException>();
+    SaveService saver = new SaveService(target.toString(), (path, error) -> {
+      paths.add(path);
+      errors.add(error);
+    });
+    saver.save(bytes("new"));
+    saver.close();
+    assertEquals(List.of(target.toAbsolutePath()), paths, "told once, of the target");
+    assertNull(errors.get(0), "no error");
+    assertArrayEquals(bytes("new"), Files.readAllBytes(target), "replaced in full");
+    assertFalse(Files.exists(tempDir.resolve("write.txt.tmp")), "temporary file moved");
+    assertFalse(Files.exists(Path.of(AACMappings.usesFile(target.toString()))),
+        "uses left alone");
+  } // testWrite()
+
+  /**
+   * Are mappings written with their uses?
+   */
+  @Test
+  void testMappings() throws Exception {
+    AACMappings mappings = TestAACSession.board();
+    mappings.select("img/clothes.png");
+    mappings.select("img/clothes/hat.png");
+    mappings.reset();
+    Path target = tempDir.resolve("mappings.txt");
+    SaveService saver = new SaveService(target.toString(), null);
+    saver.save(mappings);
+    saver.close();
+
+    AACMappings reloaded = new AACMappings(target.toString());
+    reloaded.select("img/clothes.png");
+    assertArrayEquals(new String[] {"img/clothes/hat.png", "img/clothes/scarf.png"},
+        reloaded.getImageLocs(), "mappings written");
+    assertTrue(Files.readString(Path.of(AACMappings.usesFile(target.toString())))
+        .contains("img/clothes.png\timg/clothes/hat.png\t"), "uses written");
+  } // testMappings()
+
+  /**
+   * Are saves made while another is being written coalesced, so that
+   * only the last is written?
+   */
+  @Test
+  void testCoalesce() throws Exception {
+    Path target = tempDir.resolve("coalesce.txt");
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> written = new CopyOnWriteArrayList<String>();
+    SaveService saver = new SaveService(target.toString(), (path, error) -> {
+      try {
+        written.add(Files.readString(path));
+        writing.countDown();
+        release.await(5, TimeUnit.SECONDS);
+      } catch (IOException | InterruptedException e) {
+        written.add(e.toString());
+      } // try/catch
+    });
+    saver.save(bytes("first"));
+    assertTrue(writing.await(5, TimeUnit.SECONDS), "first written");
+    for (int i = 2; i <= 10; i++) {
+      saver.save(bytes("save " + i));
+    } // for
+    release.countDown();
+    saver.close();
+    assertEquals(List.of("first", "save 10"), written, "only the last of the rest");
+  } // testCoalesce()
+
+  /**
+   * Is a failed write reported, leaving the uses file unwritten?
+   */
+  @Test
+  void testFailure() throws Exception {
+    /* A directory that is not empty cannot be replaced by a file. */
+    Path target = Files.createDirectory(tempDir.resolve("failure"));
+    Files.write(target.resolve("keep.txt"), bytes("keep"));
+    List<IOException> errors = new CopyOnWriteArrayList<IOException>();
+    SaveService saver = new SaveService(target.toString(), (path, error) -> errors.add(error));
+    saver.save(bytes("contents"), bytes("uses"));
+    saver.close();
+    assertEquals(1, errors.size(), "told once");
+    assertNotNull(errors.get(0), "error reported");
+    assertFalse(Files.exists(Path.of(AACMappings.usesFile(target.toString()))),
+        "no uses without mappings");
+  } // testFailure()
+} // class TestSaveService
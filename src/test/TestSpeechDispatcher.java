@@ -0,0 +1,163 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests of SpeechDispatcher, using a speaker that only speaks when the
+ * test lets it.
+ *
+ * @author Sara Jaljaa
+ */
+public class TestSpeechDispatcher {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * A speaker that blocks in speak until released or stopped.
+   */
+  static class GatedSpeaker implements Speaker {
+    /** Permits to finish an utterance. */
+    Semaphore gate = new Semaphore(0);
+
+    /** Released once speak has started. */
+    Semaphore started = new Semaphore(0);
+
+    /** The texts spoken in full, in order. */
+    List<String> spoken = new CopyOnWriteArrayList<String>();
+
+    @Override
+    public void speak(String text) throws Exception {
+      started.release();
+      gate.acquire();
+      spoken.add(text);
+    } // speak(String)
+
+    @Override
+    public void stop() {
+      gate.release();
+    } // stop()
+  } // class GatedSpeaker
+
+  /**
+   * A callback that remembers how each request ended.
+   */
+  static class Outcomes implements SpeechDispatcher.Callback {
+    /** The outcome of each text. */
+    Map<String, SpeechDispatcher.Outcome> outcomes =
+        new ConcurrentHashMap<String, SpeechDispatcher.Outcome>();
+
+    /** Counts down once per request. */
+    CountDownLatch remaining;
+
+    /** Expect count requests. */
+    Outcomes(int count) {
+      remaining = new CountDownLatch(count);
+    } // Outcomes(int)
+
+    @Override
+    public void done(String text, SpeechDispatcher.Outcome outcome) {
+      outcomes.put(text, outcome);
+      remaining.countDown();
+    } // done(String, Outcome)
+
+    /** Wait for every request to end. */
+    void await() throws InterruptedException {
+      assertTrue(remaining.await(5, TimeUnit.SECONDS), "all requests ended");
+    } // await()
+  } // class Outcomes
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Are queued requests spoken in order, without blocking the caller?
+   */
+  @Test
+  void testQueue() throws Exception {
+    GatedSpeaker speaker = new GatedSpeaker();
+    SpeechDispatcher speech = new SpeechDispatcher(speaker);
+    Outcomes outcomes = new Outcomes(3);
+    speech.speak("yes", SpeechDispatcher.Policy.QUEUE, outcomes);
+    speech.speak("no", SpeechDispatcher.Policy.QUEUE, outcomes);
+    speech.speak("more", SpeechDispatcher.Policy.QUEUE, outcomes);
+    speaker.gate.release(3);
+    outcomes.await();
+    assertEquals(List.of("yes", "no", "more"), speaker.spoken, "spoken in order");
+    assertEquals(SpeechDispatcher.Outcome.SPOKEN, outcomes.outcomes.get("more"),
+        "last spoken in full");
+    speech.close();
+  } // testQueue()
+
+  /**
+   * Does REPLACE drop waiting requests but finish the current one?
+   */
+  @Test
+  void testReplace() throws Exception {
+    GatedSpeaker speaker = new GatedSpeaker();
+    SpeechDispatcher speech = new SpeechDispatcher(speaker);
+    Outcomes outcomes = new Outcomes(3);
+    speech.speak("one", SpeechDispatcher.Policy.QUEUE, outcomes);
+    speaker.started.acquire();
+    speech.speak("two", SpeechDispatcher.Policy.QUEUE, outcomes);
+    speech.speak("three", SpeechDispatcher.Policy.REPLACE, outcomes);
+    speaker.gate.release(2);
+    outcomes.await();
+    assertEquals(List.of("one", "three"), speaker.spoken, "two was replaced");
+    assertEquals(SpeechDispatcher.Outcome.DROPPED, outcomes.outcomes.get("two"),
+        "two dropped");
+    speech.close();
+  } // testReplace()
+
+  /**
+   * Does INTERRUPT stop the current request?
+   */
+  @Test
+  void testInterrupt() throws Exception {
+    GatedSpeaker speaker = new GatedSpeaker();
+    SpeechDispatcher speech = new SpeechDispatcher(speaker);
+    Outcomes outcomes = new Outcomes(2);
+    speech.speak("long story", SpeechDispatcher.Policy.QUEUE, outcomes);
+    speaker.started.acquire();
+    speech.speak("stop", SpeechDispatcher.Policy.INTERRUPT, outcomes);
+    speaker.gate.release();
+    outcomes.await();
+    assertEquals(SpeechDispatcher.Outcome.INTERRUPTED,
+        outcomes.outcomes.get("long story"), "first interrupted");
+    assertEquals(SpeechDispatcher.Outcome.SPOKEN, outcomes.outcomes.get("stop"),
+        "second spoken");
+    speech.close();
+  } // testInterrupt()
+
+  /**
+   * Does a full queue drop its oldest waiting request?
+   */
+  @Test
+  void testBounded() throws Exception {
+    GatedSpeaker speaker = new GatedSpeaker();
+    SpeechDispatcher speech = new SpeechDispatcher(speaker, 2);
+    Outcomes outcomes = new Outcomes(4);
+    speech.speak("a", SpeechDispatcher.Policy.QUEUE, outcomes);
+    speaker.started.acquire();
+    speech.speak("b", SpeechDispatcher.Policy.QUEUE, outcomes);
+    speech.speak("c", SpeechDispatcher.Policy.QUEUE, outcomes);
+    speech.speak("d", SpeechDispatcher.Policy.QUEUE, outcomes);
+    assertEquals(2, speech.waiting(), "queue stays bounded");
+    speaker.gate.release(3);
+    outcomes.await();
+    assertEquals(SpeechDispatcher.Outcome.DROPPED, outcomes.outcomes.get("b"),
+        "oldest waiting dropped");
+    assertEquals(List.of("a", "c", "d"), speaker.spoken, "the rest spoken");
+    speech.close();
+  } // testBounded()
+} // class TestSpeechDispatcher
@@ -0,0 +1,151 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Tests of SymbolIndex, BKTree and searching from AACMappings and
+ * AACSession.
+ *
+ * @author Sara Jaljaa
+ */
+public class TestSymbolIndex {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the images of some hits, in order.
+   */
+  static String images(List<SymbolIndex.Hit> hits) {
+    StringBuilder images = new StringBuilder();
+    for (SymbolIndex.Hit hit : hits) {
+      images.append(images.length() == 0 ? "" : " ").append(hit.getImageLoc());
+    } // for
+    return images.toString();
+  } // images(List<SymbolIndex.Hit>)
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Are words and prefixes found, and ranked?
+   */
+  @Test
+  void testSearch() {
+    SymbolIndex index = new SymbolIndex();
+    index.add("food", "pie", "Apple pie");
+    index.add("food", "apple", "apple");
+    index.add("food", "sauce", "applesauce");
+    index.add("food", "pear", "pear");
+    index.add("", "food", "food");
+    assertEquals("apple pie sauce", images(index.search("app", 10)),
+        "prefix, shortest first");
+    assertEquals("apple pie sauce", images(index.search("APPLE", 10)),
+        "whole words first, ignoring case");
+    assertEquals("pie", images(index.search("pie app", 10)), "every word must match");
+    assertEquals("apple", images(index.search("app", 1)), "limited");
+    assertEquals("", images(index.search("plum", 10)), "no match");
+    assertEquals("", images(index.search("  ", 10)), "no words");
+    SymbolIndex.Hit food = index.search("fo", 1).get(0);
+    assertEquals("", food.getCategoryLoc(), "category found at home");
+    assertEquals("food", food.getText(), "its name");
+  } // testSearch()
+
+  /**
+   * Do relabels and removals change what is found?
+   */
+  @Test
+  void testUpdates() {
+    SymbolIndex index = new SymbolIndex();
+    index.add("food", "pie", "apple pie");
+    index.add("food", "pie", "cherry pie");
+    assertEquals("", images(index.search("apple", 10)), "old label gone");
+    assertEquals("pie", images(index.search("cher", 10)), "new label found");
+    index.remove("food", "pie");
+    assertEquals("", images(index.search("pie", 10)), "removed");
+    assertEquals(0, index.size(), "empty");
+  } // testUpdates()
+
+  /**
+   * Does searching mappings see every category, and later edits?
+   */
+  @Test
+  void testMappings() {
+    AACMappings mappings = TestAACSession.board();
+    mappings.addCategory("img/food.png", "img/food/fruit.png", "fruit");
+    mappings.addCategory("img/food/fruit.png", "img/food/citrus.png", "citrus fruit");
+    mappings.reset();
+    assertEquals("img/food/7.png", images(mappings.search("food 7", 1)), "item");
+    List<SymbolIndex.Hit> fruit = mappings.search("fruit", 10);
+    assertEquals("img/food/fruit.png img/food/citrus.png", images(fruit), "nested categories");
+    assertEquals("img/food/fruit.png", fruit.get(1).getCategoryLoc(), "where it is");
+
+    mappings.select("img/clothes.png");
+    mappings.addItem("img/clothes/mitten.png", "mitten");
+    assertEquals("img/clothes/mitten.png", images(mappings.search("mit", 10)), "added");
+    mappings.reset();
+    mappings.removeItem("img/food.png");
+    assertEquals("", images(mappings.search("fruit", 10)), "removed with its category");
+    assertEquals("", images(mappings.search("food", 10)), "all of it");
+  } // testMappings()
+
+  /**
+   * Are misspelled words found, best first, within the distance allowed?
+   */
+  @Test
+  void testFuzzySearch() {
+    assertEquals(3, BKTree.distance("kitten", "sitting", 5), "distance");
+    assertEquals(2, BKTree.distance("kitten", "sitting", 1), "gave up");
+    SymbolIndex index = new SymbolIndex();
+    index.add("food", "banana", "banana");
+    index.add("food", "bandana", "bandana");
+    index.add("food", "bread", "bread");
+    index.add("food", "toast", "banana bread");
+    assertEquals("banana toast bandana", images(index.fuzzySearch("bananna", 2, 10)),
+        "fewest edits first, then shortest");
+    assertEquals("banana toast", images(index.fuzzySearch("bananna", 1, 10)),
+        "distance respected");
+    assertEquals("toast", images(index.fuzzySearch("banan bred", 1, 10)), "every word");
+    assertEquals("", images(index.fuzzySearch("bananna", 0, 10)), "exact only");
+    index.remove("food", "banana");
+    assertEquals("toast", images(index.fuzzySearch("bananna", 1, 10)), "removed");
+  } // testFuzzySearch()
+
+  /**
+   * Does a session fill up type-ahead results with fuzzy ones?
+   */
+  @Test
+  void testFind() {
+    AACSession session = new AACSession(TestAACSession.board(), 5, null);
+    assertEquals("img/clothes/scarf.png", images(session.find("scraf", 5)), "misspelled");
+    assertEquals("img/clothes/hat.png", images(session.find("ha", 1)), "prefix");
+    assertEquals("img/clothes/scarf.png", images(session.find("scarf", 5)),
+        "found by prefix, not again by fuzzy");
+    assertEquals("", images(session.find("xyz", 5)), "nothing close");
+  } // testFind()
+
+  /**
+   * Is a search of tens of thousands of symbols quick?
+   */
+  @Test
+  void testLarge() {
+    SymbolIndex index = new SymbolIndex();
+    String[] words = {"red", "green", "blue", "big", "small", "happy", "sad", "hot", "cold"};
+    for (int i = 0; i < 50000; i++) {
+      index.add("c" + (i % 100), "img" + i, words[i % words.length] + " thing "
+          + words[(i / words.length) % words.length] + " " + i);
+    } // for
+    long began = System.nanoTime();
+    int found = 0;
+    for (int i = 0; i < 1000; i++) {
+      found += index.search(words[i % words.length].substring(0, 2), 10).size();
+    } // for
+    long micros = (System.nanoTime() - began) / 1000 / 1000;
+    assertEquals(10000, found, "ten hits each");
+    assertTrue(micros < 1000, "under 1 ms a search, took " + micros + " us");
+  } // testLarge()
+} // class TestSymbolIndex
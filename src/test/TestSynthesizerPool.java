@@ -0,0 +1,157 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests of SynthesizerPool, using speakers that only pretend to speak.
+ *
+ * @author Sara Jaljaa
+ */
+public class TestSynthesizerPool {
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * A speaker that takes a moment to speak and counts how many of its
+   * kind are speaking at once.
+   */
+  static class SlowSpeaker implements Speaker {
+    /** The number speaking now. */
+    AtomicInteger speaking;
+
+    /** The most ever speaking at once. */
+    AtomicInteger most;
+
+    /** The number of times stopped. */
+    AtomicInteger stopped = new AtomicInteger();
+
+    /** Share counters with other speakers. */
+    SlowSpeaker(AtomicInteger speaking, AtomicInteger most) {
+      this.speaking = speaking;
+      this.most = most;
+    } // SlowSpeaker(AtomicInteger, AtomicInteger)
+
+    @Override
+    public void speak(String text) throws Exception {
+      most.accumulateAndGet(speaking.incrementAndGet(), Math::max);
+      Thread.sleep(5);
+      speaking.decrementAndGet();
+    } // speak(String)
+
+    @Override
+    public void stop() {
+      stopped.incrementAndGet();
+    } // stop()
+  } // class SlowSpeaker
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Are returned speakers reused rather than created again?
+   */
+  @Test
+  void testReuse() throws Exception {
+    AtomicInteger zero = new AtomicInteger();
+    SynthesizerPool pool = new SynthesizerPool((voice) -> new SlowSpeaker(zero, zero), 2);
+    Speaker first;
+    try (SynthesizerPool.Lease lease = pool.checkout("kevin16", 1, TimeUnit.SECONDS)) {
+      first = lease.speaker();
+    } // try
+    try (SynthesizerPool.Lease lease = pool.checkout("kevin16", 1, TimeUnit.SECONDS)) {
+      assertSame(first, lease.speaker(), "same speaker");
+    } // try
+    assertEquals(1, pool.getCreated("kevin16"), "one created");
+  } // testReuse()
+
+  /**
+   * Does a lease stop its speaker only until it is returned?
+   */
+  @Test
+  void testStop() throws Exception {
+    AtomicInteger zero = new AtomicInteger();
+    SynthesizerPool pool = new SynthesizerPool((voice) -> new SlowSpeaker(zero, zero), 1);
+    SynthesizerPool.Lease lease = pool.checkout("kevin16", 1, TimeUnit.SECONDS);
+    SlowSpeaker speaker = (SlowSpeaker) lease.speaker();
+    lease.stop();
+    assertEquals(1, speaker.stopped.get(), "stopped while leased");
+    lease.close();
+    try (SynthesizerPool.Lease other = pool.checkout("kevin16", 1, TimeUnit.SECONDS)) {
+      assertSame(speaker, other.speaker(), "leased again");
+      lease.stop();
+      assertEquals(1, speaker.stopped.get(), "left alone once returned");
+    } // try
+  } // testStop()
+
+  /**
+   * Does a checkout time out when every speaker is in use, without
+   * holding up other voices?
+   */
+  @Test
+  void testTimeout() throws Exception {
+    AtomicInteger zero = new AtomicInteger();
+    SynthesizerPool pool = new SynthesizerPool((voice) -> new SlowSpeaker(zero, zero), 1);
+    SynthesizerPool.Lease held = pool.checkout("kevin16", 1, TimeUnit.SECONDS);
+    assertThrows(TimeoutException.class,
+        () -> pool.checkout("kevin16", 20, TimeUnit.MILLISECONDS));
+    assertEquals(1L, pool.getTimeouts("kevin16"), "one timeout");
+    try (SynthesizerPool.Lease other = pool.checkout("alan", 20, TimeUnit.MILLISECONDS)) {
+      assertTrue(other.speaker() != null, "other voice free");
+    } // try
+    held.close();
+    held.close();
+    try (SynthesizerPool.Lease again = pool.checkout("kevin16", 20, TimeUnit.MILLISECONDS)) {
+      assertNotNull(again.speaker(), "checked out again");
+      assertEquals(1, pool.getCreated("kevin16"), "returned once");
+    } // try
+  } // testTimeout()
+
+  /**
+   * Do many sessions share a small pool without ever using more speakers
+   * than it holds?
+   */
+  @Test
+  void testSessions() throws Exception {
+    AtomicInteger speaking = new AtomicInteger();
+    AtomicInteger most = new AtomicInteger();
+    SynthesizerPool pool = new SynthesizerPool(
+        (voice) -> new SlowSpeaker(speaking, most), 3);
+    int sessions = 12;
+    CountDownLatch done = new CountDownLatch(sessions);
+    List<Throwable> errors = new ArrayList<Throwable>();
+    for (int i = 0; i < sessions; i++) {
+      Speaker session = pool.speaker("kevin16", 5, TimeUnit.SECONDS);
+      new Thread(() -> {
+        try {
+          for (int j = 0; j < 10; j++) {
+            session.speak("hello");
+          } // for
+        } catch (Throwable e) {
+          synchronized (errors) {
+            errors.add(e);
+          } // synchronized
+        } // try/catch
+        done.countDown();
+      }).start();
+    } // for
+    assertTrue(done.await(30, TimeUnit.SECONDS), "sessions finished");
+    assertEquals(List.of(), errors, "no errors");
+    assertTrue(most.get() <= 3, "at most three speaking at once");
+    assertEquals(3, pool.getCreated("kevin16"), "pool filled");
+    assertTrue(pool.getUtilization("kevin16") > 0, "utilization measured");
+    assertTrue(pool.getAverageWait("kevin16") > 0, "waits measured");
+  } // testSessions()
+} // class TestSynthesizerPool